@@ -0,0 +1,76 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import android.widget.ListView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of {@link NewsAdapter#getView} binding recycled rows across a
+ * long list, the way a ListView does while scrolling.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsAdapterBenchmark {
+
+    private static final String TAG = NewsAdapterBenchmark.class.getSimpleName();
+
+    private static final int ROWS = 5000;
+
+    private static final int RECYCLED_VIEWS = 8;
+
+    private static final int WARM_UP_PASSES = 3;
+
+    @Test
+    public void bindRecycledRows() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final List<News> news = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            // every fifth article has no author or date, like the Guardian feed
+            if (i % 5 == 0) {
+                news.add(new News("Title " + i, "World news", "https://example.com/" + i));
+            } else {
+                news.add(new News("Title " + i, "2018-08-10", "Politics", "Byline " + i,
+                        "https://example.com/" + i));
+            }
+        }
+
+        final long[] elapsed = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ListView parent = new ListView(context);
+                NewsAdapter adapter = new NewsAdapter(context, news);
+
+                // inflate the rows a screen needs once, as the ListView would
+                View[] views = new View[RECYCLED_VIEWS];
+                for (int i = 0; i < RECYCLED_VIEWS; i++) {
+                    views[i] = adapter.getView(i, null, parent);
+                }
+
+                for (int pass = 0; pass <= WARM_UP_PASSES; pass++) {
+                    long start = System.nanoTime();
+                    for (int position = 0; position < ROWS; position++) {
+                        View recycled = views[position % RECYCLED_VIEWS];
+                        assertSame(recycled, adapter.getView(position, recycled, parent));
+                    }
+                    elapsed[0] = System.nanoTime() - start;
+                }
+            }
+        });
+
+        long nanosPerRow = elapsed[0] / ROWS;
+        Log.i(TAG, "bindRecycledRows: " + nanosPerRow + " ns per row over " + ROWS + " rows");
+        // a row has to bind well inside a 16 ms frame
+        assertTrue(nanosPerRow < 1000000);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Shows the text of an article whose body was prefetched into the
+ * {@link ArticleBodyStore}, so it can be read without a connection. Falls back to the
+ * browser if the body is gone by the time it is read.
+ */
+public class ArticleActivity extends AppCompatActivity {
+
+    private static final String EXTRA_URL = "url";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_META = "meta";
+
+    // reads the body off the UI thread, cancelled if the activity goes away first
+    private NewsLoadEngine.Task mTask;
+
+    /**
+     * Return an intent showing the article, whose body must be in the body store.
+     */
+    static Intent newIntent(Context context, News news) {
+        NewsDisplay display = news.getDisplay();
+        String meta = display.getSection() != null ? display.getSection() : "";
+        if (news.hasDate()) {
+            meta += " | " + display.getDate();
+        }
+        if (news.hasAuthor()) {
+            meta += " | " + display.getAuthor();
+        }
+        return new Intent(context, ArticleActivity.class)
+                .putExtra(EXTRA_URL, news.getUrl())
+                .putExtra(EXTRA_TITLE, display.getTitle())
+                .putExtra(EXTRA_META, meta);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_article);
+
+        ((TextView) findViewById(R.id.article_title))
+                .setText(getIntent().getStringExtra(EXTRA_TITLE));
+        ((TextView) findViewById(R.id.article_meta))
+                .setText(getIntent().getStringExtra(EXTRA_META));
+
+        final String url = getIntent().getStringExtra(EXTRA_URL);
+        final ArticleBodyStore store = NewsLoader.getBodyStore(this);
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        Executor mainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        };
+        mTask = NewsLoadEngine.getDefault().submit(new NewsLoadEngine.Job<String>() {
+            @Override
+            public String run(Cancellation cancellation) {
+                return store.get(url);
+            }
+        }, mainExecutor, new NewsLoadEngine.Callback<String>() {
+            @Override
+            public void onResult(String body) {
+                if (body == null) {
+                    openInBrowser();
+                    finish();
+                    return;
+                }
+                ((TextView) findViewById(R.id.article_body)).setText(body);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mTask.cancel();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.article, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            openInBrowser();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void openInBrowser() {
+        Uri newsUri = Uri.parse(getIntent().getStringExtra(EXTRA_URL));
+        startActivity(new Intent(Intent.ACTION_VIEW, newsUri));
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzipped article bodies on disk, one file per article URL, so prefetched articles open
+ * in the app without the network. Files are touched when read; once the store grows past
+ * its budget, the least recently read articles are deleted. The names of the stored files
+ * are kept in memory, so {@link #contains(String)} answers without touching the disk.
+ */
+public class ArticleBodyStore {
+
+    /** Tag for log messages */
+    private static final String TAG = ArticleBodyStore.class.getSimpleName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // file extension of stored bodies
+    private static final String SUFFIX = ".gz";
+
+    /** Directory holding the body files */
+    private final File mDirectory;
+
+    /** Total size the body files may take up */
+    private final long mMaxBytes;
+
+    /** Names of the body files on disk, once listed */
+    private final Set<String> mStored =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** True once the directory has been listed into mStored */
+    private volatile boolean mListed;
+
+    /**
+     * create a new {@link ArticleBodyStore}.
+     *
+     * @param directory to keep the body files in
+     * @param maxBytes is the total compressed size allowed on disk
+     */
+    public ArticleBodyStore(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * List the stored bodies, so {@link #contains(String)} answers from memory from now on.
+     * Call off the UI thread; the first call that needs the listing makes it otherwise.
+     */
+    public void list() {
+        if (mListed) {
+            return;
+        }
+        synchronized (this) {
+            if (!mListed) {
+                String[] names = mDirectory.list();
+                if (names != null) {
+                    mStored.addAll(Arrays.asList(names));
+                }
+                mListed = true;
+            }
+        }
+    }
+
+    /**
+     * Return true if the body of the article at the URL is stored. Once the store has been
+     * listed this neither touches the disk nor waits for a write, so the UI thread can ask.
+     */
+    public boolean contains(String url) {
+        list();
+        return mStored.contains(nameFor(url));
+    }
+
+    /**
+     * Return the stored body of the article at the URL, or null if it isn't stored.
+     */
+    public synchronized String get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            InputStream in = new GZIPInputStream(new FileInputStream(file));
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                file.setLastModified(System.currentTimeMillis());
+                return new String(out.toByteArray(), UTF_8);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Problem reading article body " + file, e);
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Store the body of the article at the URL and return its compressed size, or 0 if it
+     * couldn't be written. The least recently read bodies are deleted if the store is over
+     * its budget.
+     */
+    public synchronized long put(String url, String body) {
+        list();
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(TAG, "Unable to create article body directory " + mDirectory);
+            return 0;
+        }
+
+        File file = fileFor(url);
+        File tmp = new File(mDirectory, file.getName() + ".tmp");
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp));
+            try {
+                out.write(body.getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+            IoUtils.replace(tmp, file);
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing article body " + file, e);
+            tmp.delete();
+            return 0;
+        }
+
+        mStored.add(file.getName());
+        long stored = file.length();
+        trimToSize(file);
+        return stored;
+    }
+
+    /** Total compressed size of the stored bodies */
+    public synchronized long size() {
+        long size = 0;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Delete the least recently read bodies other than the one just written until the
+     * store fits in its budget.
+     */
+    private void trimToSize(File written) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= mMaxBytes) {
+            return;
+        }
+        // least recently read first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (size <= mMaxBytes) {
+                break;
+            }
+            if (file.equals(written)) {
+                continue;
+            }
+            size -= file.length();
+            delete(file);
+        }
+    }
+
+    private void delete(File file) {
+        mStored.remove(file.getName());
+        file.delete();
+    }
+
+    private File fileFor(String url) {
+        return new File(mDirectory, nameFor(url));
+    }
+
+    private static String nameFor(String url) {
+        return NewsCache.hash(url) + SUFFIX;
+    }
+
+}
@@ -0,0 +1,560 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of articles, each written as one binary record and found again by its
+ * URL, the persistent article table of the {@link ArticleStore}.
+ *
+ * A record is its payload length and CRC32 followed by the publication time and the URL,
+ * title, section, byline and thumbnail as length-prefixed UTF-8. Storing an article that
+ * changed appends a new record and leaves the old one behind as garbage; once there is
+ * more garbage than articles, {@link #compact} rewrites the file with only the newest
+ * record of each article.
+ *
+ * Opening the log replays it front to back, checking each record against its CRC and
+ * building an open-addressing table from URL hashes to record offsets, without building
+ * any objects. A record cut short by a crash, or anything after it, is truncated away.
+ * Lookups hash the URL and compare its bytes with the record where it lies in a read-only
+ * mapping of the file, so only the article that was asked for is decoded.
+ */
+public class ArticleLog {
+
+    /** Tag for log messages */
+    private static final String TAG = ArticleLog.class.getSimpleName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // first bytes of the log file, "NLOG"
+    private static final int MAGIC = 0x4E4C4F47;
+
+    // bump when the record layout changes so an old file is started over
+    private static final int VERSION = 1;
+
+    /** Bytes before the first record: magic and version */
+    static final int HEADER_SIZE = 8;
+
+    /** Bytes before each record's payload: length and CRC32 */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    /** Length of a field that is null */
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    /** Longest field in bytes */
+    private static final int MAX_FIELD_LENGTH = NULL_LENGTH - 1;
+
+    /** Smallest payload: the time and five empty fields */
+    private static final int MIN_PAYLOAD = 8 + 5 * 2;
+
+    /** Largest payload: the time and five fields at their longest */
+    private static final int MAX_PAYLOAD = 8 + 5 * (2 + MAX_FIELD_LENGTH);
+
+    /** Garbage allowed before {@link #needsCompaction} asks for a rewrite */
+    static final long MIN_COMPACTION_BYTES = 256 * 1024;
+
+    /** The log file */
+    private final File mFile;
+
+    /** Articles kept by a compaction, the oldest unpinned ones are dropped past this */
+    private final int mMaxArticles;
+
+    private RandomAccessFile mRandomAccessFile;
+    private FileChannel mChannel;
+
+    /** Read-only mapping of the file, remapped when records are appended past its end */
+    private MappedByteBuffer mMapping;
+
+    /** Offset of the end of the last whole record */
+    private long mSize;
+
+    // open addressing table from URL hashes to record offsets; an offset of 0 is empty
+    private int[] mHashes = new int[1024];
+    private long[] mOffsets = new long[1024];
+    private int mCount;
+
+    /** Bytes of records superseded by a newer record of the same article */
+    private long mGarbageBytes;
+
+    // reused while decoding fields out of the mapping
+    private byte[] mScratch = new byte[256];
+
+    /**
+     * create a new {@link ArticleLog}, opened the first time it is used.
+     *
+     * @param file to keep the records in
+     * @param maxArticles is the most articles a compaction keeps
+     */
+    public ArticleLog(File file, int maxArticles) {
+        mFile = file;
+        mMaxArticles = maxArticles;
+    }
+
+    /**
+     * Return the newest stored copy of the article at the URL, or null if there is none.
+     */
+    public synchronized News get(String url) throws IOException {
+        open();
+        byte[] bytes = url.getBytes(UTF_8);
+        long offset = find(bytes, hash(bytes));
+        return offset == 0 ? null : read(offset);
+    }
+
+    /**
+     * Return true if an article is stored for the URL.
+     */
+    public synchronized boolean contains(String url) throws IOException {
+        open();
+        byte[] bytes = url.getBytes(UTF_8);
+        return find(bytes, hash(bytes)) != 0;
+    }
+
+    /** Number of articles stored, each counted once however many records it has */
+    public synchronized int size() throws IOException {
+        open();
+        return mCount;
+    }
+
+    /**
+     * Return true if the article can be stored, which it can unless its URL is longer than
+     * a field. Its other fields are cut to fit.
+     */
+    public static boolean canStore(News news) {
+        return news.getUrl().getBytes(UTF_8).length <= MAX_FIELD_LENGTH;
+    }
+
+    /**
+     * Append the articles that aren't stored yet, or changed since they were, in a single
+     * write that is on disk when this returns. Articles that {@link #canStore} rejects are
+     * left out.
+     */
+    public synchronized void putAll(Collection<News> news) throws IOException {
+        open();
+        ByteBuffer batch = ByteBuffer.allocate(4096);
+        List<byte[]> urls = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        Set<String> batched = new HashSet<>();
+        for (News article : news) {
+            byte[] url = article.getUrl().getBytes(UTF_8);
+            if (url.length > MAX_FIELD_LENGTH) {
+                Log.e(TAG, "putAll: Skipping an article whose URL is " + url.length + " bytes");
+                continue;
+            }
+            byte[] payload = encode(article, url);
+            long stored = find(url, hash(url));
+            // an unchanged article, or one already in this batch, isn't written again
+            if ((stored != 0 && samePayload(stored, payload)) || !batched.add(article.getUrl())) {
+                continue;
+            }
+            if (batch.remaining() < RECORD_HEADER_SIZE + payload.length) {
+                batch = grow(batch, RECORD_HEADER_SIZE + payload.length);
+            }
+            urls.add(url);
+            starts.add(batch.position());
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            batch.putInt(payload.length);
+            batch.putInt((int) crc.getValue());
+            batch.put(payload);
+        }
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        batch.flip();
+        long start = mSize;
+        long position = start;
+        while (batch.hasRemaining()) {
+            position += mChannel.write(batch, position);
+        }
+        mChannel.force(false);
+
+        // map the new records before pointing the index at them
+        mSize = position;
+        remap();
+        for (int i = 0; i < urls.size(); i++) {
+            byte[] url = urls.get(i);
+            put(hash(url), start + starts.get(i), url, -1, 0);
+        }
+    }
+
+    /**
+     * Return true once superseded records take up more of the file than the articles do,
+     * or more articles are stored than a compaction keeps.
+     */
+    public synchronized boolean needsCompaction() throws IOException {
+        open();
+        return (mGarbageBytes > MIN_COMPACTION_BYTES && mGarbageBytes > mSize - mGarbageBytes)
+                || mCount > mMaxArticles;
+    }
+
+    /**
+     * Rewrite the file with only the newest record of each article, keeping up to the
+     * log's most articles, the most recently stored ones and every pinned one. The new file
+     * replaces the old in one step, so a crash leaves one or the other.
+     *
+     * @param pinned are the URLs of articles that must be kept
+     */
+    public synchronized void compact(Set<String> pinned) throws IOException {
+        open();
+        long[] offsets = new long[mCount];
+        int count = 0;
+        for (long offset : mOffsets) {
+            if (offset != 0) {
+                offsets[count++] = offset;
+            }
+        }
+        // in file order, which is the order they were stored in
+        Arrays.sort(offsets);
+
+        int dropping = Math.max(0, count - mMaxArticles);
+        File tmp = new File(mFile.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header);
+            for (long offset : offsets) {
+                int length = mMapping.getInt((int) offset);
+                if (dropping > 0 && !pinned.contains(readUrl(offset))) {
+                    dropping--;
+                    continue;
+                }
+                // copied from the mapping of the old file straight to the new one
+                ByteBuffer record = mMapping.duplicate();
+                record.position((int) offset);
+                record.limit((int) offset + RECORD_HEADER_SIZE + length);
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            channel.force(false);
+        } finally {
+            out.close();
+        }
+
+        long before = mSize;
+        close();
+        IoUtils.replace(tmp, mFile);
+        open();
+        Log.i(TAG, "compact: " + before + " bytes to " + mSize + ", " + mCount + " articles");
+    }
+
+    /**
+     * Release the file, it is opened again the next time the log is used.
+     */
+    public synchronized void close() throws IOException {
+        if (mRandomAccessFile != null) {
+            mRandomAccessFile.close();
+        }
+        mRandomAccessFile = null;
+        mChannel = null;
+        mMapping = null;
+        Arrays.fill(mHashes, 0);
+        Arrays.fill(mOffsets, 0);
+        mCount = 0;
+        mGarbageBytes = 0;
+        mSize = 0;
+    }
+
+    /** Size of the file in bytes, up to the end of the last whole record */
+    synchronized long getSize() throws IOException {
+        open();
+        return mSize;
+    }
+
+    /**
+     * Open the file the first time the log is used and replay it into the index, starting
+     * it over if it isn't a log of this version.
+     */
+    private void open() throws IOException {
+        if (mChannel != null) {
+            return;
+        }
+        File directory = mFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create log directory " + directory);
+        }
+        mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        long length = mChannel.size();
+        if (length > Integer.MAX_VALUE) {
+            close();
+            throw new IOException("Article log too large " + mFile);
+        }
+        mMapping = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        if (length < HEADER_SIZE || mMapping.getInt(0) != MAGIC
+                || mMapping.getInt(4) != VERSION) {
+            if (length > 0) {
+                Log.e(TAG, "Unknown article log format, starting over " + mFile);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            mChannel.truncate(0);
+            mChannel.write(header, 0);
+            mSize = HEADER_SIZE;
+            remap();
+            return;
+        }
+        replay(length);
+    }
+
+    /**
+     * Index every whole record in the file, truncating at the first one that is cut short
+     * or doesn't match its CRC.
+     */
+    private void replay(long length) throws IOException {
+        CRC32 crc = new CRC32();
+        long offset = HEADER_SIZE;
+        while (offset < length) {
+            int payload = length - offset >= RECORD_HEADER_SIZE
+                    ? mMapping.getInt((int) offset) : -1;
+            if (payload < MIN_PAYLOAD || payload > MAX_PAYLOAD
+                    || payload > length - offset - RECORD_HEADER_SIZE
+                    || !checkCrc(crc, offset, payload)) {
+                Log.e(TAG, "replay: Truncating torn record at " + offset + " of " + length);
+                mChannel.truncate(offset);
+                mChannel.force(false);
+                break;
+            }
+            int urlLength = mMapping.getShort((int) offset + RECORD_HEADER_SIZE + 8) & 0xFFFF;
+            int urlStart = (int) offset + RECORD_HEADER_SIZE + 10;
+            put(hash(mMapping, urlStart, urlLength), offset, null, urlStart, urlLength);
+            offset += RECORD_HEADER_SIZE + payload;
+        }
+        mSize = offset;
+        if (mSize != length) {
+            remap();
+        }
+    }
+
+    private boolean checkCrc(CRC32 crc, long offset, int payload) {
+        crc.reset();
+        ByteBuffer record = mMapping.duplicate();
+        record.position((int) offset + RECORD_HEADER_SIZE);
+        record.limit((int) offset + RECORD_HEADER_SIZE + payload);
+        if (mScratch.length < payload) {
+            mScratch = new byte[Math.max(payload, mScratch.length * 2)];
+        }
+        record.get(mScratch, 0, payload);
+        crc.update(mScratch, 0, payload);
+        return (int) crc.getValue() == mMapping.getInt((int) offset + 4);
+    }
+
+    private void remap() throws IOException {
+        mMapping = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, mSize);
+    }
+
+    /**
+     * Return the offset of the record of the URL, or 0 if it has none.
+     */
+    private long find(byte[] url, int hash) {
+        int mask = mHashes.length - 1;
+        for (int slot = hash & mask; mOffsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (mHashes[slot] == hash && urlEquals(mOffsets[slot], url)) {
+                return mOffsets[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Point the index at the record of a URL, given as bytes or where it lies in the mapping,
+     * counting the record it replaces as garbage.
+     */
+    private void put(int hash, long offset, byte[] url, int urlStart, int urlLength) {
+        int mask = mHashes.length - 1;
+        int slot = hash & mask;
+        while (mOffsets[slot] != 0) {
+            if (mHashes[slot] == hash && (url != null ? urlEquals(mOffsets[slot], url)
+                    : urlEquals(mOffsets[slot], urlStart, urlLength))) {
+                // a newer record of the same article
+                mGarbageBytes += RECORD_HEADER_SIZE + mMapping.getInt((int) mOffsets[slot]);
+                mOffsets[slot] = offset;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mHashes[slot] = hash;
+        mOffsets[slot] = offset;
+        mCount++;
+        if (mCount * 2 > mHashes.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        int[] hashes = mHashes;
+        long[] offsets = mOffsets;
+        mHashes = new int[hashes.length * 2];
+        mOffsets = new long[offsets.length * 2];
+        int mask = mHashes.length - 1;
+        for (int i = 0; i < hashes.length; i++) {
+            if (offsets[i] != 0) {
+                int slot = hashes[i] & mask;
+                while (mOffsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                mHashes[slot] = hashes[i];
+                mOffsets[slot] = offsets[i];
+            }
+        }
+    }
+
+    private boolean urlEquals(long offset, byte[] url) {
+        int start = (int) offset + RECORD_HEADER_SIZE + 8;
+        if ((mMapping.getShort(start) & 0xFFFF) != url.length) {
+            return false;
+        }
+        for (int i = 0; i < url.length; i++) {
+            if (mMapping.get(start + 2 + i) != url[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean urlEquals(long offset, int urlStart, int urlLength) {
+        int start = (int) offset + RECORD_HEADER_SIZE + 8;
+        if ((mMapping.getShort(start) & 0xFFFF) != urlLength) {
+            return false;
+        }
+        for (int i = 0; i < urlLength; i++) {
+            if (mMapping.get(start + 2 + i) != mMapping.get(urlStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean samePayload(long offset, byte[] payload) {
+        if (mMapping.getInt((int) offset) != payload.length) {
+            return false;
+        }
+        int start = (int) offset + RECORD_HEADER_SIZE;
+        for (int i = 0; i < payload.length; i++) {
+            if (mMapping.get(start + i) != payload[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the article of the record at the offset straight out of the mapping.
+     */
+    private News read(long offset) {
+        ByteBuffer record = mMapping.duplicate();
+        record.position((int) offset + RECORD_HEADER_SIZE);
+        long publishedAt = record.getLong();
+        String url = readField(record);
+        String title = readField(record);
+        String section = readField(record);
+        String author = readField(record);
+        String thumbnail = readField(record);
+        return new News(title, publishedAt, section, author, url, thumbnail);
+    }
+
+    private String readUrl(long offset) {
+        ByteBuffer record = mMapping.duplicate();
+        record.position((int) offset + RECORD_HEADER_SIZE + 8);
+        return readField(record);
+    }
+
+    private String readField(ByteBuffer record) {
+        int length = record.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (mScratch.length < length) {
+            mScratch = new byte[Math.max(length, mScratch.length * 2)];
+        }
+        record.get(mScratch, 0, length);
+        return new String(mScratch, 0, length, UTF_8);
+    }
+
+    private static byte[] encode(News news, byte[] url) {
+        // a thumbnail URL cut short would point nowhere, so one too long is left out
+        byte[] thumbnail = bytesOf(news.getThumbnail());
+        if (thumbnail != null && thumbnail.length > MAX_FIELD_LENGTH) {
+            thumbnail = null;
+        }
+        byte[][] fields = {url, fieldOf(news.getTitle()), fieldOf(news.getSection()),
+                fieldOf(news.getAuthor()), thumbnail};
+        int length = 8;
+        for (byte[] field : fields) {
+            length += 2 + (field == null ? 0 : field.length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.putLong(news.getPublishedAt());
+        for (byte[] field : fields) {
+            if (field == null) {
+                payload.putShort((short) NULL_LENGTH);
+            } else {
+                payload.putShort((short) field.length);
+                payload.put(field);
+            }
+        }
+        return payload.array();
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(UTF_8);
+    }
+
+    /** The UTF-8 bytes of the text, cut after the last whole character that fits a field */
+    private static byte[] fieldOf(String value) {
+        byte[] bytes = bytesOf(value);
+        if (bytes == null || bytes.length <= MAX_FIELD_LENGTH) {
+            return bytes;
+        }
+        int end = MAX_FIELD_LENGTH;
+        // back up to the first byte of the character that doesn't fit
+        while ((bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer grown = ByteBuffer.allocate(
+                Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    /** FNV-1a of the URL's UTF-8 bytes */
+    private static int hash(byte[] url) {
+        int hash = 0x811C9DC5;
+        for (byte b : url) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ (buffer.get(i) & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+}
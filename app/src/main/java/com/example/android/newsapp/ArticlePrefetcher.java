@@ -0,0 +1,135 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Downloads the bodies of the top articles of a list into the {@link ArticleBodyStore},
+ * so they can be read in the app without waiting for the network. Bodies are requested
+ * in batches with one Guardian search for several article ids each, articles already
+ * stored are skipped, and a run stops once the bodies it stored reach its byte budget.
+ *
+ * The prefetcher has no Android dependencies; {@link NewsSyncService} decides when the
+ * connection allows it to run.
+ */
+public class ArticlePrefetcher {
+
+    /** Tag for log messages */
+    private static final String TAG = ArticlePrefetcher.class.getSimpleName();
+
+    /** Articles requested in one search */
+    static final int BATCH_SIZE = 10;
+
+    // article URLs are the site address followed by the article's id
+    private static final String SITE_URL = "https://www.theguardian.com/";
+
+    private final ArticleBodyStore mStore;
+
+    /** Search URL asking for bodies, without ids or page size */
+    private final String mBodiesUrl;
+
+    /**
+     * create a new {@link ArticlePrefetcher}.
+     *
+     * @param store to put the bodies in
+     * @param bodiesUrl is a search URL with show-fields=bodyText and the api key, the ids
+     *                  and page size are added to it
+     */
+    public ArticlePrefetcher(ArticleBodyStore store, String bodiesUrl) {
+        mStore = store;
+        mBodiesUrl = bodiesUrl;
+    }
+
+    /**
+     * Store the bodies of the first {@code limit} articles of the list that aren't stored
+     * yet, until the compressed bodies stored reach {@code byteBudget}. Returns the number
+     * stored.
+     */
+    public int prefetch(List<News> news, int limit, long byteBudget,
+                        Cancellation cancellation) {
+        List<String> missing = new ArrayList<>();
+        for (News article : news.subList(0, Math.min(limit, news.size()))) {
+            if (idFor(article.getUrl()) != null && !mStore.contains(article.getUrl())
+                    && !missing.contains(article.getUrl())) {
+                missing.add(article.getUrl());
+            }
+        }
+
+        int stored = 0;
+        long storedBytes = 0;
+        for (int start = 0; start < missing.size(); start += BATCH_SIZE) {
+            if (storedBytes >= byteBudget
+                    || (cancellation != null && cancellation.isCancelled())) {
+                break;
+            }
+            List<String> batch =
+                    missing.subList(start, Math.min(start + BATCH_SIZE, missing.size()));
+            Map<String, String> bodies;
+            try {
+                bodies = fetchBodies(batch, cancellation);
+            } catch (IOException e) {
+                if (cancellation == null || !cancellation.isCancelled()) {
+                    Log.e(TAG, "Problem prefetching article bodies", e);
+                }
+                break;
+            }
+            for (String url : batch) {
+                String body = bodies.get(url);
+                if (body == null || storedBytes >= byteBudget) {
+                    continue;
+                }
+                long size = mStore.put(url, body);
+                if (size > 0) {
+                    stored++;
+                    storedBytes += size;
+                }
+            }
+        }
+        Log.i(TAG, "prefetch: Stored " + stored + " article bodies, " + storedBytes + " bytes");
+        return stored;
+    }
+
+    /**
+     * Return the Guardian id of the article at the URL, or null if it isn't a Guardian
+     * article.
+     */
+    static String idFor(String url) {
+        if (url == null || !url.startsWith(SITE_URL) || url.length() == SITE_URL.length()) {
+            return null;
+        }
+        return url.substring(SITE_URL.length());
+    }
+
+    private Map<String, String> fetchBodies(List<String> urls, Cancellation cancellation)
+            throws IOException {
+        StringBuilder ids = new StringBuilder();
+        for (String url : urls) {
+            ids.append(ids.length() == 0 ? "" : ",").append(idFor(url));
+        }
+        String query = mBodiesUrl + (mBodiesUrl.indexOf('?') < 0 ? '?' : '&')
+                + "page-size=" + urls.size() + "&ids=" + IoUtils.encode(ids.toString());
+
+        URL url = new URL(query);
+        // leave a server that is failing or rate limiting us alone, bodies can wait
+        if (CircuitBreaker.forServer(url).isOpen()) {
+            throw new IOException("Server unhealthy, not prefetching");
+        }
+        HttpTransport.Response response =
+                HttpTransport.getDefault().get(url, null, cancellation);
+        try {
+            if (response.getCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Error response code: " + response.getCode());
+            }
+            return QueryUtils.extractBodiesFromStream(response.getBody());
+        } finally {
+            response.close();
+        }
+    }
+
+}
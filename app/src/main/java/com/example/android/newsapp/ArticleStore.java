@@ -0,0 +1,291 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent store of the articles of the queries kept up to date by {@link NewsSync},
+ * so opening the app reads them locally instead of waiting for the network. The articles
+ * are appended to an {@link ArticleLog} next to the store file, each stored once even when
+ * several queries return it and written again only when it changes. The store file itself
+ * is rewritten in one step after each sync and holds only the queries, as lists of
+ * article URLs, and the sync's backoff state.
+ */
+public class ArticleStore {
+
+    /** Tag for log messages */
+    private static final String TAG = ArticleStore.class.getSimpleName();
+
+    // first bytes of the store file, "NSTR"
+    private static final int MAGIC = 0x4E535452;
+
+    // bump when the record layout changes so an old file is ignored
+    private static final int VERSION = 4;
+
+    // most queries kept, the least recently synced are dropped past this
+    private static final int MAX_QUERIES = 8;
+
+    // most articles the log keeps when it is compacted, past those the queries refer to
+    private static final int MAX_LOGGED_ARTICLES = 10000;
+
+    /** The store file */
+    private final File mFile;
+
+    /** The articles of the queries, and others synced before them */
+    private final ArticleLog mLog;
+
+    /** Stored queries by key, least recently synced first; null until the file is read */
+    private LinkedHashMap<String, Query> mQueries;
+
+    /** Syncs failed in a row */
+    private int mFailures;
+
+    /** Earliest time of the next sync attempt, 0 when not backing off */
+    private long mNextAttemptAt;
+
+    /**
+     * create a new {@link ArticleStore}.
+     *
+     * @param file to keep the articles in
+     */
+    public ArticleStore(File file) {
+        mFile = file;
+        mLog = new ArticleLog(new File(file.getPath() + ".log"), MAX_LOGGED_ARTICLES);
+    }
+
+    /**
+     * Return the stored articles of the query with the given key (see
+     * {@link NewsCache#keyFor}), or null if it has never been synced.
+     */
+    public synchronized Query get(String key) {
+        load();
+        return mQueries.get(key);
+    }
+
+    /**
+     * Store the results of one sync, each list under its query key, all in a single write.
+     * If the articles can't be written the store keeps the queries it had, so none is
+     * served as synced without being on disk.
+     */
+    public synchronized void putAll(Map<String, List<News>> results, long syncedAt) {
+        load();
+        LinkedHashMap<String, Query> queries = new LinkedHashMap<>(mQueries);
+        for (Map.Entry<String, List<News>> result : results.entrySet()) {
+            // re-insert so the map stays in order of sync time
+            queries.remove(result.getKey());
+            queries.put(result.getKey(),
+                    new Query(result.getKey(), storable(result.getValue()), syncedAt));
+        }
+        while (queries.size() > MAX_QUERIES) {
+            queries.remove(queries.keySet().iterator().next());
+        }
+
+        // the articles have to be in the log before the store file refers to them
+        Set<String> urls = new HashSet<>();
+        List<News> articles = new ArrayList<>();
+        for (Query query : queries.values()) {
+            for (News news : query.mNews) {
+                if (urls.add(news.getUrl())) {
+                    articles.add(news);
+                }
+            }
+        }
+        try {
+            mLog.putAll(articles);
+        } catch (IOException e) {
+            Log.e(TAG, "Problem appending to article log", e);
+            return;
+        }
+        mQueries = queries;
+        save();
+
+        // drop the articles no query refers to any more once they add up
+        try {
+            if (mLog.needsCompaction()) {
+                mLog.compact(urls);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Problem compacting article log", e);
+        }
+    }
+
+    /**
+     * Return the articles the log can store, the rest would be lost when the store is read.
+     */
+    private static List<News> storable(List<News> news) {
+        List<News> storable = new ArrayList<>(news.size());
+        for (News article : news) {
+            if (ArticleLog.canStore(article)) {
+                storable.add(article);
+            }
+        }
+        return storable;
+    }
+
+    /** Number of syncs in a row that failed */
+    public synchronized int getFailures() {
+        load();
+        return mFailures;
+    }
+
+    /** Earliest time the next sync may be attempted, 0 if it may run any time */
+    public synchronized long getNextAttemptAt() {
+        load();
+        return mNextAttemptAt;
+    }
+
+    /**
+     * Record the backoff state after a sync attempt.
+     */
+    public synchronized void setBackoff(int failures, long nextAttemptAt) {
+        load();
+        mFailures = failures;
+        mNextAttemptAt = nextAttemptAt;
+        save();
+    }
+
+    /**
+     * Read the file the first time the store is used. A missing or unreadable file
+     * leaves the store empty.
+     */
+    private void load() {
+        if (mQueries != null) {
+            return;
+        }
+        mQueries = new LinkedHashMap<>();
+        if (!mFile.exists()) {
+            return;
+        }
+        try {
+            read();
+        } catch (IOException e) {
+            Log.e(TAG, "Problem reading article store " + mFile, e);
+            mQueries.clear();
+            mFailures = 0;
+            mNextAttemptAt = 0;
+        }
+    }
+
+    private void save() {
+        File directory = mFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Unable to create store directory " + directory);
+            return;
+        }
+
+        File tmp = new File(mFile.getPath() + ".tmp");
+        try {
+            write(tmp);
+            IoUtils.replace(tmp, mFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing article store " + mFile, e);
+            tmp.delete();
+        }
+    }
+
+    private void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mFailures);
+            out.writeLong(mNextAttemptAt);
+            out.writeInt(mQueries.size());
+            for (Query query : mQueries.values()) {
+                out.writeUTF(query.mKey);
+                out.writeLong(query.mSyncedAt);
+                out.writeInt(query.mNews.size());
+                for (News news : query.mNews) {
+                    out.writeUTF(news.getUrl());
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void read() throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown article store format");
+            }
+            mFailures = in.readInt();
+            mNextAttemptAt = in.readLong();
+            // articles several queries share are decoded once
+            Map<String, News> articles = new HashMap<>();
+            int queryCount = in.readInt();
+            for (int i = 0; i < queryCount; i++) {
+                String key = in.readUTF();
+                long syncedAt = in.readLong();
+                int count = in.readInt();
+                List<News> news = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    String url = in.readUTF();
+                    News article = articles.get(url);
+                    if (article == null) {
+                        article = mLog.get(url);
+                        articles.put(url, article);
+                    }
+                    // an article lost with the end of the log leaves the rest of the query
+                    if (article != null) {
+                        news.add(article);
+                    }
+                }
+                mQueries.put(key, new Query(key, news, syncedAt));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The stored articles of one query and when they were synced.
+     */
+    public static class Query {
+
+        private final String mKey;
+        private final List<News> mNews;
+        private final long mSyncedAt;
+
+        Query(String key, List<News> news, long syncedAt) {
+            mKey = key;
+            mNews = Collections.unmodifiableList(new ArrayList<>(news));
+            mSyncedAt = syncedAt;
+        }
+
+        // getters
+
+        public String getKey() {
+            return mKey;
+        }
+
+        public List<News> getNews() {
+            return mNews;
+        }
+
+        /** Time of the sync that stored these articles */
+        public long getSyncedAt() {
+            return mSyncedAt;
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets a news request be called off from another thread. Cancelling disconnects the
+ * request's connection, which makes a blocked connect or read fail straight away instead
+ * of running to completion, and tells the registered listeners.
+ */
+public class Cancellation {
+
+    private boolean mCancelled;
+
+    /** Connection of the request in progress, if any */
+    private HttpURLConnection mConnection;
+
+    private final List<Runnable> mListeners = new ArrayList<>();
+
+    /**
+     * Cancel the request. Calling this more than once has no further effect.
+     */
+    public void cancel() {
+        HttpURLConnection connection;
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            connection = mConnection;
+            listeners = new ArrayList<>(mListeners);
+        }
+
+        // outside the lock, disconnecting and the listeners may block
+        if (connection != null) {
+            connection.disconnect();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Run the listener when this is cancelled, or right away if it already is.
+     */
+    public void addOnCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (!mCancelled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    public synchronized void removeOnCancelListener(Runnable listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Tie the connection of the request about to be made to this cancellation.
+     *
+     * @throws InterruptedIOException if the request has already been cancelled
+     */
+    synchronized void attach(HttpURLConnection connection) throws IOException {
+        if (mCancelled) {
+            throw new InterruptedIOException("Request cancelled");
+        }
+        mConnection = connection;
+    }
+
+    synchronized void detach() {
+        mConnection = null;
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops requests to a server that keeps failing, so the app serves its cached copies
+ * instead of waiting on timeouts and retries, and doesn't use up the API key's rate limit
+ * on requests that won't succeed. After {@link #DEFAULT_FAILURE_THRESHOLD} failed requests
+ * in a row, or a Retry-After longer than the app will wait, the breaker opens and refuses
+ * requests for a while. Then one trial request is let through: if it succeeds the breaker
+ * closes, otherwise it opens again for twice as long.
+ */
+public class CircuitBreaker {
+
+    /** Tag for log messages */
+    private static final String TAG = CircuitBreaker.class.getSimpleName();
+
+    /** Failed requests in a row that open the breaker */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+    /** How long the breaker first stays open */
+    public static final long DEFAULT_OPEN_MILLIS = 30 * 1000L;
+
+    /** Longest the breaker stays open before a trial request */
+    public static final long DEFAULT_MAX_OPEN_MILLIS = 5 * 60 * 1000L;
+
+    /** State of a breaker */
+    public enum State {
+        /** Requests go through */
+        CLOSED,
+        /** Requests are refused until the retry time */
+        OPEN,
+        /** One trial request is deciding whether to close again */
+        HALF_OPEN
+    }
+
+    /** Breakers of the app's requests, by server */
+    private static final Map<String, CircuitBreaker> sBreakers = new HashMap<>();
+
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+    private final long mMaxOpenMillis;
+    private final NewsSync.Clock mClock;
+
+    private State mState = State.CLOSED;
+    private int mFailures;
+
+    /** How long the breaker opens for next time it trips */
+    private long mNextOpenMillis;
+
+    /** Time requests are let through again while open */
+    private long mRetryAt;
+
+    /** Time the trial request was let through while half open */
+    private long mTrialStartedAt;
+
+    /**
+     * Return the breaker of the app's requests to the server of the URL.
+     */
+    public static CircuitBreaker forServer(URL url) {
+        String server = url.getProtocol() + "://" + url.getAuthority();
+        synchronized (sBreakers) {
+            CircuitBreaker breaker = sBreakers.get(server);
+            if (breaker == null) {
+                breaker = new CircuitBreaker(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS,
+                        DEFAULT_MAX_OPEN_MILLIS, NewsSync.SYSTEM_CLOCK);
+                sBreakers.put(server, breaker);
+            }
+            return breaker;
+        }
+    }
+
+    /**
+     * create a new {@link CircuitBreaker}.
+     *
+     * @param failureThreshold is the number of failed requests in a row that opens it
+     * @param openMillis is how long it first stays open, doubled each time a trial fails
+     * @param maxOpenMillis is the longest it stays open
+     * @param clock to time the opening with
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis, long maxOpenMillis,
+                          NewsSync.Clock clock) {
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+        mMaxOpenMillis = maxOpenMillis;
+        mNextOpenMillis = openMillis;
+        mClock = clock;
+    }
+
+    /**
+     * Return true if a request may be sent now; its outcome must then be reported to
+     * {@link #onSuccess} or {@link #onFailure}. While half open only the trial request is
+     * let through, or another if the trial hasn't reported back for a while.
+     */
+    public synchronized boolean allowRequest() {
+        long now = mClock.currentTimeMillis();
+        switch (mState) {
+            case OPEN:
+                if (now < mRetryAt) {
+                    return false;
+                }
+                mState = State.HALF_OPEN;
+                mTrialStartedAt = now;
+                return true;
+            case HALF_OPEN:
+                // a trial that was cancelled never reports back
+                if (now - mTrialStartedAt < mOpenMillis) {
+                    return false;
+                }
+                mTrialStartedAt = now;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Return true if requests are being refused, without taking the trial request.
+     */
+    public synchronized boolean isOpen() {
+        return mState == State.OPEN && mClock.currentTimeMillis() < mRetryAt;
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+
+    /** Time requests are let through again, if the breaker is open */
+    public synchronized long getRetryAt() {
+        return mRetryAt;
+    }
+
+    /**
+     * The server answered the request, so it is healthy.
+     */
+    public synchronized void onSuccess() {
+        if (mState != State.CLOSED) {
+            Log.i(TAG, "onSuccess: Closing");
+        }
+        mState = State.CLOSED;
+        mFailures = 0;
+        mNextOpenMillis = mOpenMillis;
+    }
+
+    /**
+     * The request failed, even after its retries. Requests sent before the breaker opened
+     * may still fail while it is open; they neither reopen it nor lengthen the wait.
+     */
+    public synchronized void onFailure() {
+        if (mState == State.OPEN) {
+            return;
+        }
+        mFailures++;
+        if (mState == State.HALF_OPEN || mFailures >= mFailureThreshold) {
+            open(mClock.currentTimeMillis() + mNextOpenMillis);
+            mNextOpenMillis = Math.min(mNextOpenMillis * 2, mMaxOpenMillis);
+        }
+    }
+
+    /**
+     * The server asked not to be sent requests for the given time.
+     */
+    public synchronized void onRetryAfter(long delayMillis) {
+        long retryAt = mClock.currentTimeMillis() + delayMillis;
+        open(Math.max(retryAt, mState == State.OPEN ? mRetryAt : 0));
+    }
+
+    private void open(long retryAt) {
+        Log.i(TAG, "open: Refusing requests for " + (retryAt - mClock.currentTimeMillis())
+                + " ms after " + mFailures + " failures");
+        mState = State.OPEN;
+        mRetryAt = retryAt;
+    }
+
+}
@@ -0,0 +1,219 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+/**
+ * Chooses how the app fetches from the quality of the network, measured by the requests it
+ * has completed: the time to the response headers, and the throughput of bodies big enough
+ * for it to mean something, each as a moving average. A fast link gets large pages and
+ * short timeouts; a slow one gets small pages that arrive quickly, the pager fetching the
+ * rest as the user scrolls, longer timeouts, and no prefetching. The policy only depends on
+ * the samples it is given, so the same trace always leads to the same choices. A change
+ * of quality has to be confirmed by the next sample too, so one odd request doesn't change
+ * the page size, and with it the queries' cache keys.
+ */
+public class FetchPolicy implements HttpTransport.Listener {
+
+    /** Tag for log messages */
+    private static final String TAG = FetchPolicy.class.getSimpleName();
+
+    /** How good the network has been lately */
+    public enum Quality {
+        /** Nothing measured yet */
+        UNKNOWN,
+        SLOW,
+        MODERATE,
+        FAST
+    }
+
+    /** Articles per page until the network has been measured, and on a slow one */
+    static final int SLOW_PAGE_SIZE = 10;
+
+    /** Articles per page on a moderate network */
+    static final int MODERATE_PAGE_SIZE = 20;
+
+    /** Articles per page on a fast network */
+    static final int FAST_PAGE_SIZE = 50;
+
+    // a network is fast when both of these hold
+    static final long FAST_LATENCY_MILLIS = 300;
+    static final long FAST_BYTES_PER_SECOND = 256 * 1024;
+
+    // and slow when either of these does
+    static final long SLOW_LATENCY_MILLIS = 1500;
+    static final long SLOW_BYTES_PER_SECOND = 24 * 1024;
+
+    /** Smallest body whose read time says more about throughput than about latency */
+    static final long MIN_THROUGHPUT_BYTES = 16 * 1024;
+
+    // weight of the newest sample in the moving averages
+    private static final double SMOOTHING = 0.3;
+
+    // samples in a row that must point to another measured quality before it is taken
+    private static final int CONFIRMATIONS = 2;
+
+    // timeouts on a fast and a slow network; in between the transport's defaults are used
+    private static final int FAST_CONNECT_TIMEOUT_MILLIS = 8000;
+    private static final int FAST_READ_TIMEOUT_MILLIS = 8000;
+    private static final int SLOW_CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int SLOW_READ_TIMEOUT_MILLIS = 20000;
+
+    /** Policy of the app's shared transport, created on first use */
+    private static FetchPolicy sDefault;
+
+    /** Transport whose timeouts follow the measured quality, or null */
+    private final HttpTransport mTransport;
+
+    // moving averages, negative until the first sample
+    private double mLatencyMillis = -1;
+    private double mBytesPerSecond = -1;
+
+    private Quality mQuality = Quality.UNKNOWN;
+
+    // samples in a row that pointed to another quality than mQuality
+    private int mDisagreements;
+
+    // network the samples were measured on
+    private String mNetwork;
+
+    /**
+     * Return the policy fed by the app's shared transport.
+     */
+    public static synchronized FetchPolicy getDefault() {
+        if (sDefault == null) {
+            sDefault = new FetchPolicy(HttpTransport.getDefault());
+            HttpTransport.getDefault().setListener(sDefault);
+        }
+        return sDefault;
+    }
+
+    /**
+     * create a new {@link FetchPolicy}. It only measures the requests it is told about, see
+     * {@link HttpTransport#setListener}.
+     *
+     * @param transport to set the timeouts of, or null
+     */
+    public FetchPolicy(HttpTransport transport) {
+        mTransport = transport;
+    }
+
+    @Override
+    public synchronized void onResponse(long firstByteMillis, long bodyBytes,
+                                        long bodyMillis) {
+        mLatencyMillis = average(mLatencyMillis, firstByteMillis);
+        if (bodyBytes >= MIN_THROUGHPUT_BYTES) {
+            mBytesPerSecond = average(mBytesPerSecond,
+                    bodyBytes * 1000.0 / Math.max(bodyMillis, 1));
+        }
+        update();
+    }
+
+    @Override
+    public synchronized void onFailure(long elapsedMillis) {
+        // a request that timed out or broke counts as a very slow one
+        mLatencyMillis = average(mLatencyMillis,
+                Math.max(elapsedMillis, 2 * SLOW_LATENCY_MILLIS));
+        update();
+    }
+
+    /**
+     * Forget what was measured if the device is on another network than the last time this
+     * was called.
+     *
+     * @param network names the active network, such as its type and subtype, or null
+     */
+    public synchronized void setNetwork(String network) {
+        if (network == null ? mNetwork == null : network.equals(mNetwork)) {
+            return;
+        }
+        mNetwork = network;
+        mLatencyMillis = -1;
+        mBytesPerSecond = -1;
+        update();
+    }
+
+    public synchronized Quality getQuality() {
+        return mQuality;
+    }
+
+    /** Articles to ask for in each page */
+    public synchronized int getPageSize() {
+        switch (mQuality) {
+            case FAST:
+                return FAST_PAGE_SIZE;
+            case MODERATE:
+                return MODERATE_PAGE_SIZE;
+            default:
+                return SLOW_PAGE_SIZE;
+        }
+    }
+
+    public synchronized int getConnectTimeoutMillis() {
+        switch (mQuality) {
+            case FAST:
+                return FAST_CONNECT_TIMEOUT_MILLIS;
+            case SLOW:
+                return SLOW_CONNECT_TIMEOUT_MILLIS;
+            default:
+                return HttpTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        }
+    }
+
+    public synchronized int getReadTimeoutMillis() {
+        switch (mQuality) {
+            case FAST:
+                return FAST_READ_TIMEOUT_MILLIS;
+            case SLOW:
+                return SLOW_READ_TIMEOUT_MILLIS;
+            default:
+                return HttpTransport.DEFAULT_READ_TIMEOUT_MILLIS;
+        }
+    }
+
+    /** True if the network is good enough to fetch what the user hasn't asked for yet */
+    public synchronized boolean shouldPrefetch() {
+        return mQuality != Quality.SLOW;
+    }
+
+    private static double average(double average, double sample) {
+        return average < 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    private void update() {
+        Quality quality = classify();
+        if (quality == mQuality) {
+            mDisagreements = 0;
+            return;
+        }
+        // the first measurement and starting over are taken right away
+        if (mQuality != Quality.UNKNOWN && quality != Quality.UNKNOWN
+                && ++mDisagreements < CONFIRMATIONS) {
+            return;
+        }
+        mDisagreements = 0;
+        Log.i(TAG, "update: Network quality " + mQuality + " -> " + quality
+                + ", latency " + (long) mLatencyMillis + " ms, "
+                + (long) mBytesPerSecond + " bytes/s");
+        mQuality = quality;
+        if (mTransport != null) {
+            mTransport.setTimeouts(getConnectTimeoutMillis(), getReadTimeoutMillis());
+        }
+    }
+
+    private Quality classify() {
+        if (mLatencyMillis < 0) {
+            return Quality.UNKNOWN;
+        }
+        boolean throughputKnown = mBytesPerSecond >= 0;
+        if (mLatencyMillis > SLOW_LATENCY_MILLIS
+                || (throughputKnown && mBytesPerSecond < SLOW_BYTES_PER_SECOND)) {
+            return Quality.SLOW;
+        }
+        if (mLatencyMillis <= FAST_LATENCY_MILLIS && throughputKnown
+                && mBytesPerSecond >= FAST_BYTES_PER_SECOND) {
+            return Quality.FAST;
+        }
+        return Quality.MODERATE;
+    }
+
+}
@@ -0,0 +1,332 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Makes GET requests that ask for gzip and leave the connection open for reuse.
+ * HttpURLConnection keeps idle keep-alive connections in a process wide pool, but only
+ * when the response body is read to the end and closed instead of calling disconnect(),
+ * which closes the socket and throws away the TLS session with it.
+ */
+public class HttpTransport {
+
+    /** Default time allowed to establish a connection */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+
+    /** Default time allowed between bytes of the response */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+
+    // size of the buffer used to drain unread response bytes
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    // most unread response bytes drained to keep a connection, past which it is dropped
+    static final int MAX_DRAIN_BYTES = 16 * 1024;
+
+    /** Transport shared by the app's requests */
+    private static final HttpTransport sDefault = new HttpTransport();
+
+    private volatile int mConnectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int mReadTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    /** Response body bytes received over the wire, before decompression */
+    private final AtomicLong mBytesRead = new AtomicLong();
+
+    /** Told how each request went, or null */
+    private volatile Listener mListener;
+
+    /**
+     * Return the transport shared by the app's requests.
+     */
+    public static HttpTransport getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Set the connect and read timeouts used by requests made from now on.
+     */
+    public void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return mConnectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return mReadTimeoutMillis;
+    }
+
+    /**
+     * Set the listener told about every request from now on, or null for none.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Return the number of compressed body bytes read by this transport so far.
+     */
+    public long getBytesRead() {
+        return mBytesRead.get();
+    }
+
+    /**
+     * Send a GET request with the given extra headers. The returned {@link Response} must be
+     * closed so its connection can go back to the pool.
+     */
+    public Response get(URL url, Map<String, String> headers) throws IOException {
+        return get(url, headers, null);
+    }
+
+    /**
+     * Send a GET request that the given {@link Cancellation} can abort at any point up to
+     * the response being closed.
+     */
+    public Response get(URL url, Map<String, String> headers, Cancellation cancellation)
+            throws IOException {
+        NewsMetrics metrics = NewsMetrics.getDefault();
+        metrics.increment(NewsMetrics.HTTP_REQUESTS);
+        long requestedAt = System.nanoTime();
+
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        if (cancellation != null) {
+            cancellation.attach(urlConnection);
+        }
+        urlConnection.setConnectTimeout(mConnectTimeoutMillis);
+        urlConnection.setReadTimeout(mReadTimeoutMillis);
+        urlConnection.setRequestMethod("GET");
+        // asking for gzip ourselves means we also have to decode it ourselves
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                urlConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        try {
+            long connectingAt = metrics.startTimer();
+            urlConnection.connect();
+            metrics.stopTimer(NewsMetrics.HTTP_CONNECT, connectingAt);
+            return new Response(urlConnection, cancellation);
+        } catch (IOException e) {
+            metrics.increment(NewsMetrics.HTTP_FAILURES);
+            if (cancellation != null) {
+                cancellation.detach();
+            }
+            onFailure(requestedAt, cancellation);
+            throw e;
+        } catch (RuntimeException e) {
+            // HttpURLConnection can fail this way when disconnected from another thread
+            if (cancellation != null) {
+                cancellation.detach();
+                if (cancellation.isCancelled()) {
+                    throw new InterruptedIOException("Request cancelled");
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void onFailure(long requestedAt, Cancellation cancellation) {
+        Listener listener = mListener;
+        // a cancelled request says nothing about the network
+        if (listener != null && (cancellation == null || !cancellation.isCancelled())) {
+            listener.onFailure((System.nanoTime() - requestedAt) / 1000000);
+        }
+    }
+
+    /**
+     * Told how each request went, to measure the network by.
+     */
+    public interface Listener {
+
+        /**
+         * A response was read to the end.
+         *
+         * @param firstByteMillis is the time from sending the request to the headers
+         * @param bodyBytes is the size of the body as received
+         * @param bodyMillis is the time from the headers to the end of the body
+         */
+        void onResponse(long firstByteMillis, long bodyBytes, long bodyMillis);
+
+        /**
+         * A request failed other than by being cancelled, after the given time.
+         */
+        void onFailure(long elapsedMillis);
+    }
+
+    /**
+     * The status, headers and body of a response.
+     */
+    public class Response {
+
+        private final HttpURLConnection mConnection;
+        private final Cancellation mCancellation;
+        private final int mCode;
+        private final long mFirstByteMillis;
+        private final long mHeadersAt;
+        private CountingInputStream mRawStream;
+        private InputStream mBody;
+
+        Response(HttpURLConnection connection, Cancellation cancellation) throws IOException {
+            mConnection = connection;
+            mCancellation = cancellation;
+            NewsMetrics metrics = NewsMetrics.getDefault();
+            long sentAt = System.nanoTime();
+            mCode = connection.getResponseCode();
+            mHeadersAt = System.nanoTime();
+            mFirstByteMillis = (mHeadersAt - sentAt) / 1000000;
+            metrics.record(NewsMetrics.HTTP_FIRST_BYTE, (mHeadersAt - sentAt) / 1000);
+            if (mCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                metrics.increment(NewsMetrics.HTTP_NOT_MODIFIED);
+            }
+        }
+
+        public int getCode() {
+            return mCode;
+        }
+
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        /**
+         * Return the response body, decompressed if the server sent it gzipped. Closing the
+         * body doesn't release the connection, {@link #close()} does.
+         */
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                InputStream source = openSource();
+                mRawStream = new CountingInputStream(
+                        source != null ? source : new ByteArrayInputStream(new byte[0]));
+                mBody = "gzip".equalsIgnoreCase(mConnection.getContentEncoding())
+                        ? new GZIPInputStream(mRawStream) : mRawStream;
+            }
+            return mBody;
+        }
+
+        /**
+         * Read whatever is left of the body and close it, leaving the connection open for
+         * the next request to the same host. A body with more than {@link #MAX_DRAIN_BYTES}
+         * left unread, such as an image over its size limit, isn't worth downloading to
+         * keep the connection, so the connection is disconnected instead.
+         */
+        public void close() throws IOException {
+            if (mCancellation != null) {
+                mCancellation.detach();
+                if (mCancellation.isCancelled()) {
+                    // the connection has been disconnected, there is nothing to drain
+                    return;
+                }
+            }
+
+            // the body stream ignores close() from readers, so its source is still open here
+            if (mRawStream == null) {
+                InputStream source = openSource();
+                if (source == null) {
+                    onCompleted(0);
+                    return;
+                }
+                mRawStream = new CountingInputStream(source);
+            }
+            int length = mConnection.getContentLength();
+            if (length - mRawStream.mCount > MAX_DRAIN_BYTES) {
+                mConnection.disconnect();
+                return;
+            }
+            try {
+                byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+                long limit = mRawStream.mCount + MAX_DRAIN_BYTES;
+                while (mRawStream.read(buffer) != -1) {
+                    // discard, but count, until the drain isn't worth it
+                    if (mRawStream.mCount > limit) {
+                        mConnection.disconnect();
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                onFailure(mHeadersAt, mCancellation);
+                throw e;
+            } finally {
+                mRawStream.mSource.close();
+            }
+            onCompleted(mRawStream.mCount);
+        }
+
+        private void onCompleted(long bodyBytes) {
+            long bodyNanos = System.nanoTime() - mHeadersAt;
+            NewsMetrics.getDefault().record(NewsMetrics.HTTP_BODY, bodyNanos / 1000);
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onResponse(mFirstByteMillis, bodyBytes, bodyNanos / 1000000);
+            }
+        }
+
+        /**
+         * Return the connection's body stream, or null if the response has none.
+         */
+        private InputStream openSource() {
+            if (mCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                return mConnection.getErrorStream();
+            }
+            try {
+                return mConnection.getInputStream();
+            } catch (IOException e) {
+                // no body, e.g. a 304 on some implementations
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes passing through it, and adds them to the transport's count.
+     */
+    private class CountingInputStream extends FilterInputStream {
+
+        // the connection's stream, closed only by Response.close()
+        final InputStream mSource;
+
+        // bytes read from this response
+        long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+            mSource = in;
+        }
+
+        @Override
+        public void close() {
+            // leave the connection's stream open so Response.close() can drain it
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+                mBytesRead.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+                mBytesRead.addAndGet(read);
+            }
+            return read;
+        }
+    }
+
+}
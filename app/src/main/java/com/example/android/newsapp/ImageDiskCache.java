@@ -0,0 +1,169 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Disk cache of downloaded image bytes, one file per image URL, so thumbnails survive the
+ * process and aren't downloaded again. Files are touched when read; once the directory
+ * grows past its budget, the least recently used files are deleted.
+ */
+public class ImageDiskCache {
+
+    /** Tag for log messages */
+    private static final String TAG = ImageDiskCache.class.getSimpleName();
+
+    // file extension of cached images
+    private static final String SUFFIX = ".img";
+
+    /** Directory holding the image files */
+    private final File mDirectory;
+
+    /** Total size the image files may take up */
+    private final long mMaxBytes;
+
+    /** Size of the files, -1 until the directory has been measured */
+    private long mSize = -1;
+
+    /**
+     * create a new {@link ImageDiskCache}.
+     *
+     * @param directory to keep the image files in
+     * @param maxBytes is the total size allowed on disk
+     */
+    public ImageDiskCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Return the cached bytes of the image at the URL, or null if it isn't cached.
+     */
+    public synchronized byte[] get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            byte[] data = read(file);
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            Log.e(TAG, "Problem reading cached image " + file, e);
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Store the bytes of the image at the URL, evicting the least recently used images if
+     * the cache is over its budget.
+     */
+    public synchronized void put(String url, byte[] data) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(TAG, "Unable to create image cache directory " + mDirectory);
+            return;
+        }
+        measure();
+
+        File file = fileFor(url);
+        File tmp = new File(mDirectory, file.getName() + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            delete(file);
+            IoUtils.replace(tmp, file);
+            mSize += file.length();
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing cached image " + file, e);
+            tmp.delete();
+        }
+
+        if (mSize > mMaxBytes) {
+            trimToSize();
+        }
+    }
+
+    /** Total size of the cached images */
+    public synchronized long size() {
+        measure();
+        return mSize;
+    }
+
+    private void measure() {
+        if (mSize >= 0) {
+            return;
+        }
+        mSize = 0;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                mSize += file.length();
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used images until the cache fits in its budget.
+     */
+    private void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // least recently used first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (mSize <= mMaxBytes) {
+                break;
+            }
+            delete(file);
+        }
+    }
+
+    private void delete(File file) {
+        long length = file.length();
+        if (file.delete() && mSize >= 0) {
+            mSize -= length;
+        }
+    }
+
+    private File fileFor(String url) {
+        return new File(mDirectory, NewsCache.hash(url) + SUFFIX);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
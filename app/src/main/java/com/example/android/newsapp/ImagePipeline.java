@@ -0,0 +1,366 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads images by URL for views of a known size: from a memory cache of decoded images,
+ * else from the disk cache or the network, decoded at the smallest power of two scale that
+ * still covers the view. Requests for the same image and size share one load, and a load
+ * is called off once every request for it has been cancelled. The platform's bitmap
+ * handling is kept behind {@link Decoder} so the rest runs on the JVM.
+ *
+ * @param <T> is the type of the decoded image
+ */
+public class ImagePipeline<T> {
+
+    /** Tag for log messages */
+    private static final String TAG = ImagePipeline.class.getSimpleName();
+
+    private final Downloader mDownloader;
+    private final Decoder<T> mDecoder;
+    private final ImageDiskCache mDiskCache;
+    private final Executor mWorkers;
+    private final Executor mDeliverOn;
+
+    /** Total size of the decoded images kept in memory */
+    private final long mMaxMemoryBytes;
+
+    /** Decoded images by key, least recently used first; guarded by itself */
+    private final LinkedHashMap<String, T> mMemory = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Size of the images in mMemory */
+    private long mMemoryBytes;
+
+    /** Loads in progress by key; guarded by itself */
+    private final Map<String, Load> mLoads = new HashMap<>();
+
+    /**
+     * create a new {@link ImagePipeline}.
+     *
+     * @param downloader fetches images missing from the caches
+     * @param decoder reads and decodes the image bytes
+     * @param diskCache keeps downloaded bytes, or null for none
+     * @param maxMemoryBytes is the total size of decoded images kept in memory
+     * @param workers run the loads
+     * @param deliverOn runs the callbacks, normally on the main thread
+     */
+    public ImagePipeline(Downloader downloader, Decoder<T> decoder, ImageDiskCache diskCache,
+                         long maxMemoryBytes, Executor workers, Executor deliverOn) {
+        mDownloader = downloader;
+        mDecoder = decoder;
+        mDiskCache = diskCache;
+        mMaxMemoryBytes = maxMemoryBytes;
+        mWorkers = workers;
+        mDeliverOn = deliverOn;
+    }
+
+    /**
+     * Return the image at the URL decoded for a view of the given size if it is in memory,
+     * or null.
+     */
+    public T getCached(String url, int width, int height) {
+        synchronized (mMemory) {
+            return mMemory.get(keyFor(url, width, height));
+        }
+    }
+
+    /**
+     * Load the image at the URL for a view of the given size and pass it to the callback,
+     * or null if it couldn't be loaded. An image already in memory is passed before this
+     * returns. The callback is never called once the returned request is cancelled.
+     */
+    public Request load(String url, int width, int height, Callback<T> callback) {
+        String key = keyFor(url, width, height);
+        T cached;
+        synchronized (mMemory) {
+            cached = mMemory.get(key);
+        }
+        if (cached != null) {
+            callback.onImage(cached);
+            return new Request(null, callback);
+        }
+
+        Load load;
+        Request request;
+        boolean start = false;
+        synchronized (mLoads) {
+            load = mLoads.get(key);
+            if (load == null) {
+                load = new Load(key, url, width, height);
+                mLoads.put(key, load);
+                start = true;
+            }
+            request = new Request(load, callback);
+            load.mRequests.add(request);
+        }
+        if (start) {
+            mWorkers.execute(load);
+        }
+        return request;
+    }
+
+    /** Number of loads in progress */
+    public int getLoadCount() {
+        synchronized (mLoads) {
+            return mLoads.size();
+        }
+    }
+
+    /** Total size of the decoded images in memory */
+    public long getMemoryBytes() {
+        synchronized (mMemory) {
+            return mMemoryBytes;
+        }
+    }
+
+    /**
+     * Return the largest power of two to divide the image's dimensions by that still
+     * leaves both at least as large as the view's, or 1 if either size is unknown.
+     */
+    static int sampleSizeFor(int width, int height, int viewWidth, int viewHeight) {
+        int sampleSize = 1;
+        if (width <= 0 || height <= 0 || viewWidth <= 0 || viewHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= viewWidth && height / (sampleSize * 2) >= viewHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static String keyFor(String url, int width, int height) {
+        return width + "x" + height + " " + url;
+    }
+
+    private void remember(String key, T image) {
+        long size = mDecoder.sizeOf(image);
+        synchronized (mMemory) {
+            T previous = mMemory.put(key, image);
+            if (previous != null) {
+                mMemoryBytes -= mDecoder.sizeOf(previous);
+            }
+            mMemoryBytes += size;
+            // drop the least recently used images until the rest fit
+            while (mMemoryBytes > mMaxMemoryBytes && !mMemory.isEmpty()) {
+                Map.Entry<String, T> eldest = mMemory.entrySet().iterator().next();
+                mMemoryBytes -= mDecoder.sizeOf(eldest.getValue());
+                mMemory.remove(eldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * Fetches images that aren't cached.
+     */
+    public interface Downloader {
+
+        /**
+         * Return the bytes of the image at the URL. Should give up when the cancellation
+         * is cancelled.
+         */
+        byte[] download(String url, Cancellation cancellation) throws IOException;
+    }
+
+    /**
+     * Decodes image bytes on the platform.
+     */
+    public interface Decoder<T> {
+
+        /**
+         * Return the width and height of the encoded image, or null if it can't be read.
+         */
+        int[] readSize(byte[] data);
+
+        /**
+         * Decode the image with each dimension divided by the sample size, or return null
+         * if it can't be decoded.
+         */
+        T decode(byte[] data, int sampleSize);
+
+        /** Bytes of memory the decoded image takes up */
+        long sizeOf(T image);
+    }
+
+    /**
+     * Receives a loaded image, or null if it couldn't be loaded.
+     */
+    public interface Callback<T> {
+        void onImage(T image);
+    }
+
+    /**
+     * One caller's interest in an image.
+     */
+    public class Request {
+
+        private final Load mLoad;
+        private final Callback<T> mCallback;
+        private volatile boolean mCancelled;
+
+        Request(Load load, Callback<T> callback) {
+            mLoad = load;
+            mCallback = callback;
+        }
+
+        /**
+         * Stop waiting for the image. The load is called off if no one else is waiting for
+         * it.
+         */
+        public void cancel() {
+            mCancelled = true;
+            if (mLoad == null) {
+                return;
+            }
+            boolean abandoned = false;
+            synchronized (mLoads) {
+                if (mLoad.mRequests.remove(this) && mLoad.mRequests.isEmpty()
+                        && mLoads.get(mLoad.mKey) == mLoad) {
+                    mLoads.remove(mLoad.mKey);
+                    abandoned = true;
+                }
+            }
+            // outside the lock, cancelling disconnects the download
+            if (abandoned) {
+                mLoad.mCancellation.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
+    /**
+     * Loading one image at one size for every request waiting for it.
+     */
+    private class Load implements Runnable {
+
+        final String mKey;
+        final String mUrl;
+        final int mWidth;
+        final int mHeight;
+        final Cancellation mCancellation = new Cancellation();
+
+        /** Requests waiting for the image; guarded by mLoads */
+        final List<Request> mRequests = new ArrayList<>(1);
+
+        Load(String key, String url, int width, int height) {
+            mKey = key;
+            mUrl = url;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public void run() {
+            T image = mCancellation.isCancelled() ? null : fetch();
+            if (image != null) {
+                remember(mKey, image);
+            }
+
+            final List<Request> requests;
+            synchronized (mLoads) {
+                if (mLoads.get(mKey) == this) {
+                    mLoads.remove(mKey);
+                }
+                requests = new ArrayList<>(mRequests);
+            }
+            if (mCancellation.isCancelled() || requests.isEmpty()) {
+                return;
+            }
+            final T delivered = image;
+            mDeliverOn.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Request request : requests) {
+                        if (!request.isCancelled()) {
+                            request.mCallback.onImage(delivered);
+                        }
+                    }
+                }
+            });
+        }
+
+        private T fetch() {
+            try {
+                byte[] data = mDiskCache != null ? mDiskCache.get(mUrl) : null;
+                if (data == null) {
+                    data = mDownloader.download(mUrl, mCancellation);
+                    if (data == null || mCancellation.isCancelled()) {
+                        return null;
+                    }
+                    if (mDiskCache != null) {
+                        mDiskCache.put(mUrl, data);
+                    }
+                }
+
+                // decode no more pixels than the view can show
+                int[] size = mDecoder.readSize(data);
+                if (size == null) {
+                    Log.e(TAG, "Unreadable image " + mUrl);
+                    return null;
+                }
+                return mDecoder.decode(data, sampleSizeFor(size[0], size[1], mWidth, mHeight));
+            } catch (IOException e) {
+                if (!mCancellation.isCancelled()) {
+                    Log.e(TAG, "Problem loading image " + mUrl, e);
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Downloads images through the app's {@link HttpTransport}.
+     */
+    public static class HttpDownloader implements Downloader {
+
+        private final int mMaxBytes;
+
+        /**
+         * create a new {@link HttpDownloader}.
+         *
+         * @param maxBytes is the largest image accepted
+         */
+        public HttpDownloader(int maxBytes) {
+            mMaxBytes = maxBytes;
+        }
+
+        @Override
+        public byte[] download(String url, Cancellation cancellation) throws IOException {
+            HttpTransport.Response response =
+                    HttpTransport.getDefault().get(new URL(url), null, cancellation);
+            try {
+                if (response.getCode() != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Error response code: " + response.getCode());
+                }
+                InputStream in = response.getBody();
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    if (out.size() > mMaxBytes) {
+                        throw new IOException("Image larger than " + mMaxBytes + " bytes");
+                    }
+                }
+                return out.toByteArray();
+            } finally {
+                response.close();
+            }
+        }
+    }
+
+}
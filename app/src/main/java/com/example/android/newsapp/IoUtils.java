@@ -0,0 +1,51 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * Small helpers shared by the classes that build request URLs and write files.
+ */
+final class IoUtils {
+
+    /**
+     * Create a private constructor because no one should ever create a {@link IoUtils}
+     * object.
+     */
+    private IoUtils() {
+    }
+
+    /**
+     * Return the value encoded for a URL query parameter.
+     */
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // every Java runtime supports UTF-8
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Replace the file with the fully written temporary file in one step, so readers and a
+     * crash never see half a file. Some file systems won't rename over an existing file,
+     * so it is deleted and the rename tried again; if that fails too the temporary file
+     * is deleted.
+     *
+     * @throws IOException if the temporary file couldn't be renamed
+     */
+    static void replace(File tmp, File file) throws IOException {
+        if (tmp.renameTo(file)) {
+            return;
+        }
+        file.delete();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to rename " + tmp);
+        }
+    }
+
+}
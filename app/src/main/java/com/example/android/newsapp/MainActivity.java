@@ -9,8 +9,11 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -19,23 +22,51 @@ import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 // used some code from the QuakeReport App Udacity
 
 public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<News>>,
  SharedPreferences.OnSharedPreferenceChangeListener {
 
-    // URL with my private key from Guardian API
-    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search";
-
-    // api key
-    private static final String MY_API_KEY = "c275cc44-cc41-4cb6-a339-aa1c72d60bf0";
-
     // adapter for the list of news
     private NewsAdapter mAdapter;
 
+    // adapter for the results of a search, shown instead of mAdapter while searching
+    private NewsAdapter mSearchAdapter;
+
+    // most search results shown
+    private static final int MAX_SEARCH_RESULTS = 100;
+
+    // list view showing the news or the search results
+    private ListView mListView;
+
+    // loads the pages after the first as the user scrolls
+    private NewsPager mPager;
+
+    // works out the changes between the list shown and a newly loaded one
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // posts finished diffs back to the UI thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // bumped by every change of the list's contents so stale diffs are dropped
+    private int mListGeneration;
+
+    // rebinds the visible rows at the start of every minute so their ages stay current
+    private final Runnable mDateTicker = new Runnable() {
+        @Override
+        public void run() {
+            mAdapter.notifyDataSetChanged();
+            mSearchAdapter.notifyDataSetChanged();
+            scheduleDateTick();
+        }
+    };
+
     // constant value for the news loader Id.
     private static final int NEWS_LOADER_ID = 1;
 
@@ -50,8 +81,17 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // time loads in debug builds, see onStop
+        NewsMetrics.getDefault().setEnabled(BuildConfig.DEBUG);
+
+        // show the articles' ages in the user's language
+        NewsDates.setRelativeStrings(getString(R.string.date_just_now),
+                getString(R.string.date_minutes_ago), getString(R.string.date_hours_ago),
+                getString(R.string.date_days_ago));
+
         // find a reference to the {@link ListView} in the layout
         ListView newsListView = (ListView) findViewById(R.id.list);
+        mListView = newsListView;
 
         // connect and set empty view
         mEmptyStateTextView = (TextView) findViewById(R.id.empty_view);
@@ -64,18 +104,41 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // so the list can be populated in the user interface
         newsListView.setAdapter(mAdapter);
 
+        // search results are shown through their own adapter so the loaded pages stay put
+        mSearchAdapter = new NewsAdapter(this, new ArrayList<News>());
+
+        // load more pages as the user scrolls towards the end of the list
+        mPager = new NewsPager(newsListView, mAdapter, NewsLoader.getCache(this));
+        mPager.reset(buildPagedQueryUrl());
+        newsListView.setOnScrollListener(mPager);
+
+        // stop loading the thumbnails of rows scrolled out of sight
+        newsListView.setRecyclerListener(mAdapter);
+
         // obtain a reference to the SharedPreference file for this app
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         // and register to be notified of preference changes
         // so we know when the user has adjusted the query settings
         prefs.registerOnSharedPreferenceChangeListener(this);
 
+        // keep the articles of the current settings fresh while the app isn't open
+        NewsSyncService.schedule(this);
+
         // set click listener to go to website
         newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> adapterView, View view, int i, long l) {
                 // find the current news article that was clicked on
-                News currentNewsArticle = mAdapter.getItem(i);
+                News currentNewsArticle = (News) adapterView.getItemAtPosition(i);
+
+                // read a prefetched article in the app, which works offline; the store
+                // answers from memory, so this doesn't wait for a prefetch writing to it
+                if (NewsLoader.getBodyStore(MainActivity.this)
+                        .contains(currentNewsArticle.getUrl())) {
+                    startActivity(ArticleActivity.newIntent(MainActivity.this,
+                            currentNewsArticle));
+                    return;
+                }
 
                 // convert the String URL into a URI object (to pass into the Intent
                 // constructor)
@@ -124,9 +187,14 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     @Override
     public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
         if (key.equals(getString(R.string.settings_editions_key)) ||
-                key.equals(getString(R.string.settings_order_by_key))) {
-            // Clear the ListView as a new query will be kicked off
-            mAdapter.clear();
+                key.equals(getString(R.string.settings_order_by_key)) ||
+                key.equals(getString(R.string.settings_multi_editions_key)) ||
+                key.equals(getString(R.string.settings_sections_key)) ||
+                key.equals(getString(R.string.settings_keyword_key))) {
+            // Keep the current rows until the new query's results are diffed in,
+            // and cancel the pages still loading for the old one
+            mListGeneration++;
+            mPager.reset(buildPagedQueryUrl());
 
             // Hide the empty state text view as the loading indicator will be displayed
             mEmptyStateTextView.setVisibility(View.GONE);
@@ -142,36 +210,19 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
 
     @Override
     public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
+        // with several editions combined or sections subscribed to, the loader fetches
+        // their searches all at once and merges them into one timeline; otherwise it loads
+        // the first page of the query
+        return new NewsLoader(this, NewsQueries.buildLoaderUrls(this),
+                NewsQueries.isNewestFirst(this));
+    }
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-
-        // getString retrieves a String value from the preferences. The second parameter
-        // is the default value for this preference.
-        String editions = sharedPrefs.getString(
-                getString(R.string.settings_editions_key),
-                getString(R.string.settings_editions_default)
-        );
-
-        String orderBy = sharedPrefs.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default)
-        );
-
-        // start building URL with Uri.parse
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-
-        // add parameters
-        uriBuilder.appendQueryParameter("editions", editions);
-        uriBuilder.appendQueryParameter("order-by", orderBy);
-        uriBuilder.appendQueryParameter("page-size", "10");
-        uriBuilder.appendQueryParameter("show-fields", "byline");
-        uriBuilder.appendQueryParameter("api-key", MY_API_KEY);
-        // get full url in log 'https://content.guardianapis.com/search?q=editions?q=us&order-by=newest&page-size=10&show-fields=byline'
-        Log.i(TAG, uriBuilder.toString());
-
-        // create a new loader for the given URL
-        return new NewsLoader(this, uriBuilder.toString());
+    /**
+     * Return the URL the pager loads more pages of, or null when editions are combined or
+     * the subscriptions take several searches, which only show the first page of each.
+     */
+    private String buildPagedQueryUrl() {
+        return NewsQueries.buildPagedUrl(this);
     }
 
     @Override
@@ -184,29 +235,172 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // set empty state text to display "No news articles found."
         mEmptyStateTextView.setText(R.string.no_news_articles);
 
-        // if there is a valid list of {@link News} objects,
-        // then add them to the adapter's data set. This will trigger
-        // the ListView to update.
-        if (news != null && !news.isEmpty()) {
-            mAdapter.addAll(news);
+        // page on at the page size page 1 was requested with, which follows the network
+        // and may have changed since the pager was reset
+        String pagedUrl = ((NewsLoader) loader).getPagedUrl();
+        if (pagedUrl == null ? mPager.getBaseUrl() != null
+                : !pagedUrl.equals(mPager.getBaseUrl())) {
+            mPager.reset(pagedUrl);
+        }
+
+        // the load failed, so the rows of an old query mustn't stay up as if they were
+        // this one's
+        if (news == null) {
+            mListGeneration++;
+            mAdapter.clear();
+            mPager.reset(pagedUrl);
+            mEmptyStateTextView.setText(R.string.news_load_failed);
+            return;
+        }
+
+        // if page 1 is still in the list, then work out how those rows have to change to
+        // match the new list, emptying them if it has no articles. This will trigger the
+        // ListView to update.
+        int end = getFirstPageEnd();
+        if (end >= 0) {
+            applyNews(news, end);
         }
     }
 
+    /**
+     * Diff the first {@code end} rows of the adapter against the given list on a background
+     * thread, then apply only the rows that changed, so a new delivery doesn't reset the
+     * list or the pages loaded after it.
+     */
+    private void applyNews(final List<News> news, final int end) {
+        final int generation = ++mListGeneration;
+        final List<News> shown = new ArrayList<>(end);
+        for (int i = 0; i < end; i++) {
+            shown.add(mAdapter.getItem(i));
+        }
+
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final NewsDiff diff = NewsDiff.calculate(shown, news);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // drop the diff if the rows changed while it was worked out
+                        if (generation != mListGeneration || getFirstPageEnd() != end) {
+                            return;
+                        }
+                        mAdapter.applyDiff(diff);
+                        mPager.setFirstPageCount(diff.getNewList().size());
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Return the number of rows at the top of the adapter that page 1 replaces: all of
+     * them while they are left over from an old query, otherwise the rows of the last
+     * page 1, or -1 if page 1 has been dropped from the window.
+     */
+    private int getFirstPageEnd() {
+        return mPager.isAwaitingFirstPage() ? mAdapter.getCount() : mPager.getFirstPageCount();
+    }
+
     @Override
     public void onLoaderReset(Loader<List<News>> loader) {
-        // loader reset, so we can clear out our existing data
+        // loader reset, so we can clear out our existing data and pages
+        mListGeneration++;
         mAdapter.clear();
+        mPager.reset(buildPagedQueryUrl());
         Log.i(TAG, "onLoaderReset: The loader has reset!!!!!!!!!!!");
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // the rows may have aged while the app was in the background
+        mDateTicker.run();
+
+        // and the device may have moved to a network that fetches differently
+        ConnectivityManager connMgr = (ConnectivityManager)
+                getSystemService(Context.CONNECTIVITY_SERVICE);
+        NewsSyncService.updateNetwork(connMgr.getActiveNetworkInfo());
+    }
+
+    private void scheduleDateTick() {
+        long now = System.currentTimeMillis();
+        mMainHandler.removeCallbacks(mDateTicker);
+        mMainHandler.postDelayed(mDateTicker,
+                NewsDates.MILLIS_PER_MINUTE - now % NewsDates.MILLIS_PER_MINUTE);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mMainHandler.removeCallbacks(mDateTicker);
+        // leave a snapshot of the load timings where adb can read it:
+        // adb shell run-as com.example.android.newsapp cat files/metrics.json
+        NewsMetrics metrics = NewsMetrics.getDefault();
+        if (metrics.isEnabled()) {
+            metrics.writeTo(new File(getFilesDir(), "metrics.json"));
+        }
+    }
+
     @Override
     // this method initializes the contents of the activity's options menu
     public boolean onCreateOptionsMenu(Menu menu) {
         // inflate the options menu we specified in XML
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // search the articles loaded so far on the device as the user types
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                showSearchResults(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                showSearchResults(newText);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                showSearchResults("");
+                return true;
+            }
+        });
         return true;
     }
 
+    /**
+     * Show the articles matching the query from the local search index, or the news
+     * list again when the query is empty.
+     */
+    private void showSearchResults(String query) {
+        if (query.trim().isEmpty()) {
+            if (mListView.getAdapter() != mAdapter) {
+                mListView.setAdapter(mAdapter);
+            }
+            return;
+        }
+
+        List<News> results = NewsSearchIndex.getDefault().search(query, MAX_SEARCH_RESULTS);
+        mSearchAdapter.setNotifyOnChange(false);
+        mSearchAdapter.clear();
+        mSearchAdapter.addAll(results);
+        mSearchAdapter.notifyDataSetChanged();
+        if (mListView.getAdapter() != mSearchAdapter) {
+            mListView.setAdapter(mSearchAdapter);
+        }
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
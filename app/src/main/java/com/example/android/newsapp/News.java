@@ -3,42 +3,103 @@ package com.example.android.newsapp;
 public class News {
 
     // title of new article
-    private String mTitle;
+    private final String mTitle;
 
-    // date of article published
-    private String mDate = NO_DATE_PROVIDED;
+    // time the article was published in epoch milliseconds, or NO_DATE_PROVIDED
+    private final long mPublishedAt;
 
-    // section name for article
-    private String mSection;
+    // section name for article, shared with the other articles of the section
+    private final String mSection;
 
-    // author of article
-    private String mAuthor = NO_AUTHOR_PROVIDED;
+    // author of article, shared with the author's other articles
+    private final String mAuthor;
 
     // url of article
-    private String mUrl;
+    private final String mUrl;
+
+    // url of the article's thumbnail image, or null
+    private final String mThumbnail;
+
+    // number of near duplicates of this article left out of the list it stands for
+    private final int mSimilarCount;
+
+    // what the list row shows for this article, built by the loader that delivered it
+    private NewsDisplay mDisplay;
 
     // constant value that represents no date provided for this news article
-    private static final String NO_DATE_PROVIDED = null;
+    private static final long NO_DATE_PROVIDED = NewsDates.NO_DATE;
 
     // constant value that represents no author provided for this news article
     private static final String NO_AUTHOR_PROVIDED = null;
 
+    // most distinct sections and bylines shared between articles
+    private static final int POOLED_STRINGS = 4096;
+
+    // sections and bylines repeat across articles, keep one copy of each
+    private static final StringPool sStrings = new StringPool(POOLED_STRINGS);
+
     /**
      * create a new News object
      *
      * @param title is title of the article
-     * @param date is the date of the article
+     * @param date is the date of the article, as "yyyy-MM-dd" or an ISO 8601 timestamp
      * @param section is the section the article is in
      * @param author is the author of the article
      * @param url is website of article
      */
 
     public News(String title, String date, String section, String author, String url) {
+        this(title, NewsDates.parse(date), section, author, url);
+    }
+
+    /**
+     * create a new News object
+     *
+     * @param title is title of the article
+     * @param publishedAt is the time the article was published in epoch milliseconds
+     * @param section is the section the article is in
+     * @param author is the author of the article
+     * @param url is website of article
+     */
+
+    public News(String title, long publishedAt, String section, String author, String url) {
+        this(title, publishedAt, section, author, url, null);
+    }
+
+    /**
+     * create a new News object with a thumbnail
+     *
+     * @param title is title of the article
+     * @param publishedAt is the time the article was published in epoch milliseconds
+     * @param section is the section the article is in
+     * @param author is the author of the article
+     * @param url is website of article
+     * @param thumbnail is the url of the article's thumbnail image, or null
+     */
+
+    public News(String title, long publishedAt, String section, String author, String url,
+                String thumbnail) {
+        this(title, publishedAt, section, author, url, thumbnail, 0);
+    }
+
+    private News(String title, long publishedAt, String section, String author, String url,
+                 String thumbnail, int similarCount) {
         mTitle = title;
-        mDate = date;
-        mSection = section;
-        mAuthor = author;
+        mPublishedAt = publishedAt;
+        mSection = sStrings.get(section);
+        mAuthor = sStrings.get(author);
         mUrl = url;
+        mThumbnail = thumbnail;
+        mSimilarCount = similarCount;
+    }
+
+    /**
+     * Return a copy of this article standing for itself and the given number of near
+     * duplicates, see {@link NewsClusterer}.
+     */
+    public News withSimilarCount(int similarCount) {
+        return new News(mTitle, mPublishedAt, mSection, mAuthor, mUrl, mThumbnail,
+                similarCount);
     }
 
     /**
@@ -50,9 +111,7 @@ public class News {
      */
 
     public News(String title, String section, String url) {
-        mTitle = title;
-        mSection = section;
-        mUrl = url;
+        this(title, NO_DATE_PROVIDED, section, NO_AUTHOR_PROVIDED, url);
     }
 
     // getters
@@ -61,8 +120,14 @@ public class News {
         return mTitle;
     }
 
+    /** Day the article was published as "yyyy-MM-dd", or null */
     public String getDate() {
-        return mDate;
+        return hasDate() ? NewsDates.formatDate(mPublishedAt) : null;
+    }
+
+    /** Time the article was published in epoch milliseconds, or {@link NewsDates#NO_DATE} */
+    public long getPublishedAt() {
+        return mPublishedAt;
     }
 
     public String getSection() {
@@ -77,9 +142,31 @@ public class News {
         return mUrl;
     }
 
+    /** Url of the article's thumbnail image, or null */
+    public String getThumbnail() {
+        return mThumbnail;
+    }
+
+    /** Number of near duplicates left out of the list this article stands for */
+    public int getSimilarCount() {
+        return mSimilarCount;
+    }
+
+    /**
+     * What the list row shows for this article. The loaders build it on their worker
+     * thread with {@link NewsDisplay#prepareAll}, anything else on first use; the
+     * model is immutable, so building it twice on different threads does no harm.
+     */
+    public NewsDisplay getDisplay() {
+        if (mDisplay == null) {
+            mDisplay = new NewsDisplay(this);
+        }
+        return mDisplay;
+    }
+
     // booleans for date and author
     public boolean hasDate() {
-        return mDate != NO_DATE_PROVIDED;
+        return mPublishedAt != NO_DATE_PROVIDED;
     }
 
     public boolean hasAuthor() {
@@ -1,19 +1,28 @@
 package com.example.android.newsapp;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import org.w3c.dom.Text;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 
-public class NewsAdapter extends ArrayAdapter<News> {
+public class NewsAdapter extends ArrayAdapter<News> implements AbsListView.RecyclerListener {
+
+    // the adapter's rows, the list ArrayAdapter was given
+    private final List<News> mNews;
+
+    // loads the thumbnails of the rows
+    private final ThumbnailLoader mThumbnails;
+
+    // "+2 similar stories" labels by count, formatted once each
+    private final SparseArray<String> mSimilarLabels = new SparseArray<>();
 
     /**
      * This is the custom constructor. The content is used to inflate the layout file,
@@ -26,6 +35,8 @@ public class NewsAdapter extends ArrayAdapter<News> {
         // Here, we initialize the ArrayAdapter's internal storage for the context and the list.
         // the second argument is used when the ArrayAdapter is populating a single TextView.
         super(context, 0, news);
+        mNews = news;
+        mThumbnails = ThumbnailLoader.getDefault(context);
     }
 
     /**
@@ -40,53 +51,140 @@ public class NewsAdapter extends ArrayAdapter<News> {
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
         // Check if the existing view is being reused, otherwise inflate the view
+        // and look up its child views once
         View listItemView = convertView;
+        ViewHolder holder;
         if (listItemView == null) {
             listItemView = LayoutInflater.from(getContext()).inflate(
                     R.layout.list_item, parent, false);
+            holder = new ViewHolder(listItemView);
+            listItemView.setTag(holder);
+        } else {
+            holder = (ViewHolder) listItemView.getTag();
         }
 
-        // get the {@link News} object located at this position in the list
-        News currentNewsArticle = getItem(position);
+        // get the display model of the {@link News} object located at this position in the
+        // list, built by the loader that delivered the article
+        NewsDisplay display = getItem(position).getDisplay();
 
-        // find the TextView with view Id title
-        TextView titleView = (TextView) listItemView.findViewById(R.id.title);
-        // set the text of news article title
-        titleView.setText(currentNewsArticle.getTitle());
+        // set the text of news article title and section
+        holder.titleView.setText(display.getTitle());
+        holder.sectionView.setText(display.getSection());
 
-        // find the TextView with the view Id section
-        TextView sectionView = (TextView) listItemView.findViewById(R.id.section);
-        // set the text of new article section
-        sectionView.setText(currentNewsArticle.getSection());
+        // set the date and the author, hiding them if not available
+        holder.dateView.setText(display.getDate());
+        holder.dateView.setVisibility(display.getDateVisibility());
+        holder.authorView.setText(display.getAuthor());
+        holder.authorView.setVisibility(display.getAuthorVisibility());
 
-        // find the TextView with the date of news article
-        TextView dateView = (TextView) listItemView.findViewById(R.id.date);
-        // check if date object text present
-        if (currentNewsArticle.hasDate()) {
-            // if present, display
-            dateView.setText(currentNewsArticle.getDate());
+        // a story other editions carry too shows how many more times it was found
+        holder.similarView.setVisibility(display.getSimilarVisibility());
+        if (display.getSimilarCount() > 0) {
+            holder.similarView.setText(getSimilarLabel(display.getSimilarCount()));
+        }
 
-            // make date view visible
-            dateView.setVisibility(View.VISIBLE);
-        } else {
-            // make view invisible if not available
-            dateView.setVisibility(View.GONE);
+        // the row may have been showing another article, stop loading its thumbnail
+        cancelThumbnail(holder);
+        holder.thumbnailView.setVisibility(display.getThumbnailVisibility());
+        holder.thumbnailRequest = mThumbnails.bind(holder.thumbnailView, display.getThumbnail());
+
+        return listItemView;
+    }
+
+    private String getSimilarLabel(int count) {
+        String label = mSimilarLabels.get(count);
+        if (label == null) {
+            label = getContext().getResources().getQuantityString(
+                    R.plurals.similar_stories, count, count);
+            mSimilarLabels.put(count, label);
         }
+        return label;
+    }
 
-        // find the TextView with the author of the news article
-        TextView authorView = (TextView) listItemView.findViewById(R.id.author);
-        // check author text boolean
-        if (currentNewsArticle.hasAuthor()) {
-            // if present, display
-            authorView.setText(currentNewsArticle.getAuthor());
-            // make view visible
-            authorView.setVisibility(View.VISIBLE);
-        } else {
-            // hide the view if not available
-            authorView.setVisibility(View.GONE);
+    /**
+     * Called by the list when a row scrolls out of sight, so its thumbnail stops loading.
+     * Set it on the list with setRecyclerListener.
+     */
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        Object tag = view.getTag();
+        if (tag instanceof ViewHolder) {
+            cancelThumbnail((ViewHolder) tag);
         }
+    }
 
-        return listItemView;
+    private static void cancelThumbnail(ViewHolder holder) {
+        if (holder.thumbnailRequest != null) {
+            holder.thumbnailRequest.cancel();
+            holder.thumbnailRequest = null;
+        }
+    }
+
+    /**
+     * Insert the articles at the position in one step. Like the other bulk changes here it
+     * leaves refreshing the list to the caller's notifyDataSetChanged.
+     */
+    public void insertAll(int position, List<News> news) {
+        mNews.addAll(position, news);
+    }
+
+    /**
+     * Remove the rows from {@code start} up to but not including {@code end} in one step,
+     * rather than shifting the rows after them once for each.
+     */
+    public void removeRange(int start, int end) {
+        mNews.subList(start, end).clear();
+    }
+
+    /**
+     * Apply the changes worked out by a {@link NewsDiff} to the adapter's data set by
+     * position, then refresh the list once.
+     */
+    public void applyDiff(NewsDiff diff) {
+        if (diff.isEmpty()) {
+            return;
+        }
+        diff.dispatchTo(new NewsDiff.Callback() {
+            @Override
+            public void onRemove(int position) {
+                mNews.remove(position);
+            }
+
+            @Override
+            public void onInsert(int position, News news) {
+                mNews.add(position, news);
+            }
+
+            @Override
+            public void onChange(int position, News news) {
+                mNews.set(position, news);
+            }
+        });
+        notifyDataSetChanged();
+    }
+
+    /**
+     * The child views of a list item, kept in its tag so recycled rows skip findViewById.
+     */
+    static class ViewHolder {
+        final TextView titleView;
+        final TextView sectionView;
+        final TextView dateView;
+        final TextView authorView;
+        final TextView similarView;
+        final ImageView thumbnailView;
+
+        // thumbnail still loading for this row, or null
+        ImagePipeline<Bitmap>.Request thumbnailRequest;
+
+        ViewHolder(View listItemView) {
+            titleView = (TextView) listItemView.findViewById(R.id.title);
+            sectionView = (TextView) listItemView.findViewById(R.id.section);
+            dateView = (TextView) listItemView.findViewById(R.id.date);
+            authorView = (TextView) listItemView.findViewById(R.id.author);
+            similarView = (TextView) listItemView.findViewById(R.id.similar);
+            thumbnailView = (ImageView) listItemView.findViewById(R.id.thumbnail);
+        }
     }
 
 }
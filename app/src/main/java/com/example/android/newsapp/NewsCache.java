@@ -0,0 +1,354 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk backed cache of parsed {@link News} lists, keyed by the normalized query URL.
+ * Each entry is one small binary file holding the list together with the ETag and
+ * Last-Modified headers needed to revalidate it with a conditional request. The most
+ * recently used entries are also kept in memory so they can be returned without disk I/O.
+ */
+public class NewsCache {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsCache.class.getSimpleName();
+
+    // first bytes of every entry file, "NEWS"
+    private static final int MAGIC = 0x4E455753;
+
+    // bump when the record layout changes so old files are ignored
+    private static final int VERSION = 3;
+
+    // file extension of cache entries
+    private static final String SUFFIX = ".bin";
+
+    // query parameter left out of the key, it doesn't change the response
+    private static final String API_KEY_PARAM = "api-key";
+
+    // number of entries kept in memory
+    private static final int MEMORY_ENTRIES = 8;
+
+    /** Directory holding the entry files */
+    private final File mDirectory;
+
+    /** Total size the entry files may take up before the oldest are evicted */
+    private final long mMaxBytes;
+
+    /** Entries not written or revalidated for this long are evicted */
+    private final long mMaxAgeMillis;
+
+    /** Last known entries, least recently used first */
+    private final Map<String, Entry> mMemory =
+            new LinkedHashMap<String, Entry>(MEMORY_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, NewsCache.Entry> eldest) {
+                    return size() > MEMORY_ENTRIES;
+                }
+            };
+
+    /**
+     * create a new {@link NewsCache}.
+     *
+     * @param directory to keep the entry files in
+     * @param maxBytes is the total size allowed on disk
+     * @param maxAgeMillis is how long an entry lives without being revalidated
+     */
+    public NewsCache(File directory, long maxBytes, long maxAgeMillis) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mMaxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Return the cache key for a Guardian query URL: the query parameters sorted by name,
+     * without the api key.
+     */
+    public static String keyFor(String requestUrl) {
+        int queryStart = requestUrl.indexOf('?');
+        if (queryStart < 0) {
+            return requestUrl;
+        }
+
+        List<String> params = new ArrayList<>();
+        for (String param : requestUrl.substring(queryStart + 1).split("&")) {
+            int nameEnd = param.indexOf('=');
+            String name = nameEnd < 0 ? param : param.substring(0, nameEnd);
+            if (!param.isEmpty() && !API_KEY_PARAM.equals(name)) {
+                params.add(param);
+            }
+        }
+        Collections.sort(params);
+
+        StringBuilder key = new StringBuilder(requestUrl.substring(0, queryStart));
+        for (int i = 0; i < params.size(); i++) {
+            key.append(i == 0 ? '?' : '&').append(params.get(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Return the cached entry for the key, or null if there is none or it is too old.
+     */
+    public synchronized Entry get(String key) {
+        Entry remembered = mMemory.get(key);
+        if (remembered != null
+                && System.currentTimeMillis() - remembered.mValidatedAt <= mMaxAgeMillis) {
+            return remembered;
+        }
+        mMemory.remove(key);
+
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+        if (System.currentTimeMillis() - file.lastModified() > mMaxAgeMillis) {
+            file.delete();
+            return null;
+        }
+
+        try {
+            Entry entry = read(file);
+            // a different key means a hash collision, treat it as a miss
+            if (!key.equals(entry.mKey)) {
+                return null;
+            }
+            mMemory.put(key, entry);
+            return entry;
+        } catch (IOException e) {
+            Log.e(TAG, "Problem reading cache entry " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Store a freshly downloaded list under the key with the validators from the response.
+     */
+    public synchronized void put(String key, List<News> news, String eTag, String lastModified) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(TAG, "Unable to create cache directory " + mDirectory);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(key, news, eTag, lastModified, now, now);
+        mMemory.put(key, entry);
+        File file = fileFor(key);
+        File tmp = new File(mDirectory, file.getName() + ".tmp");
+        try {
+            write(tmp, entry);
+            IoUtils.replace(tmp, file);
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing cache entry " + file, e);
+            tmp.delete();
+        }
+
+        trimToSize();
+    }
+
+    /**
+     * Mark the entry as revalidated after the server answered 304 Not Modified.
+     */
+    public synchronized void touch(String key) {
+        long now = System.currentTimeMillis();
+        Entry remembered = mMemory.get(key);
+        if (remembered != null) {
+            mMemory.put(key, new Entry(key, remembered.mNews, remembered.mETag,
+                    remembered.mLastModified, remembered.mStoredAt, now));
+        }
+        File file = fileFor(key);
+        if (file.exists()) {
+            file.setLastModified(now);
+        }
+    }
+
+    /**
+     * Delete entries past the maximum age, then the least recently validated ones until
+     * the cache fits in its size budget.
+     */
+    synchronized void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // oldest first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        long now = System.currentTimeMillis();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        for (File file : files) {
+            if (size <= mMaxBytes && now - file.lastModified() <= mMaxAgeMillis) {
+                break;
+            }
+            size -= file.length();
+            file.delete();
+        }
+        // the size budget is for the disk, but an evicted entry shouldn't outlive it
+        // in memory either
+        for (Map.Entry<String, Entry> remembered : new ArrayList<>(mMemory.entrySet())) {
+            if (!fileFor(remembered.getKey()).exists()) {
+                mMemory.remove(remembered.getKey());
+            }
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, hash(key) + SUFFIX);
+    }
+
+    static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java runtime ships SHA-1
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void write(File file, Entry entry) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(entry.mKey);
+            writeNullable(out, entry.mETag);
+            writeNullable(out, entry.mLastModified);
+            out.writeLong(entry.mStoredAt);
+            out.writeInt(entry.mNews.size());
+            for (News news : entry.mNews) {
+                out.writeUTF(news.getTitle());
+                out.writeLong(news.getPublishedAt());
+                out.writeUTF(news.getSection());
+                writeNullable(out, news.getAuthor());
+                out.writeUTF(news.getUrl());
+                writeNullable(out, news.getThumbnail());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Entry read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown cache entry format");
+            }
+            String key = in.readUTF();
+            String eTag = readNullable(in);
+            String lastModified = readNullable(in);
+            long storedAt = in.readLong();
+            int count = in.readInt();
+            List<News> news = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String title = in.readUTF();
+                long publishedAt = in.readLong();
+                String section = in.readUTF();
+                String author = readNullable(in);
+                String url = in.readUTF();
+                String thumbnail = readNullable(in);
+                news.add(new News(title, publishedAt, section, author, url, thumbnail));
+            }
+            return new Entry(key, news, eTag, lastModified, storedAt, file.lastModified());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * A cached list of {@link News} with the validators of the response it came from.
+     */
+    public static class Entry {
+
+        private final String mKey;
+        private final List<News> mNews;
+        private final String mETag;
+        private final String mLastModified;
+        private final long mStoredAt;
+        private final long mValidatedAt;
+
+        Entry(String key, List<News> news, String eTag, String lastModified, long storedAt,
+              long validatedAt) {
+            mKey = key;
+            mNews = news;
+            mETag = eTag;
+            mLastModified = lastModified;
+            mStoredAt = storedAt;
+            mValidatedAt = validatedAt;
+        }
+
+        // getters
+
+        public List<News> getNews() {
+            return mNews;
+        }
+
+        public String getETag() {
+            return mETag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /** Time the list was downloaded, unchanged when a 304 revalidates it */
+        public long getStoredAt() {
+            return mStoredAt;
+        }
+
+        /** Time the list was last downloaded or confirmed by a 304 */
+        public long getValidatedAt() {
+            return mValidatedAt;
+        }
+    }
+
+}
@@ -0,0 +1,307 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Groups articles whose titles are near duplicates, such as the same story in several
+ * editions under slightly different headlines, so the list can show it once.
+ *
+ * Each title is reduced to a MinHash signature of its words, whose matching slots
+ * estimate how many words two titles share. The signatures are split into bands and
+ * only articles with an identical band are compared, each band kept as a chain in a
+ * hash table of which only the newest entries are looked at, so adding an article takes
+ * about the same time however many came before it. Articles are added in chunks, which
+ * keeps each step short and lets a long run be cancelled between them; memory is a few
+ * hundred bytes per article, up to the clusterer's capacity.
+ */
+public class NewsClusterer {
+
+    /** Articles added in each step of {@link #cluster} */
+    static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /** Most articles clustered by {@link #cluster}; any more are left as they are */
+    static final int DEFAULT_MAX_ARTICLES = 10000;
+
+    /** Hashes in each signature */
+    static final int SIGNATURE_SIZE = 24;
+
+    /** Signature slots hashed together into one band */
+    static final int ROWS_PER_BAND = 2;
+
+    static final int BANDS = SIGNATURE_SIZE / ROWS_PER_BAND;
+
+    /** Matching slots, out of {@link #SIGNATURE_SIZE}, for two titles to be the same story */
+    static final int MIN_MATCHES = SIGNATURE_SIZE / 2;
+
+    /** Titles with fewer words say too little to match on */
+    static final int MIN_WORDS = 3;
+
+    /** Newest articles of a band compared with a new one */
+    static final int MAX_BUCKET_SCAN = 16;
+
+    // words that say nothing about the story
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "as", "at", "be", "by", "for", "from", "has", "have", "in",
+            "is", "it", "its", "of", "on", "or", "the", "to", "was", "with"));
+
+    // one seed per signature slot, fixed so the same titles always cluster the same way
+    private static final int[] SEEDS = new int[SIGNATURE_SIZE];
+
+    static {
+        Random random = new Random(0x4E455753);
+        for (int i = 0; i < SEEDS.length; i++) {
+            SEEDS[i] = random.nextInt();
+        }
+    }
+
+    private final int mMaxArticles;
+
+    /** Articles in the order they were added */
+    private final List<News> mNews = new ArrayList<>();
+
+    /** Signature of each article, SIGNATURE_SIZE slots each */
+    private int[] mSignatures = new int[0];
+
+    /** Union-find parent of each article; a cluster's root is its earliest article */
+    private int[] mParents = new int[0];
+
+    /** Article added before each one to the same bucket of each band, or -1 */
+    private int[] mNext = new int[0];
+
+    // open addressing table from band hashes to the newest article with it, plus one
+    private int[] mBucketKeys = new int[64];
+    private int[] mBucketHeads = new int[64];
+    private int mBuckets;
+
+    // reused while signing a title
+    private final Set<String> mWords = new HashSet<>();
+
+    /**
+     * create a new {@link NewsClusterer}.
+     *
+     * @param maxArticles is the most articles clustered, any added past it stay on their own
+     */
+    public NewsClusterer(int maxArticles) {
+        mMaxArticles = maxArticles;
+    }
+
+    /**
+     * Return the articles with one entry per story, in their original order. The first
+     * article of each story stands for it, with the number of the others, which are left
+     * out, as its {@link News#getSimilarCount()}. Runs in chunks, stopping early with null
+     * if the cancellation is cancelled.
+     */
+    public static List<News> cluster(List<News> news, Cancellation cancellation) {
+        if (news == null) {
+            return null;
+        }
+        NewsClusterer clusterer = new NewsClusterer(DEFAULT_MAX_ARTICLES);
+        for (int start = 0; start < news.size(); start += DEFAULT_CHUNK_SIZE) {
+            if (cancellation != null && cancellation.isCancelled()) {
+                return null;
+            }
+            clusterer.addAll(news.subList(start,
+                    Math.min(start + DEFAULT_CHUNK_SIZE, news.size())));
+        }
+        return clusterer.getClusters();
+    }
+
+    /**
+     * Add the articles, grouping each with any near duplicate already added.
+     */
+    public void addAll(List<News> news) {
+        ensureCapacity(mNews.size() + news.size());
+        for (News article : news) {
+            add(article);
+        }
+    }
+
+    /** Number of articles added */
+    public int size() {
+        return mNews.size();
+    }
+
+    /**
+     * Return the articles added with one entry per story, see {@link #cluster}.
+     */
+    public List<News> getClusters() {
+        int[] counts = new int[mNews.size()];
+        for (int i = 0; i < mNews.size(); i++) {
+            counts[find(i)]++;
+        }
+        List<News> clusters = new ArrayList<>();
+        for (int i = 0; i < mNews.size(); i++) {
+            if (mParents[i] == i) {
+                News news = mNews.get(i);
+                clusters.add(counts[i] > 1 ? news.withSimilarCount(counts[i] - 1) : news);
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Return true if the two added articles were grouped as one story.
+     */
+    boolean isSameStory(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    private void add(News article) {
+        int id = mNews.size();
+        mNews.add(article);
+        mParents[id] = id;
+        if (id >= mMaxArticles || !sign(article.getTitle(), id)) {
+            return;
+        }
+
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandKey(id, band);
+            int slot = findSlot(key);
+            int head = mBucketHeads[slot] - 1;
+
+            // compare with the newest articles sharing the band
+            int candidate = head;
+            for (int scanned = 0; candidate >= 0 && scanned < MAX_BUCKET_SCAN; scanned++) {
+                if (find(candidate) != find(id) && matches(candidate, id) >= MIN_MATCHES) {
+                    union(candidate, id);
+                }
+                candidate = mNext[candidate * BANDS + band];
+            }
+
+            mNext[id * BANDS + band] = head;
+            if (mBucketHeads[slot] == 0) {
+                mBucketKeys[slot] = key;
+                mBuckets++;
+            }
+            mBucketHeads[slot] = id + 1;
+            if (mBuckets * 2 > mBucketKeys.length) {
+                rehash();
+            }
+        }
+    }
+
+    /**
+     * Work out the signature of the title into the article's slots. Returns false if it
+     * has too few words.
+     */
+    private boolean sign(String title, int id) {
+        mWords.clear();
+        NewsSearchIndex.tokenize(title, mWords);
+        mWords.removeAll(STOP_WORDS);
+        if (mWords.size() < MIN_WORDS) {
+            return false;
+        }
+        int offset = id * SIGNATURE_SIZE;
+        Arrays.fill(mSignatures, offset, offset + SIGNATURE_SIZE, Integer.MAX_VALUE);
+        for (String word : mWords) {
+            int hash = word.hashCode();
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                int value = mix(hash ^ SEEDS[i]);
+                if (value < mSignatures[offset + i]) {
+                    mSignatures[offset + i] = value;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int matches(int a, int b) {
+        int matches = 0;
+        int offsetA = a * SIGNATURE_SIZE;
+        int offsetB = b * SIGNATURE_SIZE;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (mSignatures[offsetA + i] == mSignatures[offsetB + i]) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private int bandKey(int id, int band) {
+        int key = band;
+        int offset = id * SIGNATURE_SIZE + band * ROWS_PER_BAND;
+        for (int row = 0; row < ROWS_PER_BAND; row++) {
+            key = 31 * key + mSignatures[offset + row];
+        }
+        return mix(key);
+    }
+
+    /**
+     * Return the slot of the key in the bucket table, or the empty slot it would go in.
+     * Keys of different bands may collide, which only costs a few extra comparisons.
+     */
+    private int findSlot(int key) {
+        int mask = mBucketKeys.length - 1;
+        int slot = key & mask;
+        while (mBucketHeads[slot] != 0 && mBucketKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] keys = mBucketKeys;
+        int[] heads = mBucketHeads;
+        mBucketKeys = new int[keys.length * 2];
+        mBucketHeads = new int[heads.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (heads[i] != 0) {
+                int slot = findSlot(keys[i]);
+                mBucketKeys[slot] = keys[i];
+                mBucketHeads[slot] = heads[i];
+            }
+        }
+    }
+
+    private int find(int id) {
+        int root = id;
+        while (mParents[root] != root) {
+            root = mParents[root];
+        }
+        // point the path straight at the root for next time
+        while (mParents[id] != root) {
+            int next = mParents[id];
+            mParents[id] = root;
+            id = next;
+        }
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        // the earliest article stands for the story
+        if (rootA < rootB) {
+            mParents[rootB] = rootA;
+        } else {
+            mParents[rootA] = rootB;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mParents.length) {
+            return;
+        }
+        int capacity = Math.max(count, mParents.length * 2);
+        int signed = Math.min(capacity, mMaxArticles);
+        mParents = Arrays.copyOf(mParents, capacity);
+        mSignatures = Arrays.copyOf(mSignatures, signed * SIGNATURE_SIZE);
+        mNext = Arrays.copyOf(mNext, signed * BANDS);
+    }
+
+    /** The murmur3 finalizer, spreading every input bit over the whole hash */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.example.android.newsapp;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Converts between the Guardian's ISO 8601 publication dates and epoch milliseconds, and
+ * formats them for display. Parsing is done by hand, without allocating or touching a
+ * shared formatter, so it is cheap and safe on any thread. Formatted days are cached, so
+ * the many articles published on the same day share one String, and the relative "2h ago"
+ * strings are built once, so formatting an age is a table lookup.
+ */
+public final class NewsDates {
+
+    /** Timestamp of an article without a publication date */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    // articles at least this many days old show their date instead of their age
+    private static final int RELATIVE_DAYS = 7;
+
+    // number of formatted days kept
+    private static final int FORMATTED_DAYS = 64;
+
+    /** Ages as shown in the list, replaced when the app loads its translations */
+    private static volatile RelativeStrings sRelativeStrings =
+            new RelativeStrings("just now", "%dm ago", "%dh ago", "%dd ago");
+
+    /** Local dates by local day number, in the locale and time zone below; guarded by itself */
+    private static final Map<Long, String> sLocalDates =
+            new LinkedHashMap<Long, String>(FORMATTED_DAYS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                    return size() > FORMATTED_DAYS;
+                }
+            };
+
+    // what sLocalDates was formatted for and the formatter reused for it; guarded by it
+    private static Locale sLocalDatesLocale;
+    private static TimeZone sLocalDatesZone;
+    private static DateFormat sLocalDateFormat;
+
+    /** Formatted days by day number, least recently used first */
+    private static final Map<Long, String> sFormattedDays =
+            new LinkedHashMap<Long, String>(FORMATTED_DAYS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                    return size() > FORMATTED_DAYS;
+                }
+            };
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsDates}
+     * object.
+     */
+    private NewsDates() {
+    }
+
+    /**
+     * Parse a date such as "2018-08-10" or a timestamp such as "2018-08-10T09:30:00Z",
+     * with optional fractional seconds and a Z, +hh:mm or -hh:mm offset. Returns
+     * {@link #NO_DATE} for null or anything else.
+     */
+    public static long parse(String text) {
+        if (text == null || text.length() < 10 || text.charAt(4) != '-'
+                || text.charAt(7) != '-') {
+            return NO_DATE;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return NO_DATE;
+        }
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        if (text.length() == 10) {
+            return millis;
+        }
+
+        // the time of day
+        if (text.length() < 20 || text.charAt(10) != 'T' || text.charAt(13) != ':'
+                || text.charAt(16) != ':') {
+            return NO_DATE;
+        }
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return NO_DATE;
+        }
+        millis += ((hour * 60L + minute) * 60 + second) * MILLIS_PER_SECOND;
+
+        // skip fractional seconds, then read the zone
+        int pos = 19;
+        if (text.charAt(pos) == '.') {
+            pos++;
+            int fractionStart = pos;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos == fractionStart || pos == text.length()) {
+                return NO_DATE;
+            }
+        }
+        char zone = text.charAt(pos);
+        if (zone == 'Z' && pos == text.length() - 1) {
+            return millis;
+        }
+        if ((zone == '+' || zone == '-') && pos == text.length() - 6
+                && text.charAt(pos + 3) == ':') {
+            int offsetHours = digits(text, pos + 1, 2);
+            int offsetMinutes = digits(text, pos + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0) {
+                return NO_DATE;
+            }
+            long offset = (offsetHours * 60L + offsetMinutes) * 60 * MILLIS_PER_SECOND;
+            return zone == '+' ? millis - offset : millis + offset;
+        }
+        return NO_DATE;
+    }
+
+    /**
+     * Return the UTC day of the timestamp as "yyyy-MM-dd", the part of the Guardian's
+     * timestamp the app shows.
+     */
+    public static String formatDate(long millis) {
+        long day = floorDiv(millis, MILLIS_PER_DAY);
+        synchronized (sFormattedDays) {
+            String formatted = sFormattedDays.get(day);
+            if (formatted == null) {
+                formatted = formatDay(day);
+                sFormattedDays.put(day, formatted);
+            }
+            return formatted;
+        }
+    }
+
+    /**
+     * Return the timestamp in UTC as "yyyy-MM-ddTHH:mm:ssZ", the way the Guardian writes
+     * them, dropping the milliseconds.
+     */
+    public static String formatTimestamp(long millis) {
+        long secondOfDay =
+                (millis - floorDiv(millis, MILLIS_PER_DAY) * MILLIS_PER_DAY) / MILLIS_PER_SECOND;
+        StringBuilder formatted = new StringBuilder(20).append(formatDate(millis)).append('T');
+        appendTwoDigits(formatted, secondOfDay / 3600).append(':');
+        appendTwoDigits(formatted, secondOfDay / 60 % 60).append(':');
+        return appendTwoDigits(formatted, secondOfDay % 60).append('Z').toString();
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder builder, long value) {
+        return builder.append(value < 10 ? "0" : "").append(value);
+    }
+
+    /**
+     * Set the templates of the relative ages, such as "%dh ago", normally from the app's
+     * string resources. Each is formatted once for every value it can show.
+     */
+    public static void setRelativeStrings(String justNow, String minutesAgo, String hoursAgo,
+                                          String daysAgo) {
+        sRelativeStrings = new RelativeStrings(justNow, minutesAgo, hoursAgo, daysAgo);
+    }
+
+    /**
+     * Return how long before {@code now} the timestamp was, such as "5m ago" or "2h ago",
+     * or, from a week on, its date in the device's locale and time zone. The strings are
+     * shared, so this doesn't allocate unless the date has to be formatted.
+     */
+    public static String formatRelative(long millis, long now) {
+        RelativeStrings strings = sRelativeStrings;
+        long age = now - millis;
+        if (age < MILLIS_PER_MINUTE) {
+            // a timestamp a little ahead of the device's clock counts as new
+            return strings.mJustNow;
+        } else if (age < MILLIS_PER_HOUR) {
+            return strings.mMinutesAgo[(int) (age / MILLIS_PER_MINUTE)];
+        } else if (age < MILLIS_PER_DAY) {
+            return strings.mHoursAgo[(int) (age / MILLIS_PER_HOUR)];
+        } else if (age < RELATIVE_DAYS * MILLIS_PER_DAY) {
+            return strings.mDaysAgo[(int) (age / MILLIS_PER_DAY)];
+        }
+        return formatLocalDate(millis);
+    }
+
+    /**
+     * Return the day of the timestamp in the device's time zone, formatted for its locale,
+     * such as "Aug 10, 2018".
+     */
+    public static String formatLocalDate(long millis) {
+        synchronized (sLocalDates) {
+            Locale locale = Locale.getDefault();
+            TimeZone zone = TimeZone.getDefault();
+            if (!locale.equals(sLocalDatesLocale) || !zone.equals(sLocalDatesZone)) {
+                // the user changed their settings, start over
+                sLocalDates.clear();
+                sLocalDatesLocale = locale;
+                sLocalDatesZone = zone;
+                sLocalDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM, locale);
+                sLocalDateFormat.setTimeZone(zone);
+            }
+            long day = floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY);
+            String formatted = sLocalDates.get(day);
+            if (formatted == null) {
+                formatted = sLocalDateFormat.format(new Date(millis));
+                sLocalDates.put(day, formatted);
+            }
+            return formatted;
+        }
+    }
+
+    private static String formatDay(long day) {
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = day + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra =
+                (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int dayOfMonth = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder formatted = new StringBuilder(10);
+        formatted.append(year).append('-');
+        if (month < 10) {
+            formatted.append('0');
+        }
+        formatted.append(month).append('-');
+        if (dayOfMonth < 10) {
+            formatted.append('0');
+        }
+        return formatted.append(dayOfMonth).toString();
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Return the number written with {@code count} digits at {@code start}, or -1 if any
+     * of them isn't a digit.
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Every relative age string, formatted once from its template.
+     */
+    private static final class RelativeStrings {
+
+        final String mJustNow;
+        final String[] mMinutesAgo;
+        final String[] mHoursAgo;
+        final String[] mDaysAgo;
+
+        RelativeStrings(String justNow, String minutesAgo, String hoursAgo, String daysAgo) {
+            mJustNow = justNow;
+            mMinutesAgo = formatAll(minutesAgo, 60);
+            mHoursAgo = formatAll(hoursAgo, 24);
+            mDaysAgo = formatAll(daysAgo, RELATIVE_DAYS);
+        }
+
+        // index 0 is never shown, ages below one unit use the next smaller unit
+        private static String[] formatAll(String template, int count) {
+            String[] formatted = new String[count];
+            for (int i = 1; i < count; i++) {
+                formatted[i] = String.format(Locale.getDefault(), template, i);
+            }
+            return formatted;
+        }
+    }
+
+    // Math.floorDiv needs API 24
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+}
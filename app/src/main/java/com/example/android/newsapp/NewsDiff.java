@@ -0,0 +1,260 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes that turn one list of {@link News} into another, matching articles by
+ * {@link News#getUrl()}. Articles that keep their relative order stay where they are;
+ * the fewest others are moved, and removed, inserted and edited articles are reported so
+ * an adapter only has to touch those rows. Calculating is pure list work and can run off
+ * the UI thread; dispatching has to happen where the adapter lives.
+ */
+public final class NewsDiff {
+
+    /**
+     * Receives the changes of a {@link NewsDiff}. Positions are in the list as it is after
+     * the changes dispatched before, so applying them in order turns the old list into the
+     * new one.
+     */
+    public interface Callback {
+
+        /** Remove the article at the position */
+        void onRemove(int position);
+
+        /** Insert the article at the position */
+        void onInsert(int position, News news);
+
+        /** Replace the article at the position with an edited version of it */
+        void onChange(int position, News news);
+    }
+
+    // kinds of operation
+    private static final int REMOVE = 0;
+    private static final int INSERT = 1;
+    private static final int CHANGE = 2;
+
+    /** Operation kinds, positions and articles, in dispatch order */
+    private final int[] mKinds;
+    private final int[] mPositions;
+    private final News[] mNews;
+
+    /** The new list without duplicate URLs, what the old list looks like once applied */
+    private final List<News> mNewList;
+
+    private final int mRemoved;
+    private final int mInserted;
+    private final int mMoved;
+    private final int mChanged;
+
+    private NewsDiff(List<Integer> kinds, List<Integer> positions, List<News> news,
+                     List<News> newList, int removed, int inserted, int moved, int changed) {
+        mKinds = toArray(kinds);
+        mPositions = toArray(positions);
+        mNews = news.toArray(new News[news.size()]);
+        mNewList = newList;
+        mRemoved = removed;
+        mInserted = inserted;
+        mMoved = moved;
+        mChanged = changed;
+    }
+
+    /**
+     * Work out the changes from the old list to the new one.
+     */
+    public static NewsDiff calculate(List<News> oldList, List<News> newList) {
+        // index the new list by URL, keeping the first of any duplicates
+        Map<String, Integer> newIndex = new HashMap<>();
+        List<News> target = new ArrayList<>(newList.size());
+        for (News news : newList) {
+            if (!newIndex.containsKey(news.getUrl())) {
+                newIndex.put(news.getUrl(), target.size());
+                target.add(news);
+            }
+        }
+
+        // the new positions of the old articles that are still there, in old order
+        int[] kept = new int[oldList.size()];
+        int keptCount = 0;
+        Set<String> seen = new HashSet<>();
+        for (News news : oldList) {
+            Integer index = newIndex.get(news.getUrl());
+            if (index != null && seen.add(news.getUrl())) {
+                kept[keptCount++] = index;
+            }
+        }
+
+        // the longest run of those already in increasing order can stay put
+        boolean[] stays = new boolean[target.size()];
+        for (int index : longestIncreasingSubsequence(Arrays.copyOf(kept, keptCount))) {
+            stays[index] = true;
+        }
+
+        List<Integer> kinds = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        List<News> news = new ArrayList<>();
+        int removed = 0;
+        int inserted = 0;
+        int moved = 0;
+        int changed = 0;
+
+        // take out everything that doesn't stay, from the end so positions hold
+        seen.clear();
+        boolean[] firstOccurrence = new boolean[oldList.size()];
+        for (int i = 0; i < oldList.size(); i++) {
+            firstOccurrence[i] = seen.add(oldList.get(i).getUrl());
+        }
+        for (int i = oldList.size() - 1; i >= 0; i--) {
+            Integer index = newIndex.get(oldList.get(i).getUrl());
+            if (index == null || !firstOccurrence[i]) {
+                removed++;
+            } else if (!stays[index]) {
+                // taken out here and put back at its new position below
+                moved++;
+            } else {
+                continue;
+            }
+            kinds.add(REMOVE);
+            positions.add(i);
+            news.add(null);
+        }
+
+        // the articles that stay are now in new order; fill in the rest around them
+        Map<String, News> oldByUrl = new HashMap<>();
+        for (News article : oldList) {
+            if (!oldByUrl.containsKey(article.getUrl())) {
+                oldByUrl.put(article.getUrl(), article);
+            }
+        }
+        for (int i = 0; i < target.size(); i++) {
+            News article = target.get(i);
+            News old = oldByUrl.get(article.getUrl());
+            if (!stays[i]) {
+                if (old == null) {
+                    inserted++;
+                }
+                kinds.add(INSERT);
+                positions.add(i);
+                news.add(old != null && sameContent(old, article) ? old : article);
+            } else if (!sameContent(old, article)) {
+                changed++;
+                kinds.add(CHANGE);
+                positions.add(i);
+                news.add(article);
+            }
+        }
+
+        return new NewsDiff(kinds, positions, news, target, removed, inserted, moved, changed);
+    }
+
+    /**
+     * Send the changes to the callback in order.
+     */
+    public void dispatchTo(Callback callback) {
+        for (int i = 0; i < mKinds.length; i++) {
+            switch (mKinds[i]) {
+                case REMOVE:
+                    callback.onRemove(mPositions[i]);
+                    break;
+                case INSERT:
+                    callback.onInsert(mPositions[i], mNews[i]);
+                    break;
+                default:
+                    callback.onChange(mPositions[i], mNews[i]);
+                    break;
+            }
+        }
+    }
+
+    /** The list the old one turns into, without duplicate URLs */
+    public List<News> getNewList() {
+        return mNewList;
+    }
+
+    /** True if applying the diff would leave the list as it is */
+    public boolean isEmpty() {
+        return mKinds.length == 0;
+    }
+
+    // counts of each kind of change
+
+    public int getRemovedCount() {
+        return mRemoved;
+    }
+
+    public int getInsertedCount() {
+        return mInserted;
+    }
+
+    public int getMovedCount() {
+        return mMoved;
+    }
+
+    public int getChangedCount() {
+        return mChanged;
+    }
+
+    /**
+     * Return true if two versions of an article would be displayed the same way.
+     */
+    static boolean sameContent(News a, News b) {
+        return a == b || (equal(a.getTitle(), b.getTitle())
+                && a.getPublishedAt() == b.getPublishedAt()
+                && equal(a.getSection(), b.getSection())
+                && equal(a.getAuthor(), b.getAuthor())
+                && equal(a.getThumbnail(), b.getThumbnail())
+                && a.getSimilarCount() == b.getSimilarCount());
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Return the values of one longest strictly increasing subsequence, in O(n log n).
+     */
+    private static int[] longestIncreasingSubsequence(int[] values) {
+        // tails[k] is the index of the smallest last value of a run of length k + 1
+        int[] tails = new int[values.length];
+        int[] previous = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        int[] result = new int[length];
+        for (int k = length - 1, i = length > 0 ? tails[length - 1] : -1; k >= 0; k--) {
+            result[k] = values[i];
+            i = previous[i];
+        }
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+}
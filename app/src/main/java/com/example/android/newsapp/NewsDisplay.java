@@ -0,0 +1,116 @@
+package com.example.android.newsapp;
+
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * What a row of the news list shows for one {@link News} article, worked out on the
+ * loader's worker thread so binding a row only copies these values into its views. The
+ * model is immutable; only the date depends on the time of the bind, and it is looked up
+ * among the relative dates {@link NewsDates} formatted once.
+ */
+public final class NewsDisplay {
+
+    private final String mTitle;
+    private final String mSection;
+    private final long mPublishedAt;
+    private final int mDateVisibility;
+    private final String mAuthor;
+    private final int mAuthorVisibility;
+    private final String mThumbnail;
+    private final int mThumbnailVisibility;
+    private final int mSimilarCount;
+    private final int mSimilarVisibility;
+
+    /**
+     * create the display model of the given article.
+     *
+     * @param news is the article to display
+     */
+    NewsDisplay(News news) {
+        mTitle = news.getTitle();
+        mSection = news.getSection();
+
+        // show the date and author only when the article has them; the date is read from
+        // the clock in each bind
+        mPublishedAt = news.getPublishedAt();
+        mDateVisibility = news.hasDate() ? View.VISIBLE : View.GONE;
+        mAuthor = news.getAuthor();
+        mAuthorVisibility = news.hasAuthor() ? View.VISIBLE : View.GONE;
+        mThumbnail = news.getThumbnail();
+        mThumbnailVisibility = mThumbnail != null ? View.VISIBLE : View.GONE;
+        mSimilarCount = news.getSimilarCount();
+        mSimilarVisibility = mSimilarCount > 0 ? View.VISIBLE : View.GONE;
+    }
+
+    /**
+     * Build the display models of the articles, if any, so the rows showing them don't
+     * have to. Call on the worker thread that loaded them.
+     */
+    static void prepareAll(List<News> news) {
+        if (news == null) {
+            return;
+        }
+        for (News article : news) {
+            article.getDisplay();
+        }
+    }
+
+    // getters
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public String getSection() {
+        return mSection;
+    }
+
+    /**
+     * How long ago the article was published, such as "2h ago", or its date once it is a
+     * week old; null if it has no date.
+     */
+    public String getDate() {
+        return getDate(System.currentTimeMillis());
+    }
+
+    /**
+     * The date shown at the given time.
+     */
+    String getDate(long now) {
+        return mPublishedAt == NewsDates.NO_DATE ? null
+                : NewsDates.formatRelative(mPublishedAt, now);
+    }
+
+    public int getDateVisibility() {
+        return mDateVisibility;
+    }
+
+    public String getAuthor() {
+        return mAuthor;
+    }
+
+    public int getAuthorVisibility() {
+        return mAuthorVisibility;
+    }
+
+    /** Url of the thumbnail to show, or null */
+    public String getThumbnail() {
+        return mThumbnail;
+    }
+
+    public int getThumbnailVisibility() {
+        return mThumbnailVisibility;
+    }
+
+    /** Number of near duplicates the row stands for as well */
+    public int getSimilarCount() {
+        return mSimilarCount;
+    }
+
+    public int getSimilarVisibility() {
+        return mSimilarVisibility;
+    }
+
+}
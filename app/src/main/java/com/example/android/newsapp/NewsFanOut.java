@@ -0,0 +1,171 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the queries of several editions at the same time and merges their results into
+ * one timeline. The whole fetch takes about as long as the slowest edition, and an
+ * edition that fails or times out is left out instead of holding up the others.
+ */
+public final class NewsFanOut {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsFanOut.class.getSimpleName();
+
+    /** Most edition requests running at once */
+    private static final int MAX_CONCURRENT_REQUESTS = 3;
+
+    /** Longest the merged fetch waits for the slowest edition */
+    private static final long FETCH_TIMEOUT_MILLIS = 20000;
+
+    /** Runs the edition requests */
+    private static final ExecutorService EXECUTOR =
+            Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsFanOut}
+     * object.
+     */
+    private NewsFanOut() {
+    }
+
+    /**
+     * Fetch every URL and return the results in the same order, with null for the
+     * requests that failed, didn't finish in time or were cancelled. Identical requests
+     * already in flight are joined through {@link SingleFlight}.
+     */
+    public static List<List<News>> fetchAll(List<String> urls, NewsCache cache,
+                                            Cancellation cancellation) {
+        return fetchAll(urls, Collections.nCopies(urls.size(), cache), cancellation);
+    }
+
+    /**
+     * Fetch every URL through its own cache, or none where the cache is null, and return
+     * the results in the same order as {@link #fetchAll(List, NewsCache, Cancellation)}.
+     */
+    public static List<List<News>> fetchAll(List<String> urls, List<NewsCache> caches,
+                                            Cancellation cancellation) {
+        List<List<News>> results = new ArrayList<>(urls.size());
+
+        // a single query doesn't need another thread
+        if (urls.size() == 1) {
+            results.add(SingleFlight.getDefault().fetch(urls.get(0), caches.get(0),
+                    cancellation));
+            return results;
+        }
+
+        // each edition can be called off on its own when it times out,
+        // and all of them when the whole fetch is cancelled
+        final List<Cancellation> editionCancellations = new ArrayList<>(urls.size());
+        List<Future<List<News>>> requests = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            final String url = urls.get(i);
+            final NewsCache cache = caches.get(i);
+            final Cancellation editionCancellation = new Cancellation();
+            editionCancellations.add(editionCancellation);
+            requests.add(EXECUTOR.submit(new Callable<List<News>>() {
+                @Override
+                public List<News> call() {
+                    return SingleFlight.getDefault().fetch(url, cache, editionCancellation);
+                }
+            }));
+        }
+        Runnable cancelAll = new Runnable() {
+            @Override
+            public void run() {
+                for (Cancellation editionCancellation : editionCancellations) {
+                    editionCancellation.cancel();
+                }
+            }
+        };
+        if (cancellation != null) {
+            cancellation.addOnCancelListener(cancelAll);
+        }
+
+        // wait for each request, all of them sharing one deadline
+        long deadline = System.currentTimeMillis() + FETCH_TIMEOUT_MILLIS;
+        for (int i = 0; i < requests.size(); i++) {
+            Future<List<News>> request = requests.get(i);
+            List<News> news = null;
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                news = request.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                Log.e(TAG, "fetchAll: Timed out loading " + urls.get(i));
+                editionCancellations.get(i).cancel();
+            } catch (ExecutionException e) {
+                Log.e(TAG, "fetchAll: Problem loading " + urls.get(i), e);
+            } catch (InterruptedException e) {
+                // the load was cancelled, stop the rest too
+                cancelAll.run();
+                Thread.currentThread().interrupt();
+            }
+            results.add(news);
+        }
+
+        if (cancellation != null) {
+            cancellation.removeOnCancelListener(cancelAll);
+        }
+        return results;
+    }
+
+    /**
+     * Merge the results of several editions into one list ordered by publication date,
+     * keeping the first copy of an article that appears in more than one edition. Articles
+     * published at the same time alternate between editions in their original order.
+     * Returns null if every edition failed.
+     */
+    public static List<News> merge(List<List<News>> results, final boolean newestFirst) {
+        // interleave the editions by rank
+        List<News> merged = new ArrayList<>();
+        Set<String> urls = new HashSet<>();
+        boolean anyLoaded = false;
+        int longest = 0;
+        for (List<News> news : results) {
+            if (news != null) {
+                anyLoaded = true;
+                longest = Math.max(longest, news.size());
+            }
+        }
+        if (!anyLoaded) {
+            return null;
+        }
+        for (int rank = 0; rank < longest; rank++) {
+            for (List<News> news : results) {
+                if (news != null && rank < news.size() && urls.add(news.get(rank).getUrl())) {
+                    merged.add(news.get(rank));
+                }
+            }
+        }
+
+        // then order by date; the sort is stable so the interleaving breaks ties
+        Collections.sort(merged, new Comparator<News>() {
+            @Override
+            public int compare(News a, News b) {
+                if (!a.hasDate() || !b.hasDate()) {
+                    // undated articles go last
+                    return !a.hasDate() ? (!b.hasDate() ? 0 : 1) : -1;
+                }
+                long diff = a.getPublishedAt() - b.getPublishedAt();
+                int order = diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                return newestFirst ? -order : order;
+            }
+        });
+        return merged;
+    }
+
+}
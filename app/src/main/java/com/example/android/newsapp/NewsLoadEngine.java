@@ -0,0 +1,182 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs news loads on a pool of worker threads, several at a time, and hands each result
+ * to a callback on the caller's executor, normally the main thread. A load is cancelled
+ * through its {@link Task}: a queued load never starts, and a running one has its
+ * requests disconnected and its thread interrupted, so the socket read, the parse and the
+ * thread are given up right away. A cancelled load never delivers its result.
+ */
+public class NewsLoadEngine {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsLoadEngine.class.getSimpleName();
+
+    /** Loads running at once in the shared engine */
+    public static final int DEFAULT_POOL_SIZE = 3;
+
+    // idle worker threads stop after this long
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /** Engine shared by the app's loaders */
+    private static final NewsLoadEngine sDefault = new NewsLoadEngine(DEFAULT_POOL_SIZE);
+
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * Return the engine shared by the app's loaders.
+     */
+    public static NewsLoadEngine getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * create a new {@link NewsLoadEngine}.
+     *
+     * @param poolSize is the most loads running at once; the rest wait in order
+     */
+    public NewsLoadEngine(int poolSize) {
+        mExecutor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Change the number of loads running at once. Loads already running carry on.
+     */
+    public void setPoolSize(int poolSize) {
+        // grow the maximum first so it is never below the core size
+        if (poolSize > mExecutor.getMaximumPoolSize()) {
+            mExecutor.setMaximumPoolSize(poolSize);
+            mExecutor.setCorePoolSize(poolSize);
+        } else {
+            mExecutor.setCorePoolSize(poolSize);
+            mExecutor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    public int getPoolSize() {
+        return mExecutor.getCorePoolSize();
+    }
+
+    /**
+     * Run the job on a worker thread and pass its result to the callback on the given
+     * executor, unless the returned task is cancelled first. A job that throws delivers
+     * null.
+     */
+    public <T> Task submit(final Job<T> job, final Executor deliverOn,
+                           final Callback<T> callback) {
+        final Cancellation cancellation = new Cancellation();
+        final Future<?> future = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellation.isCancelled()) {
+                    return;
+                }
+                T result = null;
+                try {
+                    result = job.run(cancellation);
+                } catch (RuntimeException e) {
+                    if (!cancellation.isCancelled()) {
+                        Log.e(TAG, "Problem running a news load", e);
+                    }
+                }
+                if (cancellation.isCancelled()) {
+                    return;
+                }
+                final T delivered = result;
+                deliverOn.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // checked again where the task is cancelled from, so a load
+                        // cancelled after it finished is still never delivered
+                        if (!cancellation.isCancelled()) {
+                            callback.onResult(delivered);
+                        }
+                    }
+                });
+            }
+        });
+        return new Task(cancellation, future);
+    }
+
+    /**
+     * Work done on a worker thread. It should pass the cancellation to its requests and
+     * give up when it is cancelled; its result is thrown away then.
+     */
+    public interface Job<T> {
+        T run(Cancellation cancellation);
+    }
+
+    /**
+     * Receives the result of a job that wasn't cancelled.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * A submitted load.
+     */
+    public static class Task {
+
+        private final Cancellation mCancellation;
+        private final Future<?> mFuture;
+
+        Task(Cancellation cancellation, Future<?> future) {
+            mCancellation = cancellation;
+            mFuture = future;
+        }
+
+        /**
+         * Call off the load: its requests are disconnected, its thread interrupted, and its
+         * result won't be delivered. Also calls off anything still using the load's
+         * {@link Cancellation} after it finished. Calling this more than once has no
+         * further effect.
+         */
+        public void cancel() {
+            mCancellation.cancel();
+            mFuture.cancel(true);
+        }
+
+        public boolean isCancelled() {
+            return mCancellation.isCancelled();
+        }
+
+        /** True once the job has returned or the task was cancelled */
+        public boolean isDone() {
+            return mFuture.isDone();
+        }
+
+        /** The cancellation passed to the job */
+        public Cancellation getCancellation() {
+            return mCancellation;
+        }
+    }
+
+    /**
+     * Names the worker threads and runs them below the UI thread's priority.
+     */
+    private static class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "NewsLoad #" + mCount.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+
+}
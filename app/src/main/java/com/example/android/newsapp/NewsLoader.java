@@ -17,19 +17,93 @@
 
 package com.example.android.newsapp;
 
+import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.AsyncTaskLoader;
+import android.content.Loader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-public class NewsLoader extends AsyncTaskLoader<List<News>> {
+/**
+ * Loads the news of the current settings for {@link MainActivity} on the shared
+ * {@link NewsLoadEngine}, so loads of different queries run at the same time and a load
+ * that is no longer wanted stops straight away. The LoaderManager keeps the loader across
+ * configuration changes and only hands results to a started activity.
+ */
+public class NewsLoader extends Loader<List<News>> {
 
     /** Tag for log messages */
     private static final String TAG = NewsLoader.class.getName();
 
-    /** Query URL */
-    private String mUrl;
+    /** Cached results validated more recently than this are used without asking the server */
+    private static final long FRESH_MILLIS = 60 * 1000;
+
+    /** Size budget of the on-disk news cache */
+    private static final long CACHE_MAX_BYTES = 2 * 1024 * 1024;
+
+    /** Cached results not revalidated for this long are thrown away */
+    private static final long CACHE_MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    /** Runs revalidations of cached results after they have been delivered */
+    private static final Executor REVALIDATE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /** Shared cache of downloaded news, created on first use */
+    private static NewsCache sCache;
+
+    /** Shared store of the articles kept fresh by the background sync, created on first use */
+    private static ArticleStore sStore;
+
+    /** Size budget of the prefetched article bodies */
+    private static final long BODY_STORE_MAX_BYTES = 5 * 1024 * 1024;
+
+    /** Shared store of the prefetched article bodies, created on first use */
+    private static ArticleBodyStore sBodyStore;
+
+    /** Query URLs, one per edition */
+    private List<String> mUrls;
+
+    /** Order of the merged results when there is more than one edition */
+    private boolean mNewestFirst;
+
+    /** Elapsed realtime when the current load started */
+    private long mStartedAt;
+
+    /** Milliseconds from start until any result was delivered, -1 until then */
+    private long mFirstContentMillis = -1;
+
+    /** Milliseconds from start until a result checked with the server was delivered */
+    private long mFreshContentMillis = -1;
+
+    /** True while the delivered result is a cached copy still being revalidated */
+    private volatile boolean mStale;
+
+    /** Engine running the loads */
+    private final NewsLoadEngine mEngine = NewsLoadEngine.getDefault();
+
+    /** The load in progress, or the last one while its result may still be revalidated */
+    private NewsLoadEngine.Task mTask;
+
+    /** Last result delivered, handed out again when the loader is restarted */
+    private List<News> mNews;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Delivers results on the main thread */
+    private final Executor mMainExecutor = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            mMainHandler.post(runnable);
+        }
+    };
 
     /**
      * construct a new {@link NewsLoader}.
@@ -38,30 +112,349 @@ public class NewsLoader extends AsyncTaskLoader<List<News>> {
      * @param url to load data from
      */
     public NewsLoader(Context context, String url) {
+        this(context, Collections.singletonList(url), true);
+    }
+
+    /**
+     * construct a new {@link NewsLoader} merging the results of several editions.
+     *
+     * @param context of the activity
+     * @param urls to load data from, one per edition
+     * @param newestFirst is the order of the merged results
+     */
+    public NewsLoader(Context context, List<String> urls, boolean newestFirst) {
         super(context);
-        mUrl = url;
+        mUrls = urls;
+        mNewestFirst = newestFirst;
     }
 
-    // start loading and implement forceLoad
+    // start loading, showing the last result again right away; it is loaded again if it
+    // has changed since or may have gone stale
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        if (mNews != null) {
+            deliverResult(mNews);
+        }
+        if (takeContentChanged() || mNews == null
+                || SystemClock.elapsedRealtime() - mStartedAt > FRESH_MILLIS) {
+            forceLoad();
+        }
         Log.i(TAG, "onStartLoading: Start loading!!!!!!!!!");
     }
 
-    // this is on a background thread
+    // run a new load on the engine, calling off the one before it
     @Override
-    public List<News> loadInBackground() {
+    protected void onForceLoad() {
+        super.onForceLoad();
+        cancelTask();
+        mStartedAt = SystemClock.elapsedRealtime();
+        mFirstContentMillis = -1;
+        mFreshContentMillis = -1;
+        mTask = mEngine.submit(new NewsLoadEngine.Job<List<News>>() {
+            // this is on a worker thread
+            @Override
+            public List<News> run(Cancellation cancellation) {
+                List<News> news = load(cancellation);
+                // make whatever was loaded searchable without another query
+                NewsSearchIndex.getDefault().addAll(news);
+                // and ready to bind, so the UI thread only copies it into the rows
+                NewsDisplay.prepareAll(news);
+                return news;
+            }
+        }, mMainExecutor, new NewsLoadEngine.Callback<List<News>>() {
+            @Override
+            public void onResult(List<News> news) {
+                deliverResult(news);
+            }
+        });
+    }
+
+    private List<News> load(Cancellation cancellation) {
         // check url
-        if (mUrl == null) {
+        if (mUrls == null || mUrls.isEmpty() || mUrls.contains(null)) {
             return null;
         }
-        Log.i(TAG, "loadInBackground: What is loading in the background!!!!!");
+        Log.i(TAG, "load: What is loading in the background!!!!!");
+
+        // articles the background sync refreshed within its interval are read locally
+        // without touching the network
+        List<News> synced = getSyncedNews(getStore(getContext()), mUrls, cancellation);
+        if (synced != null) {
+            mStale = false;
+            return synced;
+        }
+        if (cancellation.isCancelled()) {
+            return null;
+        }
+
+        // return the last known result from memory or disk right away, checking it with the
+        // server in the background if it hasn't been validated recently
+        NewsCache cache = getCache(getContext());
+        List<NewsCache.Entry> cached = getCachedEntries(cache, mUrls);
+        if (cached != null) {
+            mStale = false;
+            for (NewsCache.Entry entry : cached) {
+                if (System.currentTimeMillis() - entry.getValidatedAt() > FRESH_MILLIS) {
+                    mStale = true;
+                }
+            }
+            if (mStale) {
+                revalidate(cache, cached, cancellation);
+            }
+            return mergeEntries(cached, cancellation);
+        }
+        mStale = false;
+
+        // perform the network requests, one per edition at the same time, parse the
+        // responses, and extract a list of news articles
+        return merge(NewsFanOut.fetchAll(mUrls, cache, cancellation), cancellation);
+    }
+
+    /**
+     * Return the stored articles of the URLs, merged, or null unless every one of them was
+     * synced within the sync interval.
+     */
+    private List<News> getSyncedNews(ArticleStore store, List<String> urls,
+                                     Cancellation cancellation) {
+        List<List<News>> results = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            ArticleStore.Query query = store.get(NewsCache.keyFor(url));
+            if (query == null || System.currentTimeMillis() - query.getSyncedAt()
+                    > NewsSyncService.SYNC_INTERVAL_MILLIS) {
+                return null;
+            }
+            results.add(query.getNews());
+        }
+        Log.i(TAG, "getSyncedNews: Reading the synced articles");
+        return merge(results, cancellation);
+    }
+
+    /**
+     * Return the cached entry of every URL, or null unless all of them are cached.
+     */
+    private static List<NewsCache.Entry> getCachedEntries(NewsCache cache, List<String> urls) {
+        List<NewsCache.Entry> entries = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            NewsCache.Entry entry = cache.get(NewsCache.keyFor(url));
+            if (entry == null) {
+                return null;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private List<News> mergeEntries(List<NewsCache.Entry> entries,
+                                    Cancellation cancellation) {
+        List<List<News>> results = new ArrayList<>(entries.size());
+        for (NewsCache.Entry entry : entries) {
+            results.add(entry.getNews());
+        }
+        return merge(results, cancellation);
+    }
+
+    /**
+     * Merge the results of several queries into one timeline with one row per story, as
+     * editions and sections often carry the same story under different headlines.
+     * Returns null if the load is cancelled while clustering.
+     */
+    private List<News> merge(List<List<News>> results, Cancellation cancellation) {
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        return NewsClusterer.cluster(NewsFanOut.merge(results, mNewestFirst), cancellation);
+    }
+
+    // called when the load is superseded, e.g. by restartLoader after a settings change
+    // (API 16 and up; older devices abandon the superseded loader instead)
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    protected boolean onCancelLoad() {
+        if (mTask == null || mTask.isDone()) {
+            return false;
+        }
+        cancelTask();
+        // the result will never come, so let the LoaderManager start the next load now
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliverCancellation();
+            }
+        });
+        return true;
+    }
+
+    // the loader is being thrown away, stop the load and any revalidation still running
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelTask();
+        mNews = null;
+    }
+
+    @Override
+    protected void onAbandon() {
+        super.onAbandon();
+        cancelTask();
+    }
+
+    /**
+     * Call off the current load and its revalidation, disconnecting their requests if no
+     * other query shares them and freeing the worker thread.
+     */
+    private void cancelTask() {
+        if (mTask != null) {
+            mTask.cancel();
+            mTask = null;
+        }
+    }
 
-        // perform the network request, parse the response, and extract a list of
-        // news articles
-    List<News> news = QueryUtils.fetchNewsData(mUrl);
-    return news;
+    @Override
+    public void deliverResult(List<News> news) {
+        if (isReset()) {
+            return;
+        }
+        // keep the top articles of a new result readable offline while on an unmetered
+        // connection; showing the last result again doesn't queue them twice
+        if (news != null && news != mNews) {
+            NewsSyncService.prefetchBodiesInBackground(getContext(), news);
+        }
+        mNews = news;
+
+        // record how long the user waited for something to read, and for current news
+        long elapsed = SystemClock.elapsedRealtime() - mStartedAt;
+        boolean first = mFirstContentMillis < 0;
+        if (first) {
+            mFirstContentMillis = elapsed;
+            Log.i(TAG, "deliverResult: Time to first content " + elapsed + " ms");
+            NewsMetrics.getDefault().recordMillis(NewsMetrics.LOAD_FIRST_CONTENT, elapsed);
+        }
+        if (!mStale) {
+            recordFreshContent(elapsed);
+        }
+        super.deliverResult(news);
+        // a started loader has now run onLoadFinished with its first result
+        if (first && isStarted()) {
+            NewsMetrics.getDefault().recordMillis(NewsMetrics.LOAD_FINISHED,
+                    SystemClock.elapsedRealtime() - mStartedAt);
+        }
+    }
+
+    /**
+     * Ask the server whether the cached copy is still current. A 304 Not Modified only costs
+     * a header exchange; a changed list is delivered as a second result.
+     */
+    private void revalidate(final NewsCache cache, final List<NewsCache.Entry> cached,
+                            final Cancellation cancellation) {
+        final List<String> urls = mUrls;
+        REVALIDATE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellation.isCancelled()) {
+                    return;
+                }
+                NewsFanOut.fetchAll(urls, cache, cancellation);
+                if (cancellation.isCancelled()) {
+                    return;
+                }
+                List<NewsCache.Entry> fresh = getCachedEntries(cache, urls);
+                boolean modified = false;
+                for (int i = 0; fresh != null && i < fresh.size(); i++) {
+                    if (fresh.get(i).getStoredAt() != cached.get(i).getStoredAt()) {
+                        modified = true;
+                    }
+                }
+                final List<News> changed = modified ? mergeEntries(fresh, cancellation) : null;
+                NewsSearchIndex.getDefault().addAll(changed);
+                NewsDisplay.prepareAll(changed);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!cancellation.isCancelled()) {
+                            onRevalidated(changed);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Called on the main thread once revalidation is done, with the new list if the server
+     * had one or null if the cached copy was still current.
+     */
+    private void onRevalidated(List<News> changed) {
+        mStale = false;
+        if (changed == null) {
+            recordFreshContent(SystemClock.elapsedRealtime() - mStartedAt);
+        } else if (isStarted()) {
+            Log.i(TAG, "onRevalidated: Cached news changed, delivering the fresh list");
+            deliverResult(changed);
+        } else {
+            // deliver it the next time the loader is started
+            onContentChanged();
+        }
+    }
+
+    private void recordFreshContent(long elapsed) {
+        if (mFreshContentMillis < 0) {
+            mFreshContentMillis = elapsed;
+            Log.i(TAG, "recordFreshContent: Time to fresh content " + elapsed + " ms");
+            NewsMetrics.getDefault().recordMillis(NewsMetrics.LOAD_FRESH_CONTENT, elapsed);
+        }
+    }
+
+    /**
+     * Return the URL the pages after page 1 are loaded from, which is the loaded one, or
+     * null if the loader combines several editions, which only show their first page.
+     */
+    public String getPagedUrl() {
+        return mUrls != null && mUrls.size() == 1 ? mUrls.get(0) : null;
+    }
+
+    /** Milliseconds from the start of the load until the first result, or -1 */
+    public long getFirstContentMillis() {
+        return mFirstContentMillis;
+    }
+
+    /** Milliseconds from the start of the load until the revalidated result, or -1 */
+    public long getFreshContentMillis() {
+        return mFreshContentMillis;
+    }
+
+    /**
+     * Return the news cache shared by all loaders, creating it in the app's cache directory.
+     */
+    static synchronized NewsCache getCache(Context context) {
+        if (sCache == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), "news");
+            sCache = new NewsCache(directory, CACHE_MAX_BYTES, CACHE_MAX_AGE_MILLIS);
+        }
+        return sCache;
+    }
+
+    /**
+     * Return the article store shared by the loaders and the sync, creating it in the
+     * app's files directory where the system doesn't clear it to free space.
+     */
+    static synchronized ArticleStore getStore(Context context) {
+        if (sStore == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), "articles.bin");
+            sStore = new ArticleStore(file);
+        }
+        return sStore;
+    }
+
+    /**
+     * Return the store of prefetched article bodies, creating it in the app's files
+     * directory.
+     */
+    static synchronized ArticleBodyStore getBodyStore(Context context) {
+        if (sBodyStore == null) {
+            File directory = new File(context.getApplicationContext().getFilesDir(), "bodies");
+            sBodyStore = new ArticleBodyStore(directory, BODY_STORE_MAX_BYTES);
+        }
+        return sBodyStore;
     }
 
 }
@@ -0,0 +1,318 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timing histograms of the load path: the phases of each request, parsing,
+ * and how long a load takes to reach the screen. Recording is off by default; while it is
+ * off, starting a timer is a single volatile read and nothing is recorded. A snapshot can be
+ * exported as JSON to compare builds and networks.
+ */
+public final class NewsMetrics {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsMetrics.class.getSimpleName();
+
+    /**
+     * Connecting, including the host name lookup and TLS, in microseconds; near zero on a
+     * reused connection
+     */
+    public static final String HTTP_CONNECT = "http.connect.micros";
+
+    /** From the request being sent to the response headers, in microseconds */
+    public static final String HTTP_FIRST_BYTE = "http.first_byte.micros";
+
+    /** From the response headers to the end of the body, in microseconds */
+    public static final String HTTP_BODY = "http.body.micros";
+
+    /** Requests sent */
+    public static final String HTTP_REQUESTS = "http.requests";
+
+    /** Requests answered 304 Not Modified */
+    public static final String HTTP_NOT_MODIFIED = "http.not_modified";
+
+    /** Requests that failed with an I/O error */
+    public static final String HTTP_FAILURES = "http.failures";
+
+    /** Requests sent again after a failure or a retryable response */
+    public static final String HTTP_RETRIES = "http.retries";
+
+    /** Requests not sent because the server's circuit breaker was open */
+    public static final String HTTP_SHORT_CIRCUITED = "http.short_circuited";
+
+    /** Parsing a whole response string, in microseconds */
+    public static final String PARSE_JSON = "parse.json.micros";
+
+    /** Parsing a response as it streams in, in microseconds, including reading the body */
+    public static final String PARSE_STREAM = "parse.stream.micros";
+
+    /** Articles in each parsed response */
+    public static final String PARSE_ITEMS = "parse.items";
+
+    /** From the start of a load to its first result on screen, in microseconds */
+    public static final String LOAD_FIRST_CONTENT = "load.first_content.micros";
+
+    /** From the start of a load to a result checked with the server, in microseconds */
+    public static final String LOAD_FRESH_CONTENT = "load.fresh_content.micros";
+
+    /** From the start of a load to onLoadFinished returning, in microseconds */
+    public static final String LOAD_FINISHED = "load.finished.micros";
+
+    /** Metrics shared by the app */
+    private static final NewsMetrics sDefault = new NewsMetrics();
+
+    private volatile boolean mEnabled;
+
+    private final ConcurrentHashMap<String, AtomicLong> mCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+
+    /**
+     * Return the metrics shared by the app.
+     */
+    public static NewsMetrics getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Turn recording on or off. Values recorded so far are kept.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Return the start of a timing to pass to {@link #stopTimer}, or 0 if recording is off.
+     */
+    public long startTimer() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time since {@link #startTimer} returned {@code startedAt} in the named
+     * histogram, in microseconds. Does nothing if the timer was started while recording
+     * was off.
+     */
+    public void stopTimer(String name, long startedAt) {
+        if (startedAt != 0 && mEnabled) {
+            histogram(name).record((System.nanoTime() - startedAt) / 1000);
+        }
+    }
+
+    /**
+     * Record a duration measured elsewhere, in milliseconds, in the named histogram.
+     */
+    public void recordMillis(String name, long millis) {
+        if (mEnabled) {
+            histogram(name).record(millis * 1000);
+        }
+    }
+
+    /**
+     * Record a value in the named histogram.
+     */
+    public void record(String name, long value) {
+        if (mEnabled) {
+            histogram(name).record(value);
+        }
+    }
+
+    /**
+     * Add one to the named counter.
+     */
+    public void increment(String name) {
+        if (mEnabled) {
+            AtomicLong counter = mCounters.get(name);
+            if (counter == null) {
+                counter = new AtomicLong();
+                AtomicLong existing = mCounters.putIfAbsent(name, counter);
+                counter = existing != null ? existing : counter;
+            }
+            counter.incrementAndGet();
+        }
+    }
+
+    /** Value of the named counter, 0 if nothing was counted */
+    public long getCount(String name) {
+        AtomicLong counter = mCounters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /** The named histogram, or null if nothing was recorded in it */
+    public Histogram getHistogram(String name) {
+        return mHistograms.get(name);
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        mCounters.clear();
+        mHistograms.clear();
+    }
+
+    /**
+     * Return everything recorded so far as a JSON object, with names in alphabetical order:
+     * {"counters": {name: count}, "histograms": {name: {"count", "mean", "p50", "p90",
+     * "p99", "max"}}}.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, AtomicLong> counter : new TreeMap<>(mCounters).entrySet()) {
+            json.append(first ? "" : ",").append(JSONObject.quote(counter.getKey()))
+                    .append(':').append(counter.getValue().get());
+            first = false;
+        }
+        json.append("},\"histograms\":{");
+        first = true;
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(mHistograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            json.append(first ? "" : ",").append(JSONObject.quote(entry.getKey()))
+                    .append(":{\"count\":").append(histogram.getCount())
+                    .append(",\"mean\":").append(histogram.getMean())
+                    .append(",\"p50\":").append(histogram.getPercentile(0.50))
+                    .append(",\"p90\":").append(histogram.getPercentile(0.90))
+                    .append(",\"p99\":").append(histogram.getPercentile(0.99))
+                    .append(",\"max\":").append(histogram.getMax())
+                    .append('}');
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Write the JSON snapshot to the file, replacing it.
+     */
+    public void writeTo(File file) {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(toJson().getBytes(Charset.forName("UTF-8")));
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing metrics to " + file, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Problem closing " + file, e);
+                }
+            }
+        }
+    }
+
+    private Histogram histogram(String name) {
+        Histogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = mHistograms.putIfAbsent(name, histogram);
+            histogram = existing != null ? existing : histogram;
+        }
+        return histogram;
+    }
+
+    /**
+     * Distribution of non-negative values in buckets of fixed relative width: values below 8
+     * get a bucket each, and every power of two above is split into 8 buckets, so any
+     * percentile is reported within 12.5% of the recorded value in a few KB, without locking.
+     */
+    public static class Histogram {
+
+        // buckets per power of two, as a power of two
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        // enough buckets for any long
+        private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        /**
+         * Add a value; negative values are counted as 0.
+         */
+        public void record(long value) {
+            value = Math.max(value, 0);
+            mBuckets.incrementAndGet(bucketOf(value));
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        /** Mean of the recorded values, 0 if there are none */
+        public long getMean() {
+            long count = mCount.get();
+            return count == 0 ? 0 : mSum.get() / count;
+        }
+
+        /**
+         * Return the value below which the given fraction of recorded values fall, as the
+         * top of its bucket, or 0 if nothing was recorded.
+         */
+        public long getPercentile(double fraction) {
+            long count = mCount.get();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(highestIn(i), mMax.get());
+                }
+            }
+            return mMax.get();
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long highestIn(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+            return lowest + (1L << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+package com.example.android.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.ListView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads further pages of the Guardian query as the user scrolls the {@link ListView}.
+ * Page 1 comes from {@link NewsLoader}; the pager appends the pages after it a little
+ * before the user gets to the end, and keeps at most {@link #MAX_PAGES} pages in the
+ * adapter, dropping pages at one end and reloading them when the user scrolls back.
+ */
+public class NewsPager implements AbsListView.OnScrollListener {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsPager.class.getSimpleName();
+
+    /** Start loading a page when the user is this many rows from the edge of the window */
+    private static final int PREFETCH_DISTANCE = 5;
+
+    /** Most pages kept in the adapter at once */
+    private static final int MAX_PAGES = 5;
+
+    /** Runs page requests one at a time */
+    private static final ExecutorService PAGE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final ListView mListView;
+    private final NewsAdapter mAdapter;
+    private final NewsCache mCache;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Query URL without the page parameter */
+    private String mBaseUrl;
+
+    /** Bumped by every reset so late results for an old query are dropped */
+    private int mGeneration;
+
+    /** Page number of the first page in the adapter */
+    private int mFirstPage = 1;
+
+    /** Number of rows each page in the adapter contributed, first page first */
+    private final ArrayDeque<Integer> mPageCounts = new ArrayDeque<>();
+
+    /** First page known to be past the end of the results */
+    private int mEndPage = Integer.MAX_VALUE;
+
+    /** True from a reset until the loader delivers page 1 of the new query */
+    private boolean mAwaitingFirstPage = true;
+
+    /** Requests still running, by page number */
+    private final Map<Integer, Cancellation> mInFlight = new HashMap<>();
+
+    /**
+     * create a new {@link NewsPager}.
+     *
+     * @param listView showing the news
+     * @param adapter backing the list view
+     * @param cache to read and store pages through
+     */
+    public NewsPager(ListView listView, NewsAdapter adapter, NewsCache cache) {
+        mListView = listView;
+        mAdapter = adapter;
+        mCache = cache;
+    }
+
+    /**
+     * Start over for a new query, cancelling any page requests still running. Rows still
+     * in the adapter belong to the old query, so none of them count as a page of the new
+     * one; the new page 1 replaces them all, see {@link #isAwaitingFirstPage()}.
+     */
+    public void reset(String baseUrl) {
+        mGeneration++;
+        for (Cancellation request : mInFlight.values()) {
+            request.cancel();
+        }
+        mInFlight.clear();
+        mBaseUrl = baseUrl;
+        mFirstPage = 1;
+        mPageCounts.clear();
+        mEndPage = Integer.MAX_VALUE;
+        mAwaitingFirstPage = true;
+    }
+
+    /** Query URL the pages are loaded from, or null if there is nothing to page */
+    public String getBaseUrl() {
+        return mBaseUrl;
+    }
+
+    /**
+     * Return true from a reset until page 1 of the new query has been delivered, while any
+     * rows in the adapter are left over from the old query.
+     */
+    public boolean isAwaitingFirstPage() {
+        return mAwaitingFirstPage;
+    }
+
+    /**
+     * Return the number of rows page 1 occupies at the top of the adapter, or -1 if
+     * page 1 has been dropped from the window.
+     */
+    public int getFirstPageCount() {
+        if (mFirstPage != 1) {
+            return -1;
+        }
+        return mPageCounts.isEmpty() ? 0 : mPageCounts.peekFirst();
+    }
+
+    /**
+     * Record how many rows page 1 occupies after the loader delivered it.
+     */
+    public void setFirstPageCount(int count) {
+        if (mFirstPage != 1) {
+            return;
+        }
+        if (!mPageCounts.isEmpty()) {
+            mPageCounts.removeFirst();
+        }
+        mPageCounts.addFirst(count);
+        mAwaitingFirstPage = false;
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                         int totalItemCount) {
+        // nothing to page from until the loader has delivered page 1, or while the list
+        // shows something else such as search results
+        if (totalItemCount == 0 || mAwaitingFirstPage || view.getAdapter() != mAdapter) {
+            return;
+        }
+        if (firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_DISTANCE) {
+            requestPage(mFirstPage + mPageCounts.size());
+        }
+        if (firstVisibleItem < PREFETCH_DISTANCE && mFirstPage > 1) {
+            requestPage(mFirstPage - 1);
+        }
+    }
+
+    /**
+     * Fetch the page on the background executor unless it is already on its way.
+     */
+    private void requestPage(final int page) {
+        if (mBaseUrl == null || page < 1 || page >= mEndPage || mInFlight.containsKey(page)) {
+            return;
+        }
+        Log.i(TAG, "requestPage: Loading page " + page);
+
+        final int generation = mGeneration;
+        final String url = mBaseUrl + "&page=" + page;
+        final Cancellation cancellation = new Cancellation();
+        mInFlight.put(page, cancellation);
+        PAGE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<News> news = SingleFlight.getDefault().fetch(url, mCache, cancellation);
+                NewsSearchIndex.getDefault().addAll(news);
+                NewsDisplay.prepareAll(news);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, news);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Called on the main thread with the result of a page request.
+     */
+    private void onPageLoaded(int generation, int page, List<News> news) {
+        if (generation != mGeneration) {
+            // the query changed while this page was loading
+            return;
+        }
+        mInFlight.remove(page);
+
+        if (news == null) {
+            // failed, the next scroll event will try again
+            return;
+        }
+        if (news.isEmpty()) {
+            // an empty page, or one the API refused as past the last, ends the results
+            mEndPage = Math.min(mEndPage, page);
+            return;
+        }
+
+        if (page == mFirstPage + mPageCounts.size()) {
+            append(news);
+        } else if (page == mFirstPage - 1) {
+            prepend(news);
+        }
+        // otherwise the window moved on while the page was loading
+    }
+
+    /**
+     * Add a page after the last one, dropping the first page if the window is full.
+     */
+    private void append(List<News> news) {
+        List<News> rows = withoutShownArticles(news);
+        mAdapter.setNotifyOnChange(false);
+        mAdapter.addAll(rows);
+        mPageCounts.addLast(rows.size());
+
+        int removed = 0;
+        if (mPageCounts.size() > MAX_PAGES) {
+            removed = mPageCounts.removeFirst();
+            mAdapter.removeRange(0, removed);
+            mFirstPage++;
+        }
+        notifyKeepingPosition(-removed);
+    }
+
+    /**
+     * Add a page before the first one, dropping the last page if the window is full.
+     */
+    private void prepend(List<News> news) {
+        List<News> rows = withoutShownArticles(news);
+        mAdapter.setNotifyOnChange(false);
+        mAdapter.insertAll(0, rows);
+        mPageCounts.addFirst(rows.size());
+        mFirstPage--;
+
+        if (mPageCounts.size() > MAX_PAGES) {
+            int removed = mPageCounts.removeLast();
+            mAdapter.removeRange(mAdapter.getCount() - removed, mAdapter.getCount());
+            // the dropped page can be loaded again
+            mEndPage = Integer.MAX_VALUE;
+        }
+        notifyKeepingPosition(rows.size());
+    }
+
+    /**
+     * Return the articles of the page that aren't already in the adapter. Articles shift
+     * between pages when new ones are published while the user scrolls.
+     */
+    private List<News> withoutShownArticles(List<News> news) {
+        Set<String> shown = new HashSet<>();
+        for (int i = 0; i < mAdapter.getCount(); i++) {
+            shown.add(mAdapter.getItem(i).getUrl());
+        }
+        List<News> rows = new ArrayList<>(news.size());
+        for (News article : news) {
+            if (shown.add(article.getUrl())) {
+                rows.add(article);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Refresh the list, keeping the rows on screen in place after rows were added or
+     * removed above them.
+     */
+    private void notifyKeepingPosition(int shift) {
+        int first = mListView.getFirstVisiblePosition();
+        View firstView = mListView.getChildAt(0);
+        int top = firstView == null ? 0 : firstView.getTop();
+        mAdapter.notifyDataSetChanged();
+        if (shift != 0) {
+            mListView.setSelectionFromTop(Math.max(0, first + shift), top);
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the Guardian query URLs for the user's settings, shared by {@link MainActivity}
+ * and the background sync so both load the same queries.
+ */
+public final class NewsQueries {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsQueries.class.getSimpleName();
+
+    // URL with my private key from Guardian API
+    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search";
+
+    // api key
+    private static final String MY_API_KEY = "c275cc44-cc41-4cb6-a339-aa1c72d60bf0";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsQueries}
+     * object.
+     */
+    private NewsQueries() {
+    }
+
+    /**
+     * Return the URLs the news loader fetches for the current settings: the searches of the
+     * subscribed sections, one per combined edition, or the single query otherwise.
+     */
+    public static List<String> buildLoaderUrls(Context context) {
+        List<Subscription> subscriptions = getSubscriptions(context);
+        if (!subscriptions.isEmpty()) {
+            SubscriptionEngine engine = new SubscriptionEngine(buildSearchUrl(context));
+            return SubscriptionEngine.urlsOf(engine.compile(subscriptions,
+                    FetchPolicy.getDefault().getPageSize()));
+        }
+        List<String> combinedEditions = getCombinedEditions(context);
+        if (combinedEditions == null) {
+            return Collections.singletonList(buildQueryUrl(context));
+        }
+        List<String> urls = new ArrayList<>();
+        for (String editions : combinedEditions) {
+            urls.add(buildQueryUrl(context, editions));
+        }
+        return urls;
+    }
+
+    /**
+     * Return the URL the pages after page 1 are loaded from, or null when the settings need
+     * more than one search, which only show their first page.
+     */
+    public static String buildPagedUrl(Context context) {
+        List<String> urls = buildLoaderUrls(context);
+        return urls.size() == 1 ? urls.get(0) : null;
+    }
+
+    /**
+     * Return a subscription for each section the user subscribed to, all of them with the
+     * keyword, or none if no section is chosen.
+     */
+    public static List<Subscription> getSubscriptions(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Set<String> sections = sharedPrefs.getStringSet(
+                context.getString(R.string.settings_sections_key),
+                Collections.<String>emptySet()
+        );
+        String keyword = sharedPrefs.getString(
+                context.getString(R.string.settings_keyword_key), null);
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (String section : sections) {
+            subscriptions.add(new Subscription(section, null, keyword, null, null));
+        }
+        return subscriptions;
+    }
+
+    /**
+     * Return the editions the user chose to combine, or null if fewer than two are chosen.
+     */
+    public static List<String> getCombinedEditions(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Set<String> editions = sharedPrefs.getStringSet(
+                context.getString(R.string.settings_multi_editions_key),
+                Collections.<String>emptySet()
+        );
+        if (editions.size() < 2) {
+            return null;
+        }
+        List<String> sorted = new ArrayList<>(editions);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Return true if combined results should be ordered newest first.
+     */
+    public static boolean isNewestFirst(Context context) {
+        return context.getString(R.string.settings_order_by_newest_value)
+                .equals(getOrderBy(context));
+    }
+
+    /**
+     * Build the Guardian query URL for the current settings, without a page number.
+     */
+    public static String buildQueryUrl(Context context) {
+
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        // getString retrieves a String value from the preferences. The second parameter
+        // is the default value for this preference.
+        String editions = sharedPrefs.getString(
+                context.getString(R.string.settings_editions_key),
+                context.getString(R.string.settings_editions_default)
+        );
+
+        return buildQueryUrl(context, editions);
+    }
+
+    private static String getOrderBy(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default)
+        );
+    }
+
+    /**
+     * Build the Guardian query URL for the given edition, without a page number.
+     */
+    public static String buildQueryUrl(Context context, String editions) {
+
+        String orderBy = getOrderBy(context);
+
+        // start building URL with Uri.parse
+        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+        // add parameters
+        uriBuilder.appendQueryParameter("editions", editions);
+        uriBuilder.appendQueryParameter("order-by", orderBy);
+        // as many articles per page as the network delivers quickly
+        uriBuilder.appendQueryParameter("page-size",
+                String.valueOf(FetchPolicy.getDefault().getPageSize()));
+        uriBuilder.appendQueryParameter("show-fields", "byline,thumbnail");
+        uriBuilder.appendQueryParameter("api-key", MY_API_KEY);
+        // get full url in log 'https://content.guardianapis.com/search?q=editions?q=us&order-by=newest&page-size=10&show-fields=byline,thumbnail'
+        Log.i(TAG, uriBuilder.toString());
+
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Build the Guardian search URL of the chosen edition and order, which the
+     * {@link SubscriptionEngine} adds the subscriptions' filters and page size to.
+     */
+    private static String buildSearchUrl(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String editions = sharedPrefs.getString(
+                context.getString(R.string.settings_editions_key),
+                context.getString(R.string.settings_editions_default)
+        );
+
+        Uri.Builder uriBuilder = Uri.parse(GUARDIAN_REQUEST_URL).buildUpon();
+        uriBuilder.appendQueryParameter("editions", editions);
+        uriBuilder.appendQueryParameter("order-by", getOrderBy(context));
+        uriBuilder.appendQueryParameter("show-fields", "byline,thumbnail");
+        uriBuilder.appendQueryParameter("api-key", MY_API_KEY);
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Build the Guardian search URL that returns article bodies, which the
+     * {@link ArticlePrefetcher} adds the article ids to.
+     */
+    public static String buildBodiesUrl() {
+        Uri.Builder uriBuilder = Uri.parse(GUARDIAN_REQUEST_URL).buildUpon();
+        uriBuilder.appendQueryParameter("show-fields", "bodyText");
+        uriBuilder.appendQueryParameter("api-key", MY_API_KEY);
+        return uriBuilder.toString();
+    }
+
+}
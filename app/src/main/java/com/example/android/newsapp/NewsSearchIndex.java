@@ -0,0 +1,326 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the titles, sections and bylines of the articles the app
+ * has loaded, so the list can be searched without another Guardian query.
+ *
+ * Articles get increasing ids as they are added, which keeps every posting list sorted so
+ * it can be stored as variable-length deltas, usually a byte per entry. Once more than
+ * {@code maxArticles} ids are in use the oldest articles are evicted, and since they have
+ * the lowest ids they are always at the front of the posting lists, which are trimmed by
+ * moving a base id rather than re-encoding them.
+ */
+public class NewsSearchIndex {
+
+    /** Default number of articles kept by the app's index */
+    public static final int DEFAULT_MAX_ARTICLES = 10000;
+
+    /** Shared by the app's loaders */
+    private static final NewsSearchIndex sDefault = new NewsSearchIndex(DEFAULT_MAX_ARTICLES);
+
+    /** Most ids in use at once; evicting down to this many starts from the oldest */
+    private final int mMaxArticles;
+
+    /** Article of each id, at {@code id % mMaxArticles}; kept after being replaced */
+    private final News[] mArticles;
+
+    /** Current id of each article by URL; an article added again gets a new id */
+    private final Map<String, Integer> mIds = new HashMap<>();
+
+    /** Posting lists by term, sorted so a prefix is a contiguous range */
+    private final TreeMap<String, Postings> mTerms = new TreeMap<>();
+
+    /** Lowest id still in the index */
+    private int mFirstId;
+
+    /** Id of the next article added */
+    private int mNextId;
+
+    /**
+     * create a new {@link NewsSearchIndex}.
+     *
+     * @param maxArticles is the number of most recently added articles kept
+     */
+    public NewsSearchIndex(int maxArticles) {
+        mMaxArticles = maxArticles;
+        mArticles = new News[maxArticles];
+    }
+
+    /**
+     * Return the index shared by the app's loaders.
+     */
+    public static NewsSearchIndex getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Add the articles to the index, replacing older copies of the same URL, and evict
+     * the oldest articles past the limit.
+     */
+    public synchronized void addAll(List<News> news) {
+        if (news == null) {
+            return;
+        }
+        Set<String> terms = new HashSet<>();
+        for (News article : news) {
+            Integer oldId = mIds.get(article.getUrl());
+            if (oldId != null && sameText(mArticles[oldId % mMaxArticles], article)) {
+                continue;
+            }
+            // the old id's postings are left to be trimmed when it is evicted and are
+            // skipped by queries until then
+            if (mNextId - mFirstId == mMaxArticles) {
+                evictOldest();
+            }
+            int id = mNextId++;
+            mArticles[id % mMaxArticles] = article;
+            mIds.put(article.getUrl(), id);
+
+            terms.clear();
+            addTerms(terms, article);
+            for (String term : terms) {
+                Postings postings = mTerms.get(term);
+                if (postings == null) {
+                    postings = new Postings();
+                    mTerms.put(term, postings);
+                }
+                postings.add(id);
+            }
+        }
+    }
+
+    /**
+     * Return the articles matching every word of the query, most recently added first.
+     * Each word matches any indexed word it is a prefix of, so results show up while the
+     * user is still typing.
+     *
+     * @param query is the words to look for, case insensitive
+     * @param limit is the most results returned
+     */
+    public synchronized List<News> search(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        tokenize(query, words);
+        List<News> results = new ArrayList<>();
+        if (words.isEmpty()) {
+            return results;
+        }
+
+        // ids relative to mFirstId matching all words so far
+        BitSet matches = null;
+        for (String word : words) {
+            BitSet wordMatches = new BitSet(mNextId - mFirstId);
+            SortedMap<String, Postings> range = mTerms.subMap(word, word + Character.MAX_VALUE);
+            for (Postings postings : range.values()) {
+                postings.addTo(wordMatches, mFirstId);
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+            if (matches.isEmpty()) {
+                return results;
+            }
+        }
+
+        for (int i = matches.length() - 1; i >= 0 && results.size() < limit;
+             i = matches.previousSetBit(i - 1)) {
+            int id = mFirstId + i;
+            News article = mArticles[id % mMaxArticles];
+            // skip the ids of articles that have been added again since
+            Integer currentId = mIds.get(article.getUrl());
+            if (currentId != null && currentId == id) {
+                results.add(article);
+            }
+        }
+        return results;
+    }
+
+    /** Number of articles in the index */
+    public synchronized int size() {
+        return mIds.size();
+    }
+
+    /** Number of distinct words in the index */
+    public synchronized int getTermCount() {
+        return mTerms.size();
+    }
+
+    /** Bytes taken by the encoded posting lists, not counting the arrays' spare room */
+    public synchronized long getPostingBytes() {
+        long bytes = 0;
+        for (Postings postings : mTerms.values()) {
+            bytes += postings.mLength;
+        }
+        return bytes;
+    }
+
+    /**
+     * Drop the article with the lowest id and trim it from the front of its postings.
+     */
+    private void evictOldest() {
+        int id = mFirstId++;
+        int slot = id % mMaxArticles;
+        News article = mArticles[slot];
+        mArticles[slot] = null;
+        if (article == null) {
+            return;
+        }
+        Integer currentId = mIds.get(article.getUrl());
+        if (currentId != null && currentId == id) {
+            mIds.remove(article.getUrl());
+        }
+
+        Set<String> terms = new HashSet<>();
+        addTerms(terms, article);
+        for (String term : terms) {
+            Postings postings = mTerms.get(term);
+            if (postings != null && postings.trimBelow(mFirstId)) {
+                mTerms.remove(term);
+            }
+        }
+    }
+
+    private static boolean sameText(News a, News b) {
+        return a != null && equal(a.getTitle(), b.getTitle())
+                && equal(a.getSection(), b.getSection())
+                && equal(a.getAuthor(), b.getAuthor());
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void addTerms(Set<String> terms, News article) {
+        tokenize(article.getTitle(), terms);
+        tokenize(article.getSection(), terms);
+        tokenize(article.getAuthor(), terms);
+    }
+
+    /**
+     * Split the text into lower case words of letters and digits.
+     */
+    static void tokenize(String text, Collection<String> words) {
+        if (text == null) {
+            return;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Ascending ids stored as the varint encoded difference from the previous id, the
+     * first one from {@link #mBase}.
+     */
+    private static final class Postings {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        byte[] mBytes = new byte[INITIAL_CAPACITY];
+        int mLength;
+
+        /** Id the first delta is relative to */
+        int mBase;
+
+        /** Last id added */
+        int mLast;
+
+        void add(int id) {
+            int delta = id - (mLength == 0 ? mBase : mLast);
+            if (mLength + 5 > mBytes.length) {
+                byte[] grown = new byte[Math.max(mBytes.length * 2, mLength + 5)];
+                System.arraycopy(mBytes, 0, grown, 0, mLength);
+                mBytes = grown;
+            }
+            while ((delta & ~0x7F) != 0) {
+                mBytes[mLength++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            mBytes[mLength++] = (byte) delta;
+            mLast = id;
+        }
+
+        /**
+         * Set the bit of every id at or above {@code firstId}, relative to it.
+         */
+        void addTo(BitSet bits, int firstId) {
+            int id = mBase;
+            int pos = 0;
+            while (pos < mLength) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = mBytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                if (id >= firstId) {
+                    bits.set(id - firstId);
+                }
+            }
+        }
+
+        /**
+         * Drop the ids below {@code firstId} from the front, returning true if none are left.
+         */
+        boolean trimBelow(int firstId) {
+            int id = mBase;
+            int pos = 0;
+            while (pos < mLength) {
+                int entryStart = pos;
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = mBytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (id + delta >= firstId) {
+                    // the rest of the list stays as it is, relative to the last dropped id
+                    pos = entryStart;
+                    break;
+                }
+                id += delta;
+            }
+            if (pos == 0) {
+                return false;
+            }
+            mBase = id;
+            mLength -= pos;
+            if (mLength == 0) {
+                return true;
+            }
+            // give back room once the list has shrunk to a quarter of its array
+            byte[] target = mBytes.length > INITIAL_CAPACITY && mLength * 4 < mBytes.length
+                    ? new byte[mLength * 2] : mBytes;
+            System.arraycopy(mBytes, pos, target, 0, mLength);
+            mBytes = target;
+            return false;
+        }
+    }
+
+}
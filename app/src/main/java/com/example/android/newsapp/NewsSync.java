@@ -0,0 +1,297 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Refreshes the configured queries into the {@link ArticleStore}. All queries are fetched
+ * together in one batch and stored with one write, only while the device is online and
+ * not short of battery. After a failed sync, further attempts are skipped for a period
+ * that doubles with every failure in a row, and the backoff is kept in the store so it
+ * survives the process being killed between runs.
+ *
+ * In incremental mode a query sorted newest first that has been synced before only asks
+ * for the articles published after the newest one stored, its high-water mark, and merges
+ * them into the stored list, dropping the oldest past the query's page size. A refresh
+ * then costs about as many articles as were published since the last one.
+ *
+ * The engine has no Android dependencies; {@link NewsSyncService} schedules it and
+ * supplies the device conditions.
+ */
+public class NewsSync {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsSync.class.getSimpleName();
+
+    /** Wait after the first failure, doubled for each further failure in a row */
+    static final long INITIAL_BACKOFF_MILLIS = 15 * 60 * 1000L;
+
+    /** Longest wait between attempts however many have failed */
+    static final long MAX_BACKOFF_MILLIS = 8 * 60 * 60 * 1000L;
+
+    /** Outcome of a {@link #sync} call */
+    public enum Result {
+        /** Every query was fetched and stored */
+        SYNCED,
+        /** A recent failure means it is too early to try again */
+        BACKING_OFF,
+        /** The device conditions don't allow a sync right now */
+        CONSTRAINED,
+        /** A query couldn't be fetched; the next attempt is backed off */
+        FAILED
+    }
+
+    /**
+     * Source of the current time, replaced by a fake one in tests.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    /** Clock of the system */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final ArticleStore mStore;
+    private final NewsCache mCache;
+    private final Clock mClock;
+
+    /** True to fetch only the articles newer than the stored ones */
+    private boolean mIncremental;
+
+    /**
+     * create a new {@link NewsSync}.
+     *
+     * @param store to put the articles in
+     * @param cache to make conditional requests through, or null
+     * @param clock to time the backoff with
+     */
+    public NewsSync(ArticleStore store, NewsCache cache, Clock clock) {
+        mStore = store;
+        mCache = cache;
+        mClock = clock;
+    }
+
+    /**
+     * Fetch only what was published since the last sync of each query, where the query
+     * allows it.
+     */
+    public void setIncremental(boolean incremental) {
+        mIncremental = incremental;
+    }
+
+    /**
+     * Fetch the queries and store their articles if the conditions allow it and no
+     * backoff is pending. Queries that were fetched are stored even when others failed.
+     *
+     * @param urls of the queries to refresh
+     * @param online is true when the device has a network connection
+     * @param batteryLow is true when the battery is low and not charging
+     * @param cancellation to call the sync off with, or null
+     */
+    public Result sync(List<String> urls, boolean online, boolean batteryLow,
+                       Cancellation cancellation) {
+        if (!online || batteryLow) {
+            Log.i(TAG, "sync: Waiting for a connection and enough battery");
+            return Result.CONSTRAINED;
+        }
+        long now = mClock.currentTimeMillis();
+        if (now < mStore.getNextAttemptAt()) {
+            Log.i(TAG, "sync: Backing off until " + mStore.getNextAttemptAt());
+            return Result.BACKING_OFF;
+        }
+
+        // ask the queries synced before only for what is newer than their stored articles,
+        // past the cache: a delta is only good once, and would evict the entries reused
+        List<String> requests = new ArrayList<>(urls.size());
+        List<NewsCache> caches = new ArrayList<>(urls.size());
+        List<List<News>> stored = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            ArticleStore.Query query = mIncremental ? mStore.get(NewsCache.keyFor(url)) : null;
+            String deltaUrl =
+                    query == null ? null : buildDeltaUrl(url, getWatermark(query.getNews()));
+            requests.add(deltaUrl != null ? deltaUrl : url);
+            caches.add(deltaUrl != null ? null : mCache);
+            stored.add(deltaUrl != null ? query.getNews() : null);
+        }
+
+        long requestedAt = System.currentTimeMillis();
+        List<List<News>> results = NewsFanOut.fetchAll(requests, caches, cancellation);
+        if (cancellation != null && cancellation.isCancelled()) {
+            // stopped by the system, not a failure to back off from
+            return Result.CONSTRAINED;
+        }
+
+        Map<String, List<News>> fetched = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            List<News> news = results.get(i);
+            if (news == null) {
+                continue;
+            }
+            String key = NewsCache.keyFor(urls.get(i));
+            if (stored.get(i) != null) {
+                news = mergeDelta(stored.get(i), news, getPageSize(urls.get(i)));
+                // the merged list is what the query now returns, so the loader sees it too
+                if (mCache != null) {
+                    mCache.put(key, news, null, null);
+                }
+            } else if (!isFromServer(key, requestedAt)) {
+                continue;
+            }
+            fetched.put(key, news);
+        }
+        if (!fetched.isEmpty()) {
+            mStore.putAll(fetched, mClock.currentTimeMillis());
+        }
+
+        if (fetched.size() < urls.size()) {
+            int failures = mStore.getFailures() + 1;
+            long nextAttemptAt = mClock.currentTimeMillis() + getBackoffMillis(failures);
+            Log.e(TAG, "sync: Failed " + failures + " times in a row, next attempt at "
+                    + nextAttemptAt);
+            mStore.setBackoff(failures, nextAttemptAt);
+            return Result.FAILED;
+        }
+        if (mStore.getFailures() != 0 || mStore.getNextAttemptAt() != 0) {
+            mStore.setBackoff(0, 0);
+        }
+        return Result.SYNCED;
+    }
+
+    /**
+     * Return how long to wait after the given number of failures in a row.
+     */
+    static long getBackoffMillis(int failures) {
+        // stop doubling well before the shift could overflow
+        int doublings = Math.min(failures - 1, 30);
+        return Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << doublings);
+    }
+
+    /**
+     * Return the publication time of the newest dated article, or {@link NewsDates#NO_DATE}.
+     */
+    static long getWatermark(List<News> news) {
+        long watermark = NewsDates.NO_DATE;
+        for (News article : news) {
+            if (article.hasDate()) {
+                watermark = Math.max(watermark, article.getPublishedAt());
+            }
+        }
+        return watermark;
+    }
+
+    /**
+     * Return the query URL asking only for articles published after the watermark, or null
+     * if the query isn't sorted newest first, where the newer articles aren't the first
+     * page, or there is no watermark. A date range the query already has is replaced.
+     */
+    static String buildDeltaUrl(String url, long watermark) {
+        int start = url.indexOf('?');
+        if (watermark == NewsDates.NO_DATE || start < 0
+                || !"newest".equals(getParameter(url, "order-by"))) {
+            return null;
+        }
+        StringBuilder delta = new StringBuilder(url.length() + 40)
+                .append(url, 0, start + 1);
+        for (String parameter : url.substring(start + 1).split("&")) {
+            if (!parameter.startsWith("from-date=")) {
+                delta.append(parameter).append('&');
+            }
+        }
+        // the Guardian's timestamps are in whole seconds, and from-date includes its own
+        return delta.append("from-date=")
+                .append(IoUtils.encode(NewsDates.formatTimestamp(watermark + 1000))).toString();
+    }
+
+    /**
+     * Merge the newer articles into the stored ones, newest first, the fresh copy of an
+     * article replacing the stored one, keeping no more than {@code pageSize}. A full page
+     * of newer articles may not reach back to the stored ones, so it replaces them.
+     *
+     * @param pageSize is the page size of the query, or 0 to keep as many as are stored
+     */
+    static List<News> mergeDelta(List<News> stored, List<News> fresh, int pageSize) {
+        if (pageSize > 0 && fresh.size() >= pageSize) {
+            return fresh;
+        }
+        List<News> merged = new ArrayList<>(fresh.size() + stored.size());
+        Set<String> urls = new HashSet<>();
+        for (News article : fresh) {
+            if (urls.add(article.getUrl())) {
+                merged.add(article);
+            }
+        }
+        for (News article : stored) {
+            if (urls.add(article.getUrl())) {
+                merged.add(article);
+            }
+        }
+        // the sort is stable, so articles published at the same time keep their order, and
+        // undated ones, which have the smallest time, go last
+        Collections.sort(merged, new Comparator<News>() {
+            @Override
+            public int compare(News a, News b) {
+                return a.getPublishedAt() > b.getPublishedAt() ? -1
+                        : (a.getPublishedAt() < b.getPublishedAt() ? 1 : 0);
+            }
+        });
+        int cap = pageSize > 0 ? pageSize : Math.max(stored.size(), fresh.size());
+        if (merged.size() > cap) {
+            Log.i(TAG, "mergeDelta: Dropping the " + (merged.size() - cap) + " oldest articles");
+            merged = new ArrayList<>(merged.subList(0, cap));
+        }
+        return merged;
+    }
+
+    /**
+     * Return the page size the query URL asks for, or 0 if it doesn't say.
+     */
+    static int getPageSize(String url) {
+        String pageSize = getParameter(url, "page-size");
+        try {
+            return pageSize == null ? 0 : Integer.parseInt(pageSize);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String getParameter(String url, String name) {
+        int start = url.indexOf('?');
+        if (start < 0) {
+            return null;
+        }
+        for (String parameter : url.substring(start + 1).split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return true unless the fetch fell back to a cached copy because the server couldn't
+     * be reached, which doesn't count as a sync.
+     */
+    private boolean isFromServer(String key, long requestedAt) {
+        if (mCache == null) {
+            return true;
+        }
+        NewsCache.Entry entry = mCache.get(key);
+        // a result shared by SingleFlight may have been fetched just before this request
+        return entry != null
+                && entry.getValidatedAt() >= requestedAt - SingleFlight.RECENT_MILLIS;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.example.android.newsapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+/**
+ * The periodic sync job of {@link NewsSyncService} on Lollipop and later.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class NewsSyncJobService extends JobService {
+
+    /** Stops the sync in progress */
+    private Cancellation mCancellation;
+
+    /**
+     * Schedule the periodic job unless it already is.
+     */
+    static void schedule(Context context, int jobId, long intervalMillis) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == jobId) {
+                return;
+            }
+        }
+
+        JobInfo.Builder builder = new JobInfo.Builder(jobId,
+                new ComponentName(context, NewsSyncJobService.class))
+                .setPeriodic(intervalMillis)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setRequiresBatteryNotLow(true);
+        }
+        scheduler.schedule(builder.build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // jobs are started on the main thread, the sync blocks on the network
+        final Cancellation cancellation = new Cancellation();
+        mCancellation = cancellation;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                NewsSyncService.runSync(NewsSyncJobService.this, cancellation);
+                if (!cancellation.isCancelled()) {
+                    // the engine keeps its own backoff, so the job never asks to be retried
+                    jobFinished(params, false);
+                }
+            }
+        }).start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // the constraints no longer hold, stop and run again when they do
+        if (mCancellation != null) {
+            mCancellation.cancel();
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.example.android.newsapp;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs {@link NewsSync} in the background. From Lollipop on the sync is a periodic
+ * {@link NewsSyncJobService} job that JobScheduler only starts with a network connection
+ * (and, from Oreo, a battery that isn't low), batching it with other apps' work. Older
+ * devices get an inexact repeating alarm, which the system also batches, that starts this
+ * service; the sync engine checks the connection and battery itself either way.
+ */
+public class NewsSyncService extends IntentService {
+
+    /** Tag for log messages */
+    private static final String TAG = NewsSyncService.class.getSimpleName();
+
+    /** How often the articles are refreshed */
+    static final long SYNC_INTERVAL_MILLIS = AlarmManager.INTERVAL_HOUR;
+
+    /** Id of the sync job */
+    private static final int SYNC_JOB_ID = 1;
+
+    /** Battery percentage below which a device that isn't charging is left alone */
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    /** Articles at the top of the list whose bodies are kept for offline reading */
+    private static final int PREFETCH_ARTICLES = 20;
+
+    /** Most compressed body bytes stored by one prefetch */
+    private static final long PREFETCH_BUDGET_BYTES = 512 * 1024;
+
+    /** Runs the prefetches started by the app, one at a time */
+    private static final Executor PREFETCH_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    public NewsSyncService() {
+        super(TAG);
+    }
+
+    /**
+     * Schedule the periodic sync unless it already is.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            NewsSyncJobService.schedule(context, SYNC_JOB_ID, SYNC_INTERVAL_MILLIS);
+            return;
+        }
+
+        Intent intent = new Intent(context, NewsSyncService.class);
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        AlarmManager alarmManager =
+                (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                PendingIntent.getService(context, 0, intent, 0));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        runSync(this, null);
+    }
+
+    /**
+     * Sync the queries of the current settings on the calling thread.
+     */
+    static NewsSync.Result runSync(Context context, Cancellation cancellation) {
+        Context appContext = context.getApplicationContext();
+        NewsSync sync = new NewsSync(NewsLoader.getStore(appContext),
+                NewsLoader.getCache(appContext), NewsSync.SYSTEM_CLOCK);
+        // a refresh on a metered link only costs the articles published since the last one
+        sync.setIncremental(true);
+        NewsSync.Result result = sync.sync(NewsQueries.buildLoaderUrls(appContext),
+                isOnline(appContext), isBatteryLow(appContext), cancellation);
+        Log.i(TAG, "runSync: " + result);
+
+        // keep the bodies of the freshly synced articles for offline reading
+        if (result == NewsSync.Result.SYNCED) {
+            List<News> news = new ArrayList<>();
+            for (String url : NewsQueries.buildLoaderUrls(appContext)) {
+                ArticleStore.Query query =
+                        NewsLoader.getStore(appContext).get(NewsCache.keyFor(url));
+                if (query != null) {
+                    news.addAll(query.getNews());
+                }
+            }
+            prefetchBodies(appContext, news, cancellation);
+        }
+        return result;
+    }
+
+    /**
+     * Prefetch the bodies of the top articles of the list on a background thread.
+     */
+    static void prefetchBodiesInBackground(Context context, final List<News> news) {
+        final Context appContext = context.getApplicationContext();
+        PREFETCH_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // list the stored bodies here, so the UI thread asks the store from memory
+                NewsLoader.getBodyStore(appContext).list();
+                prefetchBodies(appContext, news, null);
+            }
+        });
+    }
+
+    /**
+     * Store the bodies of the top articles of the list on the calling thread, if the
+     * connection isn't metered or slow.
+     */
+    static void prefetchBodies(Context context, List<News> news, Cancellation cancellation) {
+        if (news == null || news.isEmpty() || !isUnmetered(context)
+                || !FetchPolicy.getDefault().shouldPrefetch()) {
+            return;
+        }
+        new ArticlePrefetcher(NewsLoader.getBodyStore(context), NewsQueries.buildBodiesUrl())
+                .prefetch(news, PREFETCH_ARTICLES, PREFETCH_BUDGET_BYTES, cancellation);
+    }
+
+    private static boolean isOnline(Context context) {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        updateNetwork(networkInfo);
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    /**
+     * Let the {@link FetchPolicy} start measuring again if the device changed networks.
+     */
+    static void updateNetwork(NetworkInfo networkInfo) {
+        FetchPolicy.getDefault().setNetwork(networkInfo != null && networkInfo.isConnected()
+                ? networkInfo.getTypeName() + "/" + networkInfo.getSubtypeName() : null);
+    }
+
+    private static boolean isUnmetered(Context context) {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr);
+    }
+
+    private static boolean isBatteryLow(Context context) {
+        // the battery broadcast is sticky, so this reads the last one without a receiver
+        Intent battery = context.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+        if (battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0) {
+            return false;
+        }
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return level >= 0 && scale > 0 && level * 100 / scale < LOW_BATTERY_PERCENT;
+    }
+
+}
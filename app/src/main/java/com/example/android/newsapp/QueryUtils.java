@@ -5,6 +5,9 @@ package com.example.android.newsapp;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -18,7 +21,10 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class QueryUtils {
 
@@ -37,23 +43,46 @@ public final class QueryUtils {
      * Query the Guardian API dataset and return a list of {@link News} article objects
      */
     public static List<News> fetchNewsData(String requestUrl) {
+        return fetchNewsData(requestUrl, null);
+    }
 
-        // create URL object
+    /**
+     * Query the Guardian API dataset and return a list of {@link News} article objects,
+     * revalidating and updating the copy held in the given {@link NewsCache}.
+     */
+    public static List<News> fetchNewsData(String requestUrl, NewsCache cache) {
+        return fetchNewsData(requestUrl, cache, null);
+    }
+
+    /**
+     * Query the Guardian API dataset through the given {@link NewsCache}, giving up as soon
+     * as the {@link Cancellation} is cancelled. Returns null if it was.
+     */
+    public static List<News> fetchNewsData(String requestUrl, NewsCache cache,
+                                           Cancellation cancellation) {
         URL url = createUrl(requestUrl);
+        return fetchNewsData(url, cache, cancellation, RetryPolicy.getDefault(),
+                url == null ? null : CircuitBreaker.forServer(url));
+    }
+
+    /**
+     * Query the Guardian API dataset through the given {@link NewsCache}, retrying with the
+     * given {@link RetryPolicy} and only while the {@link CircuitBreaker} lets requests
+     * through.
+     */
+    static List<News> fetchNewsData(URL url, NewsCache cache, Cancellation cancellation,
+                                    RetryPolicy retryPolicy, CircuitBreaker breaker) {
         Log.i(TAG, "fetchNewsData: News Data Is Fetched!!!!!!");
 
-        // perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+        // perform HTTP request to the URL and stream the JSON response straight into a list
+        // of {@link News} objects
+        List<News> news = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            news = makeHttpRequest(url, cache, cancellation, retryPolicy, breaker);
         } catch (IOException e) {
             Log.e(TAG, "fetchNewsData: Problem making the HTTP request.", e);
         }
 
-        // Extract relevant fields from the JSON response and create a list of
-        // {@link News} objects.
-        List<News> news = extractFeatureFromJson(jsonResponse);
-
         // return the list of {@link News} objects
         return news;
     }
@@ -72,48 +101,152 @@ public final class QueryUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Make an HTTP request to the given URL and return the list of {@link News} parsed from
+     * the response, or null if the request failed. When a cache is given the request is
+     * conditional on the cached copy, and the cached list is returned if the server answers
+     * 304 Not Modified or can't be reached. A failure that may be transient is retried with
+     * the policy's delays, or after the Retry-After the server asked for; while the breaker
+     * is open the server isn't asked at all.
      * -- used from Quake Report App
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    private static List<News> makeHttpRequest(URL url, NewsCache cache,
+                                              Cancellation cancellation,
+                                              RetryPolicy retryPolicy,
+                                              CircuitBreaker breaker) throws IOException {
+        List<News> news = null;
 
         // If the URL is null, then return early.
         if (url == null) {
-            return jsonResponse;
+            return news;
         }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
-        try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(TAG, "Error response code: " + urlConnection.getResponseCode());
+        // look up the copy we already have of this query
+        String cacheKey = null;
+        NewsCache.Entry cached = null;
+        if (cache != null) {
+            cacheKey = NewsCache.keyFor(url.toString());
+            cached = cache.get(cacheKey);
+        }
+
+        // let the server answer with headers only if our copy is still current
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null) {
+            if (cached.getETag() != null) {
+                headers.put("If-None-Match", cached.getETag());
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Problem retrieving the earthquake JSON results.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            if (cached.getLastModified() != null) {
+                headers.put("If-Modified-Since", cached.getLastModified());
+            }
+        }
+
+        NewsMetrics metrics = NewsMetrics.getDefault();
+        // the breaker counts requests, not the attempts at them
+        boolean allowed = breaker.allowRequest();
+        if (!allowed) {
+            Log.i(TAG, "makeHttpRequest: Server unhealthy, not asking it until "
+                    + breaker.getRetryAt());
+            metrics.increment(NewsMetrics.HTTP_SHORT_CIRCUITED);
+        }
+        for (int attempt = 1; allowed; attempt++) {
+            boolean retryable = false;
+            long retryAfterMillis = -1;
+            HttpTransport.Response response = null;
+            try {
+                response = HttpTransport.getDefault().get(url, headers, cancellation);
+
+                // If the request was successful (response code 200),
+                // then parse the response as it comes off the input stream.
+                int responseCode = response.getCode();
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    news = extractFeatureFromStream(response.getBody());
+                    if (cancellation != null && cancellation.isCancelled()) {
+                        // the parser stopped where the disconnect cut the response off
+                        return null;
+                    }
+                    if (cache != null && news != null) {
+                        cache.put(cacheKey, news, response.getHeader("ETag"),
+                                response.getHeader("Last-Modified"));
+                    }
+                } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                        && cached != null) {
+                    // our copy is still current
+                    cache.touch(cacheKey);
+                    news = cached.getNews();
+                } else if (responseCode == HttpURLConnection.HTTP_BAD_REQUEST
+                        && getPage(url) > 1) {
+                    // the API refuses a page past the last one, there are no more results
+                    Log.i(TAG, "makeHttpRequest: No page " + getPage(url) + " of " + url);
+                    news = new ArrayList<>();
+                } else {
+                    Log.e(TAG, "Error response code: " + responseCode);
+                    retryable = RetryPolicy.isRetryable(responseCode);
+                    retryAfterMillis = RetryPolicy.parseRetryAfter(
+                            response.getHeader("Retry-After"), System.currentTimeMillis());
+                }
+            } catch (IOException e) {
+                if (cancellation != null && cancellation.isCancelled()) {
+                    return null;
+                }
+                Log.e(TAG, "Problem retrieving the earthquake JSON results.", e);
+                retryable = true;
+            } finally {
+                if (response != null) {
+                    // Closing the response could throw an IOException, which is why
+                    // the makeHttpRequest(URL url) method signature specifies than an
+                    // IOException could be thrown. The connection stays open for the next
+                    // request.
+                    response.close();
+                }
+            }
+
+            if (!retryable) {
+                // the server answered, even if it was with an error a retry won't fix
+                breaker.onSuccess();
+                break;
             }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies than an IOException
-                // could be thrown.
-                inputStream.close();
+            if (retryAfterMillis > retryPolicy.getMaxDelayMillis()) {
+                // longer than is worth waiting for here, serve the cache until then
+                breaker.onRetryAfter(retryAfterMillis);
+                break;
             }
+            if (attempt >= retryPolicy.getMaxAttempts()) {
+                breaker.onFailure();
+                break;
+            }
+            long delayMillis = retryAfterMillis >= 0
+                    ? retryAfterMillis : retryPolicy.getDelayMillis(attempt);
+            Log.i(TAG, "makeHttpRequest: Retrying in " + delayMillis + " ms");
+            if (!RetryPolicy.pause(delayMillis, cancellation)) {
+                return null;
+            }
+            metrics.increment(NewsMetrics.HTTP_RETRIES);
+        }
+
+        // fall back to the cached copy when the server couldn't give us a fresh one
+        if (news == null && cached != null) {
+            Log.i(TAG, "makeHttpRequest: Serving cached news for " + cacheKey);
+            news = cached.getNews();
         }
-        return jsonResponse;
+        return news;
+    }
+
+    /**
+     * Return the page number the URL asks for, 1 if it doesn't.
+     */
+    static int getPage(URL url) {
+        String query = url.getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("page=")) {
+                    try {
+                        return Integer.parseInt(param.substring("page=".length()));
+                    } catch (NumberFormatException e) {
+                        return 1;
+                    }
+                }
+            }
+        }
+        return 1;
     }
 
     /**
@@ -121,7 +254,7 @@ public final class QueryUtils {
      * whole JSON response from the server.
      * -- used from Quake Report App
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
@@ -139,7 +272,7 @@ public final class QueryUtils {
      * Return a list of {@link News} objects that have been built up from parsing
      * the given JSON response. -- used some code from Quake Report App
      */
-    private static List<News> extractFeatureFromJson(String newsJSON) {
+    static List<News> extractFeatureFromJson(String newsJSON) {
 
         // If the JSON string is empty or null, then return early
         if (TextUtils.isEmpty(newsJSON)) {
@@ -148,6 +281,8 @@ public final class QueryUtils {
 
         // create an empty ArrayList to add news articles to
         List<News> news = new ArrayList<>();
+        NewsMetrics metrics = NewsMetrics.getDefault();
+        long startedAt = metrics.startTimer();
 
         // Try to parse the JSON response string. If there's a problem with the way the JSON
         // is formatted, a JSONException exception object will be thrown.
@@ -182,19 +317,20 @@ public final class QueryUtils {
 
                 // extract the value for the key called "webPublicationDate"
                 String webPublicationDate = currentNewsArticle.getString("webPublicationDate");
-                // split the date
-                String[] webDate;
-                webDate = webPublicationDate.split("T");
-                String date = webDate[0];
+                // parse the timestamp once, keeping the time of day for sorting
+                long publishedAt = NewsDates.parse(webPublicationDate);
 
                 // extract the value for the JSONObject called "fields"
                 JSONObject fields = currentNewsArticle.getJSONObject("fields");
                 // get value from JSONObject fields key called "byline;
                 String author = fields.optString("byline");
+                // and the url of the thumbnail image, which not every article has
+                String thumbnail =
+                        fields.isNull("thumbnail") ? null : fields.getString("thumbnail");
 
 
                 // create a new {@link News} object with the JSON response
-                News newsArticles = new News(title, date, section, author, url);
+                News newsArticles = new News(title, publishedAt, section, author, url, thumbnail);
 
                 // add the new {@link News} to the list of news articles
                 news.add(newsArticles);
@@ -206,9 +342,223 @@ public final class QueryUtils {
             // with the message from the exception.
             Log.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
         }
+        metrics.stopTimer(NewsMetrics.PARSE_JSON, startedAt);
+        metrics.record(NewsMetrics.PARSE_ITEMS, news.size());
+
+        // return the list of news articles
+        return news;
+    }
+
+    /**
+     * Return a list of {@link News} objects read token by token from the given JSON stream.
+     * Produces the same list as {@link #extractFeatureFromJson(String)} without holding the
+     * whole response in memory; fields we don't display are skipped without being built.
+     */
+    static List<News> extractFeatureFromStream(InputStream inputStream) throws IOException {
+
+        // If there is no stream, then return early
+        if (inputStream == null) {
+            return null;
+        }
+
+        // create an empty ArrayList to add news articles to
+        List<News> news = new ArrayList<>();
+        NewsMetrics metrics = NewsMetrics.getDefault();
+        long startedAt = metrics.startTimer();
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            // walk the top level object down to the key "response"
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("response".equals(reader.nextName())) {
+                    readResponse(reader, news);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | JSONException e) {
+            // a malformed or truncated response keeps the articles read so far, the same way
+            // the JSONException is handled in extractFeatureFromJson
+            Log.e(TAG, "Problem streaming the news JSON results", e);
+        } finally {
+            reader.close();
+        }
+        metrics.stopTimer(NewsMetrics.PARSE_STREAM, startedAt);
+        metrics.record(NewsMetrics.PARSE_ITEMS, news.size());
 
         // return the list of news articles
         return news;
     }
 
+    /**
+     * Read the "response" object and add every entry of its "results" array to the list.
+     */
+    private static void readResponse(JsonReader reader, List<News> news)
+            throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    news.add(readNewsArticle(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read a single entry of the "results" array into a {@link News} object.
+     */
+    private static News readNewsArticle(JsonReader reader) throws IOException, JSONException {
+        String section = null;
+        String title = null;
+        String url = null;
+        String webPublicationDate = null;
+        String[] fields = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                // leave the field missing, same as a JSON null in extractFeatureFromJson
+                reader.skipValue();
+            } else if ("sectionName".equals(name)) {
+                section = reader.nextString();
+            } else if ("webTitle".equals(name)) {
+                title = reader.nextString();
+            } else if ("webUrl".equals(name)) {
+                url = reader.nextString();
+            } else if ("webPublicationDate".equals(name)) {
+                webPublicationDate = reader.nextString();
+            } else if ("fields".equals(name)) {
+                fields = readFields(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // the required keys are the ones extractFeatureFromJson reads with getString
+        if (section == null || title == null || url == null || webPublicationDate == null
+                || fields == null) {
+            throw new JSONException("News article is missing a required field");
+        }
+
+        // parse the timestamp once, keeping the time of day for sorting
+        return new News(title, NewsDates.parse(webPublicationDate), section, fields[0], url,
+                fields[1]);
+    }
+
+    /**
+     * Read the "fields" object and return its "byline", or an empty String when there is none
+     * (matching optString in extractFeatureFromJson), followed by its "thumbnail" or null.
+     */
+    private static String[] readFields(JsonReader reader) throws IOException {
+        String author = "";
+        String thumbnail = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if ("byline".equals(name)) {
+                author = reader.nextString();
+            } else if ("thumbnail".equals(name)) {
+                thumbnail = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new String[]{author, thumbnail};
+    }
+
+    /**
+     * Return the "bodyText" field of every result in a JSON stream, keyed by the result's
+     * "webUrl". Results without a body are left out, and a malformed or truncated
+     * response keeps the bodies read so far.
+     */
+    static Map<String, String> extractBodiesFromStream(InputStream inputStream)
+            throws IOException {
+        Map<String, String> bodies = new LinkedHashMap<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("response".equals(reader.nextName())) {
+                    readBodies(reader, bodies);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "Problem streaming the article bodies", e);
+        } finally {
+            reader.close();
+        }
+        return bodies;
+    }
+
+    /**
+     * Read the "response" object of a body query into the map.
+     */
+    private static void readBodies(JsonReader reader, Map<String, String> bodies)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"results".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String url = null;
+                String body = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.skipValue();
+                    } else if ("webUrl".equals(name)) {
+                        url = reader.nextString();
+                    } else if ("fields".equals(name)) {
+                        body = readBodyText(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (url != null && body != null && !body.isEmpty()) {
+                    bodies.put(url, body);
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read the "fields" object of a body query and return its "bodyText", or null.
+     */
+    private static String readBodyText(JsonReader reader) throws IOException {
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("bodyText".equals(reader.nextName()) && reader.peek() != JsonToken.NULL) {
+                body = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return body;
+    }
+
 }
@@ -0,0 +1,162 @@
+package com.example.android.newsapp;
+
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often and how long apart a failed GET is tried again: only for failures that may go
+ * away by themselves, an I/O error or a 408, 429, 500, 502, 503 or 504, with an
+ * exponentially growing delay of which a random half is taken, so clients that failed
+ * together don't retry together. A Retry-After the server sends is used instead, when it
+ * isn't longer than the longest delay.
+ */
+public class RetryPolicy {
+
+    /** Attempts at each request, the first included */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /** Delay before the first retry, of which a random half is taken */
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+
+    /** Longest delay, and the longest Retry-After waited for */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+
+    /** HTTP 429 Too Many Requests, which HttpURLConnection has no constant for */
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /** Policy of the app's requests */
+    private static final RetryPolicy sDefault = new RetryPolicy(DEFAULT_MAX_ATTEMPTS,
+            DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new Random());
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+
+    /** Jitter source; guarded by itself */
+    private final Random mRandom;
+
+    /**
+     * Return the policy of the app's requests.
+     */
+    public static RetryPolicy getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * create a new {@link RetryPolicy}.
+     *
+     * @param maxAttempts is the number of attempts at each request, the first included
+     * @param baseDelayMillis is the delay before the first retry, doubled for each one after
+     * @param maxDelayMillis is the longest delay, and the longest Retry-After waited for
+     * @param random picks the jitter, seeded in tests
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                       Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRandom = random;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    public long getMaxDelayMillis() {
+        return mMaxDelayMillis;
+    }
+
+    /**
+     * Return how long to wait after the given failed attempt, counting from 1: between half
+     * and all of the base delay doubled for each attempt before, up to the longest delay.
+     */
+    public long getDelayMillis(int attempt) {
+        long delay = mBaseDelayMillis;
+        for (int i = 1; i < attempt && delay < mMaxDelayMillis; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, mMaxDelayMillis);
+        long half = delay / 2;
+        synchronized (mRandom) {
+            return half + (long) (mRandom.nextDouble() * (delay - half + 1));
+        }
+    }
+
+    /**
+     * Return true if a response with the code may succeed when asked again.
+     */
+    public static boolean isRetryable(int responseCode) {
+        switch (responseCode) {
+            case HttpURLConnection.HTTP_CLIENT_TIMEOUT:
+            case HTTP_TOO_MANY_REQUESTS:
+            case HttpURLConnection.HTTP_INTERNAL_ERROR:
+            case HttpURLConnection.HTTP_BAD_GATEWAY:
+            case HttpURLConnection.HTTP_UNAVAILABLE:
+            case HttpURLConnection.HTTP_GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Return the wait a Retry-After header asks for, as seconds or an HTTP date, in
+     * milliseconds from {@code now}, or -1 if there is no usable header.
+     */
+    public static long parseRetryAfter(String value, long now) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException e) {
+            // not a number of seconds, try a date
+        }
+        // a new formatter each time, a Retry-After is rare and SimpleDateFormat isn't
+        // thread safe
+        SimpleDateFormat httpDate =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, httpDate.parse(value).getTime() - now);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Wait for the given time on the calling thread. Returns false, early, if the
+     * cancellation is cancelled or the thread interrupted.
+     */
+    public static boolean pause(long millis, Cancellation cancellation) {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        Runnable onCancel = new Runnable() {
+            @Override
+            public void run() {
+                cancelled.countDown();
+            }
+        };
+        if (cancellation != null) {
+            cancellation.addOnCancelListener(onCancel);
+        }
+        try {
+            return !cancelled.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (cancellation != null) {
+                cancellation.removeOnCancelListener(onCancel);
+            }
+        }
+    }
+
+}
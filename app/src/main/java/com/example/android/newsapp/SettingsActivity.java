@@ -5,11 +5,15 @@ package com.example.android.newsapp;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.ListPreference;
+import android.preference.MultiSelectListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class SettingsActivity extends AppCompatActivity {
 
     @Override
@@ -31,6 +35,15 @@ public class SettingsActivity extends AppCompatActivity {
             Preference orderBy = findPreference(getString(R.string.settings_order_by_key));
             bindPreferenceSummaryToValue(orderBy);
 
+            Preference multiEditions = findPreference(getString(R.string.settings_multi_editions_key));
+            bindPreferenceSummaryToValue(multiEditions);
+
+            Preference sections = findPreference(getString(R.string.settings_sections_key));
+            bindPreferenceSummaryToValue(sections);
+
+            Preference keyword = findPreference(getString(R.string.settings_keyword_key));
+            bindPreferenceSummaryToValue(keyword);
+
         }
 
         @Override
@@ -38,6 +51,11 @@ public class SettingsActivity extends AppCompatActivity {
                                           Object value) {
             // The code in this method takes care of updating the displayed
             // preference summary after it ahs been changed.
+            if (preference instanceof MultiSelectListPreference) {
+                preference.setSummary(getMultiSelectSummary(
+                        (MultiSelectListPreference) preference, (Set<?>) value));
+                return true;
+            }
             String stringValue = value.toString();
             if (preference instanceof ListPreference) {
                 ListPreference listPreference = (ListPreference) preference;
@@ -52,9 +70,37 @@ public class SettingsActivity extends AppCompatActivity {
             return true;
         }
 
+        // lists the labels of the selected values; editions only combine when there are two or
+        // more, while a single section is already a subscription
+        private String getMultiSelectSummary(MultiSelectListPreference preference, Set<?> values) {
+            boolean sections = preference.getKey().equals(getString(R.string.settings_sections_key));
+            if (values.size() < (sections ? 1 : 2)) {
+                return getString(sections ? R.string.settings_sections_off
+                        : R.string.settings_multi_editions_off);
+            }
+            CharSequence[] labels = preference.getEntries();
+            CharSequence[] entryValues = preference.getEntryValues();
+            StringBuilder summary = new StringBuilder();
+            for (int i = 0; i < entryValues.length; i++) {
+                if (values.contains(entryValues[i].toString())) {
+                    if (summary.length() > 0) {
+                        summary.append(", ");
+                    }
+                    summary.append(labels[i]);
+                }
+            }
+            return summary.toString();
+        }
+
         private void bindPreferenceSummaryToValue(Preference preference) {
             preference.setOnPreferenceChangeListener(this);
             SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(preference.getContext());
+            if (preference instanceof MultiSelectListPreference) {
+                Set<String> preferenceSet = preferences.getStringSet(preference.getKey(),
+                        Collections.<String>emptySet());
+                onPreferenceChange(preference, preferenceSet);
+                return;
+            }
             String preferenceString = preferences.getString(preference.getKey(), "");
             onPreferenceChange(preference, preferenceString);
         }
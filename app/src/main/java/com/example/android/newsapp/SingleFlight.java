@@ -0,0 +1,201 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares one HTTP request between identical news queries. A query asked for while the
+ * same query (by {@link NewsCache#keyFor}) is in flight, or finished moments ago, gets
+ * that request's result instead of starting another. A request is called off as soon as
+ * every caller waiting for it has cancelled.
+ */
+public class SingleFlight {
+
+    /** Tag for log messages */
+    private static final String TAG = SingleFlight.class.getSimpleName();
+
+    /** A finished request's result is shared with identical queries for this long */
+    static final long RECENT_MILLIS = 2000;
+
+    /** Most requests running at once */
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    /** Runs the requests, apart from the callers so one cancelling doesn't stop the rest */
+    private static final ExecutorService EXECUTOR =
+            Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+
+    /** Shared by the app's requests */
+    private static final SingleFlight sDefault = new SingleFlight();
+
+    /** Requests in flight or recently finished, by query key */
+    private final Map<String, Flight> mFlights = new HashMap<>();
+
+    /**
+     * Return the instance shared by the app's requests.
+     */
+    public static SingleFlight getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Fetch the news at the URL through the cache, joining an identical request already
+     * in flight. Blocks until there is a result, and returns null if the request failed or
+     * the cancellation was cancelled first.
+     */
+    public List<News> fetch(String url, NewsCache cache, Cancellation cancellation) {
+        String key = NewsCache.keyFor(url);
+        Flight flight;
+        synchronized (this) {
+            flight = mFlights.get(key);
+            if (flight != null && flight.mDone) {
+                if (flight.mResult != null
+                        && System.currentTimeMillis() - flight.mFinishedAt <= RECENT_MILLIS) {
+                    Log.i(TAG, "fetch: Sharing the result just loaded for " + key);
+                    return flight.mResult;
+                }
+                mFlights.remove(key);
+                flight = null;
+            }
+
+            if (flight != null) {
+                Log.i(TAG, "fetch: Joining the request in flight for " + key);
+                flight.mWaiters++;
+            } else {
+                flight = new Flight(key);
+                mFlights.put(key, flight);
+                flight.start(url, cache);
+            }
+        }
+        return flight.await(cancellation);
+    }
+
+    /**
+     * Return the number of callers waiting for the request in flight for the URL, 0 if
+     * there is none.
+     */
+    synchronized int getWaiters(String url) {
+        Flight flight = mFlights.get(NewsCache.keyFor(url));
+        return flight == null || flight.mDone ? 0 : flight.mWaiters;
+    }
+
+    /**
+     * One request and the callers waiting for it.
+     */
+    private class Flight {
+
+        final String mKey;
+
+        /** Calls off the request itself once nobody is waiting for it */
+        final Cancellation mCancellation = new Cancellation();
+
+        /** Callers still waiting, guarded by the SingleFlight */
+        int mWaiters = 1;
+
+        volatile boolean mDone;
+        volatile List<News> mResult;
+        volatile long mFinishedAt;
+
+        Flight(String key) {
+            mKey = key;
+        }
+
+        void start(final String url, final NewsCache cache) {
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<News> result = null;
+                    try {
+                        result = QueryUtils.fetchNewsData(url, cache, mCancellation);
+                    } finally {
+                        // waiters must not be left hanging whatever the request did
+                        finish(result);
+                    }
+                }
+            });
+        }
+
+        void finish(List<News> result) {
+            synchronized (SingleFlight.this) {
+                mResult = mCancellation.isCancelled() ? null : result;
+                mFinishedAt = System.currentTimeMillis();
+                mDone = true;
+                // a failed request isn't worth sharing
+                if (mResult == null && mFlights.get(mKey) == this) {
+                    mFlights.remove(mKey);
+                }
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        List<News> await(Cancellation cancellation) {
+            // a caller leaves at most once, whether cancelled or interrupted
+            final AtomicBoolean left = new AtomicBoolean();
+            Runnable onCancel = new Runnable() {
+                @Override
+                public void run() {
+                    if (left.compareAndSet(false, true)) {
+                        leave();
+                    }
+                    synchronized (Flight.this) {
+                        Flight.this.notifyAll();
+                    }
+                }
+            };
+            if (cancellation != null) {
+                cancellation.addOnCancelListener(onCancel);
+            }
+
+            try {
+                synchronized (this) {
+                    while (!mDone && (cancellation == null || !cancellation.isCancelled())) {
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (left.compareAndSet(false, true)) {
+                    leave();
+                }
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                if (cancellation != null) {
+                    cancellation.removeOnCancelListener(onCancel);
+                }
+            }
+
+            if (cancellation != null && cancellation.isCancelled()) {
+                return null;
+            }
+            return mResult;
+        }
+
+        /**
+         * Stop waiting; the last caller to leave calls off the request.
+         */
+        void leave() {
+            boolean abandoned;
+            synchronized (SingleFlight.this) {
+                if (mDone) {
+                    return;
+                }
+                abandoned = --mWaiters == 0;
+                if (abandoned && mFlights.get(mKey) == this) {
+                    mFlights.remove(mKey);
+                }
+            }
+            if (abandoned) {
+                Log.i(TAG, "leave: Cancelling the superseded request for " + mKey);
+                mCancellation.cancel();
+            }
+        }
+    }
+
+}
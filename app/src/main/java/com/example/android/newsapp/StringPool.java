@@ -0,0 +1,60 @@
+package com.example.android.newsapp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hands out one shared instance of each of a small set of strings that repeat across
+ * many articles, such as section names and bylines, so a large list keeps one copy of
+ * each instead of one per article. Unlike {@link String#intern()} the pool is bounded:
+ * once full it forgets the string used least recently, so the sections and bylines of
+ * the articles being loaded now keep being shared. A pool held in a static field, as
+ * {@link News} holds its pool, lives as long as the process.
+ */
+public class StringPool {
+
+    private final int mMaxSize;
+
+    /** Pooled strings, least recently used first; guarded by itself */
+    private final Map<String, String> mStrings;
+
+    /**
+     * create a new {@link StringPool}.
+     *
+     * @param maxSize is the most distinct strings kept
+     */
+    public StringPool(int maxSize) {
+        mMaxSize = maxSize;
+        mStrings = new LinkedHashMap<String, String>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Return the pooled instance equal to the string, pooling it if it is new.
+     */
+    public String get(String value) {
+        if (value == null) {
+            return null;
+        }
+        synchronized (mStrings) {
+            String pooled = mStrings.get(value);
+            if (pooled != null) {
+                return pooled;
+            }
+            mStrings.put(value, value);
+            return value;
+        }
+    }
+
+    /** Number of distinct strings pooled */
+    public int size() {
+        synchronized (mStrings) {
+            return mStrings.size();
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.example.android.newsapp;
+
+/**
+ * A filter of the Guardian search: the articles of a section, with a tag, matching a
+ * keyword and published within a date range, each of which may be left open. The settings
+ * make one for each subscribed section, and the {@link SubscriptionEngine} compiles them
+ * into as few searches as it can.
+ */
+public class Subscription {
+
+    // Guardian section id such as "world", or null for every section
+    private final String mSection;
+
+    // Guardian tag id such as "technology/artificialintelligenceai", or null
+    private final String mTag;
+
+    // words the articles must match, or null
+    private final String mKeyword;
+
+    // first and last day of publication as "yyyy-MM-dd", or null when open
+    private final String mFromDate;
+    private final String mToDate;
+
+    /**
+     * create a new {@link Subscription}, every part of which may be null.
+     *
+     * @param section is the Guardian section id
+     * @param tag is the Guardian tag id
+     * @param keyword is what the articles must match
+     * @param fromDate is the first day of publication, as "yyyy-MM-dd"
+     * @param toDate is the last day of publication, as "yyyy-MM-dd"
+     */
+    public Subscription(String section, String tag, String keyword, String fromDate,
+                        String toDate) {
+        mSection = emptyToNull(section);
+        mTag = emptyToNull(tag);
+        mKeyword = emptyToNull(keyword);
+        mFromDate = emptyToNull(fromDate);
+        mToDate = emptyToNull(toDate);
+    }
+
+    public String getSection() {
+        return mSection;
+    }
+
+    public String getTag() {
+        return mTag;
+    }
+
+    public String getKeyword() {
+        return mKeyword;
+    }
+
+    public String getFromDate() {
+        return mFromDate;
+    }
+
+    public String getToDate() {
+        return mToDate;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Subscription)) {
+            return false;
+        }
+        Subscription other = (Subscription) o;
+        return equal(mSection, other.mSection) && equal(mTag, other.mTag)
+                && equal(mKeyword, other.mKeyword) && equal(mFromDate, other.mFromDate)
+                && equal(mToDate, other.mToDate);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (String part : new String[]{mSection, mTag, mKeyword, mFromDate, mToDate}) {
+            hash = 31 * hash + (part == null ? 0 : part.hashCode());
+        }
+        return hash;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "Subscription{section=" + mSection + ", tag=" + mTag + ", keyword=" + mKeyword
+                + ", from=" + mFromDate + ", to=" + mToDate + "}";
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compiles a set of {@link Subscription}s into as few Guardian searches as it can, letting
+ * the server do the filtering. Subscriptions with the same tag and keyword share one search
+ * for all of their sections, as {@code section=a|b|c}, from the earliest of their start
+ * dates to the latest of their end dates, with a page big enough for each section to get
+ * its share. The loader merges the results of the searches into one timeline.
+ *
+ * The engine has no Android dependencies; {@link NewsQueries} builds the subscriptions
+ * from the settings.
+ */
+public class SubscriptionEngine {
+
+    /** Tag for log messages */
+    private static final String TAG = SubscriptionEngine.class.getSimpleName();
+
+    /** Most sections asked for in one search, which keeps its URL short */
+    static final int MAX_SECTIONS_PER_QUERY = 10;
+
+    /** Largest page the Guardian API returns */
+    static final int MAX_PAGE_SIZE = 200;
+
+    /** Search URL with the order, fields and api key, the filters are added to it */
+    private final String mSearchUrl;
+
+    /**
+     * One search of the compiled subscriptions, and the subscriptions it is for.
+     */
+    public static class Query {
+
+        private final String mUrl;
+        private final List<Subscription> mSubscriptions;
+
+        Query(String url, List<Subscription> subscriptions) {
+            mUrl = url;
+            mSubscriptions = subscriptions;
+        }
+
+        public String getUrl() {
+            return mUrl;
+        }
+
+        public List<Subscription> getSubscriptions() {
+            return mSubscriptions;
+        }
+    }
+
+    /**
+     * create a new {@link SubscriptionEngine}.
+     *
+     * @param searchUrl is the Guardian search URL with the order, fields and api key
+     */
+    public SubscriptionEngine(String searchUrl) {
+        mSearchUrl = searchUrl;
+    }
+
+    /**
+     * Return the searches that fetch the subscriptions, each of which is in exactly one of
+     * them, in the same order for the same subscriptions so their URLs can be cached.
+     *
+     * @param pageSize is the number of articles wanted for each section
+     */
+    public List<Query> compile(Collection<Subscription> subscriptions, int pageSize) {
+        // subscriptions differing only in section and dates can share a search
+        Map<String, List<Subscription>> groups = new TreeMap<>();
+        for (Subscription subscription : new LinkedHashSet<>(subscriptions)) {
+            String key = nullToEmpty(subscription.getTag()) + '\u0000'
+                    + nullToEmpty(subscription.getKeyword());
+            List<Subscription> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(subscription);
+        }
+
+        List<Query> queries = new ArrayList<>();
+        for (List<Subscription> group : groups.values()) {
+            TreeSet<String> sections = new TreeSet<>();
+            boolean allSections = false;
+            for (Subscription subscription : group) {
+                if (subscription.getSection() == null) {
+                    allSections = true;
+                } else {
+                    sections.add(subscription.getSection());
+                }
+            }
+            if (allSections) {
+                // one search without a section filter covers the whole group
+                queries.add(buildQuery(Collections.<String>emptyList(), group, pageSize));
+                continue;
+            }
+            List<String> chunk = new ArrayList<>();
+            for (String section : sections) {
+                chunk.add(section);
+                if (chunk.size() == MAX_SECTIONS_PER_QUERY || section.equals(sections.last())) {
+                    List<Subscription> members = new ArrayList<>();
+                    for (Subscription subscription : group) {
+                        if (chunk.contains(subscription.getSection())) {
+                            members.add(subscription);
+                        }
+                    }
+                    queries.add(buildQuery(chunk, members, pageSize));
+                    chunk = new ArrayList<>();
+                }
+            }
+        }
+        Log.i(TAG, "compile: " + subscriptions.size() + " subscriptions in "
+                + queries.size() + " searches");
+        return queries;
+    }
+
+    /**
+     * Return the URLs of the searches, in order.
+     */
+    public static List<String> urlsOf(List<Query> queries) {
+        List<String> urls = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            urls.add(query.getUrl());
+        }
+        return urls;
+    }
+
+    private Query buildQuery(List<String> sections, List<Subscription> subscriptions,
+                             int pageSize) {
+        Subscription first = subscriptions.get(0);
+
+        // the widest dates of the subscriptions, an open end staying open
+        String fromDate = first.getFromDate();
+        String toDate = first.getToDate();
+        for (Subscription subscription : subscriptions) {
+            fromDate = fromDate == null || subscription.getFromDate() == null ? null
+                    : min(fromDate, subscription.getFromDate());
+            toDate = toDate == null || subscription.getToDate() == null ? null
+                    : max(toDate, subscription.getToDate());
+        }
+
+        StringBuilder url = new StringBuilder(mSearchUrl);
+        char separator = mSearchUrl.indexOf('?') < 0 ? '?' : '&';
+        if (!sections.isEmpty()) {
+            StringBuilder section = new StringBuilder();
+            for (String name : sections) {
+                section.append(section.length() == 0 ? "" : "|").append(name);
+            }
+            separator = append(url, separator, "section", section.toString());
+        }
+        separator = append(url, separator, "tag", first.getTag());
+        separator = append(url, separator, "q", first.getKeyword());
+        separator = append(url, separator, "from-date", fromDate);
+        separator = append(url, separator, "to-date", toDate);
+        append(url, separator, "page-size", String.valueOf(
+                Math.min(MAX_PAGE_SIZE, pageSize * Math.max(1, sections.size()))));
+        return new Query(url.toString(), subscriptions);
+    }
+
+    private static char append(StringBuilder url, char separator, String name, String value) {
+        if (value == null) {
+            return separator;
+        }
+        url.append(separator).append(name).append('=').append(IoUtils.encode(value));
+        return '&';
+    }
+
+    private static String min(String a, String b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static String max(String a, String b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows article thumbnails in the news list through an {@link ImagePipeline} of bitmaps,
+ * decoded at the size of the row's image view and kept in a memory cache sized to the
+ * heap and a disk cache in the app's cache directory.
+ */
+public class ThumbnailLoader {
+
+    /** Size budget of the on-disk thumbnail cache */
+    private static final long DISK_CACHE_BYTES = 10 * 1024 * 1024;
+
+    /** Largest thumbnail downloaded */
+    private static final int MAX_DOWNLOAD_BYTES = 1024 * 1024;
+
+    /** Thumbnails loading at once */
+    private static final int WORKERS = 2;
+
+    /** Share of the heap decoded thumbnails may take up */
+    private static final int HEAP_FRACTION = 8;
+
+    /** Loader shared by the news lists, created on first use */
+    private static ThumbnailLoader sDefault;
+
+    private final ImagePipeline<Bitmap> mPipeline;
+
+    /**
+     * Return the loader shared by the news lists.
+     */
+    public static synchronized ThumbnailLoader getDefault(Context context) {
+        if (sDefault == null) {
+            sDefault = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sDefault;
+    }
+
+    private ThumbnailLoader(Context context) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        Executor mainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        };
+        File directory = new File(context.getCacheDir(), "thumbnails");
+        mPipeline = new ImagePipeline<>(new ImagePipeline.HttpDownloader(MAX_DOWNLOAD_BYTES),
+                new BitmapDecoder(), new ImageDiskCache(directory, DISK_CACHE_BYTES),
+                Runtime.getRuntime().maxMemory() / HEAP_FRACTION,
+                Executors.newFixedThreadPool(WORKERS), mainExecutor);
+    }
+
+    /**
+     * Show the thumbnail at the URL in the view, which must have a fixed size, cancelling
+     * whatever the view was loading before. Returns the request to cancel if the view is
+     * recycled first, or null if there is nothing to wait for.
+     */
+    public ImagePipeline<Bitmap>.Request bind(final ImageView view, String url) {
+        if (url == null) {
+            view.setImageDrawable(null);
+            return null;
+        }
+        int width = view.getLayoutParams().width;
+        int height = view.getLayoutParams().height;
+        Bitmap cached = mPipeline.getCached(url, width, height);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return null;
+        }
+
+        // show the placeholder background until the image arrives
+        view.setImageDrawable(null);
+        return mPipeline.load(url, width, height, new ImagePipeline.Callback<Bitmap>() {
+            @Override
+            public void onImage(Bitmap image) {
+                if (image != null) {
+                    view.setImageBitmap(image);
+                }
+            }
+        });
+    }
+
+    /**
+     * Decodes with {@link BitmapFactory}, in 16 bit color which is plenty for a thumbnail
+     * and half the memory.
+     */
+    private static class BitmapDecoder implements ImagePipeline.Decoder<Bitmap> {
+
+        @Override
+        public int[] readSize(byte[] data) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            return new int[]{options.outWidth, options.outHeight};
+        }
+
+        @Override
+        public Bitmap decode(byte[] data, int sampleSize) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+
+        @Override
+        public long sizeOf(Bitmap image) {
+            return (long) image.getRowBytes() * image.getHeight();
+        }
+    }
+
+}
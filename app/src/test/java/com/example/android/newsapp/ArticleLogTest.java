@@ -0,0 +1,186 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.example.android.newsapp.TestUtils.article;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ArticleLog}, including recovery from a write cut short by a
+ * crash.
+ */
+public class ArticleLogTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void putAll_readsBackAfterReopening() throws IOException {
+        File file = new File(mFolder.getRoot(), "articles.log");
+        ArticleLog log = new ArticleLog(file, 100);
+        News withThumbnail = new News("Heatwave grips Europe", 1533891600000L, "World news",
+                "Damian Carrington", "https://www.theguardian.com/world/a",
+                "https://media.guim.co.uk/a/500.jpg");
+        News withoutByline = new News("Caf\u00e9 owners \u2013 \u00e9t\u00e9", 1533888000000L,
+                "Business", null, "https://www.theguardian.com/business/b", null);
+        log.putAll(Arrays.asList(withThumbnail, withoutByline));
+        log.close();
+
+        ArticleLog reopened = new ArticleLog(file, 100);
+        assertEquals(2, reopened.size());
+        assertSameNews(withThumbnail, reopened.get(withThumbnail.getUrl()));
+        assertSameNews(withoutByline, reopened.get(withoutByline.getUrl()));
+        assertNull(reopened.get("https://www.theguardian.com/missing"));
+    }
+
+    @Test
+    public void putAll_cutsLongFieldsAndSkipsLongUrls() throws IOException {
+        ArticleLog log = new ArticleLog(new File(mFolder.getRoot(), "articles.log"), 100);
+        StringBuilder text = new StringBuilder("a");
+        for (int i = 0; i < 40000; i++) {
+            // two bytes each, so the cut falls inside one of them
+            text.append('\u00e9');
+        }
+        String longText = text.toString();
+        News longTitle = new News(longText, 1533891600000L, "World news", null,
+                "https://www.theguardian.com/world/a", "https://media.guim.co.uk/" + longText);
+        News longUrl = new News("Title", 1533891600000L, "World news", null,
+                "https://www.theguardian.com/world/" + longText, null);
+
+        log.putAll(Arrays.asList(longTitle, longUrl));
+
+        News stored = log.get(longTitle.getUrl());
+        assertEquals(32767, stored.getTitle().length());
+        assertTrue(longText.startsWith(stored.getTitle()));
+        assertNull(stored.getThumbnail());
+        assertEquals(1, log.size());
+        assertFalse(ArticleLog.canStore(longUrl));
+    }
+
+    @Test
+    public void putAll_appendsOnlyChangedArticles() throws IOException {
+        ArticleLog log = new ArticleLog(new File(mFolder.getRoot(), "articles.log"), 100);
+        log.putAll(Arrays.asList(article(0, "First"), article(1, "Second")));
+        long size = log.getSize();
+
+        log.putAll(Arrays.asList(article(0, "First"), article(1, "Second")));
+        assertEquals(size, log.getSize());
+
+        log.putAll(Collections.singletonList(article(1, "Second, updated")));
+        assertTrue(log.getSize() > size);
+        assertEquals(2, log.size());
+        assertEquals("Second, updated", log.get(article(1, "").getUrl()).getTitle());
+    }
+
+    @Test
+    public void open_truncatesTornRecord() throws IOException {
+        File file = new File(mFolder.getRoot(), "articles.log");
+        ArticleLog log = new ArticleLog(file, 100);
+        log.putAll(Arrays.asList(article(0, "First"), article(1, "Second")));
+        long whole = log.getSize();
+        log.putAll(Collections.singletonList(article(2, "Third, cut short")));
+        long torn = log.getSize();
+        log.close();
+
+        // the crash came part way through writing the last record
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(whole + (torn - whole) / 2);
+        raf.close();
+
+        ArticleLog reopened = new ArticleLog(file, 100);
+        assertEquals(2, reopened.size());
+        assertEquals(whole, reopened.getSize());
+        assertEquals(whole, file.length());
+        assertNull(reopened.get(article(2, "").getUrl()));
+
+        // and appending carries on from the last whole record
+        reopened.putAll(Collections.singletonList(article(3, "Fourth")));
+        reopened.close();
+        reopened = new ArticleLog(file, 100);
+        assertEquals(3, reopened.size());
+        assertEquals("Fourth", reopened.get(article(3, "").getUrl()).getTitle());
+    }
+
+    @Test
+    public void open_truncatesRecordFailingItsCrc() throws IOException {
+        File file = new File(mFolder.getRoot(), "articles.log");
+        ArticleLog log = new ArticleLog(file, 100);
+        log.putAll(Collections.singletonList(article(0, "First")));
+        long whole = log.getSize();
+        log.putAll(Arrays.asList(article(1, "Second"), article(2, "Third")));
+        log.close();
+
+        // a page of the second record never reached the disk
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(whole + ArticleLog.RECORD_HEADER_SIZE + 12);
+        raf.write(0);
+        raf.close();
+
+        ArticleLog reopened = new ArticleLog(file, 100);
+        assertEquals(1, reopened.size());
+        assertEquals(whole, file.length());
+        assertEquals("First", reopened.get(article(0, "").getUrl()).getTitle());
+    }
+
+    @Test
+    public void open_startsOverUnknownFile() throws IOException {
+        File file = new File(mFolder.getRoot(), "articles.log");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeUTF("not a log");
+        raf.close();
+
+        ArticleLog log = new ArticleLog(file, 100);
+        assertEquals(0, log.size());
+        log.putAll(Collections.singletonList(article(0, "First")));
+        assertEquals("First", log.get(article(0, "").getUrl()).getTitle());
+    }
+
+    @Test
+    public void compact_keepsNewestAndPinnedArticles() throws IOException {
+        File file = new File(mFolder.getRoot(), "articles.log");
+        ArticleLog log = new ArticleLog(file, 4);
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            news.add(article(i, "Story " + i));
+        }
+        log.putAll(news);
+        // rewriting an article leaves its first record behind
+        log.putAll(Collections.singletonList(article(5, "Story 5, updated")));
+        assertTrue(log.needsCompaction());
+        long before = log.getSize();
+
+        log.compact(new HashSet<>(Collections.singletonList(article(0, "").getUrl())));
+
+        assertFalse(log.needsCompaction());
+        assertTrue(log.getSize() < before);
+        assertEquals(4, log.size());
+        // the pinned article outlives newer ones, the oldest unpinned go
+        assertNotNull(log.get(article(0, "").getUrl()));
+        assertNull(log.get(article(1, "").getUrl()));
+        assertNull(log.get(article(2, "").getUrl()));
+        assertEquals("Story 5, updated", log.get(article(5, "").getUrl()).getTitle());
+
+        log.close();
+        assertEquals(4, new ArticleLog(file, 4).size());
+    }
+
+    private static void assertSameNews(News expected, News actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getPublishedAt(), actual.getPublishedAt());
+        assertEquals(expected.getSection(), actual.getSection());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getThumbnail(), actual.getThumbnail());
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.android.newsapp.TestUtils.respond;
+import static com.example.android.newsapp.TestUtils.searchUrl;
+import static com.example.android.newsapp.TestUtils.startSearchServer;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ArticlePrefetcher} and {@link ArticleBodyStore}, against a
+ * stub search endpoint on the loopback interface that returns a body for each id asked for.
+ */
+public class ArticlePrefetcherTest {
+
+    private static final String SITE_URL = "https://www.theguardian.com/";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+
+    /** The ids parameter of each request, in order */
+    private final List<String> mRequests = Collections.synchronizedList(new ArrayList<String>());
+
+    /** Characters in each body served */
+    private volatile int mBodyLength = 100;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = startSearchServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String ids = null;
+                for (String param : exchange.getRequestURI().getRawQuery().split("&")) {
+                    if (param.startsWith("ids=")) {
+                        ids = URLDecoder.decode(param.substring(4), "UTF-8");
+                    }
+                }
+                mRequests.add(ids);
+                respond(exchange, 200, searchResponse(ids.split(",")).getBytes("UTF-8"));
+            }
+        });
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void prefetch_requestsBodiesInBatches() throws IOException {
+        ArticleBodyStore store = newStore(Long.MAX_VALUE);
+        List<News> news = articles(25);
+
+        assertEquals(25, newPrefetcher(store).prefetch(news, 25, Long.MAX_VALUE, null));
+
+        assertEquals(3, mRequests.size());
+        assertEquals(ArticlePrefetcher.BATCH_SIZE, mRequests.get(0).split(",").length);
+        assertEquals(5, mRequests.get(2).split(",").length);
+        for (News article : news) {
+            assertEquals(bodyFor(ArticlePrefetcher.idFor(article.getUrl())),
+                    store.get(article.getUrl()));
+        }
+    }
+
+    @Test
+    public void prefetch_skipsStoredArticlesAndStopsAtLimit() throws IOException {
+        ArticleBodyStore store = newStore(Long.MAX_VALUE);
+        List<News> news = articles(8);
+        store.put(news.get(0).getUrl(), "already here");
+
+        assertEquals(3, newPrefetcher(store).prefetch(news, 4, Long.MAX_VALUE, null));
+
+        assertEquals(1, mRequests.size());
+        assertEquals("world/1,world/2,world/3", mRequests.get(0));
+        assertEquals("already here", store.get(news.get(0).getUrl()));
+        assertFalse(store.contains(news.get(4).getUrl()));
+
+        // the top articles are all stored now
+        assertEquals(0, newPrefetcher(store).prefetch(news, 4, Long.MAX_VALUE, null));
+        assertEquals(1, mRequests.size());
+    }
+
+    @Test
+    public void prefetch_stopsAtByteBudget() throws IOException {
+        ArticleBodyStore store = newStore(Long.MAX_VALUE);
+        List<News> news = articles(30);
+
+        // the first body alone uses up the budget, so no second batch is asked for
+        int stored = newPrefetcher(store).prefetch(news, 30, 1, null);
+
+        assertEquals(1, stored);
+        assertEquals(1, mRequests.size());
+        assertTrue(store.contains(news.get(0).getUrl()));
+        assertFalse(store.contains(news.get(1).getUrl()));
+    }
+
+    @Test
+    public void prefetch_cancelledDoesNothing() throws IOException {
+        ArticleBodyStore store = newStore(Long.MAX_VALUE);
+        Cancellation cancellation = new Cancellation();
+        cancellation.cancel();
+
+        assertEquals(0, newPrefetcher(store).prefetch(articles(5), 5, Long.MAX_VALUE,
+                cancellation));
+        assertTrue(mRequests.isEmpty());
+    }
+
+    @Test
+    public void store_compressesAndTrimsLeastRecentlyRead() throws IOException {
+        mBodyLength = 20000;
+        File directory = mFolder.newFolder();
+        ArticleBodyStore store = new ArticleBodyStore(directory, Long.MAX_VALUE);
+        String url = articles(1).get(0).getUrl();
+        String body = bodyFor("world/0");
+
+        long size = store.put(url, body);
+
+        // repetitive text compresses well below its length
+        assertTrue(size > 0 && size < body.length() / 4);
+        assertEquals(size, store.size());
+        assertEquals(body, new ArticleBodyStore(directory, Long.MAX_VALUE).get(url));
+        // a new store lists the bodies already on disk
+        assertTrue(new ArticleBodyStore(directory, Long.MAX_VALUE).contains(url));
+
+        // a store with room for one body keeps only the newest
+        ArticleBodyStore small = newStore(size + size / 2);
+        small.put(SITE_URL + "world/1", body);
+        small.put(SITE_URL + "world/2", body);
+        assertFalse(small.contains(SITE_URL + "world/1"));
+        assertTrue(small.contains(SITE_URL + "world/2"));
+    }
+
+    @Test
+    public void idFor_onlyGuardianArticles() {
+        assertEquals("world/2018/aug/12/story",
+                ArticlePrefetcher.idFor(SITE_URL + "world/2018/aug/12/story"));
+        assertNull(ArticlePrefetcher.idFor(SITE_URL));
+        assertNull(ArticlePrefetcher.idFor("https://example.com/world/story"));
+        assertNull(ArticlePrefetcher.idFor(null));
+    }
+
+    private ArticleBodyStore newStore(long maxBytes) throws IOException {
+        return new ArticleBodyStore(mFolder.newFolder(), maxBytes);
+    }
+
+    private ArticlePrefetcher newPrefetcher(ArticleBodyStore store) {
+        return new ArticlePrefetcher(store, searchUrl(mServer) + "?show-fields=bodyText");
+    }
+
+    private static List<News> articles(int count) {
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            news.add(new News("Story " + i, 0L, "World", null, SITE_URL + "world/" + i));
+        }
+        return news;
+    }
+
+    private String bodyFor(String id) {
+        StringBuilder body = new StringBuilder("Body of " + id + ".");
+        while (body.length() < mBodyLength) {
+            body.append(" More of ").append(id).append('.');
+        }
+        return body.toString();
+    }
+
+    private String searchResponse(String[] ids) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < ids.length; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"id\":").append(JSONObject.quote(ids[i]))
+                    .append(",\"webUrl\":").append(JSONObject.quote(SITE_URL + ids[i]))
+                    .append(",\"fields\":{\"bodyText\":")
+                    .append(JSONObject.quote(bodyFor(ids[i]))).append("}}");
+        }
+        return json.append("]}}").toString();
+    }
+
+}
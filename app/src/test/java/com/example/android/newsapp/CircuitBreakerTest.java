@@ -0,0 +1,144 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CircuitBreaker}, driven by a fake clock.
+ */
+public class CircuitBreakerTest {
+
+    private static final long START = 1534000000000L;
+
+    private final FakeClock mClock = new FakeClock();
+    private final CircuitBreaker mBreaker = new CircuitBreaker(3, 1000, 3000, mClock);
+
+    @Test
+    public void opensAfterFailuresInARow() {
+        mClock.mNow = START;
+        mBreaker.onFailure();
+        mBreaker.onFailure();
+        mBreaker.onSuccess();
+        mBreaker.onFailure();
+        mBreaker.onFailure();
+        assertTrue(mBreaker.allowRequest());
+
+        mBreaker.onFailure();
+
+        assertTrue(mBreaker.isOpen());
+        assertFalse(mBreaker.allowRequest());
+        assertEquals(START + 1000, mBreaker.getRetryAt());
+    }
+
+    @Test
+    public void letsOneTrialThroughAndClosesIfItSucceeds() {
+        mClock.mNow = START;
+        trip();
+        mClock.mNow += 1000;
+
+        assertFalse(mBreaker.isOpen());
+        assertTrue(mBreaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, mBreaker.getState());
+        assertFalse(mBreaker.allowRequest());
+
+        mBreaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrialsDoubleTheWaitUpToTheMaximum() {
+        mClock.mNow = START;
+        trip();
+
+        long[] waits = {2000, 3000, 3000};
+        for (long wait : waits) {
+            mClock.mNow = mBreaker.getRetryAt();
+            assertTrue(mBreaker.allowRequest());
+            mBreaker.onFailure();
+            assertTrue(mBreaker.isOpen());
+            assertEquals(mClock.mNow + wait, mBreaker.getRetryAt());
+        }
+
+        // and a success starts over
+        mClock.mNow = mBreaker.getRetryAt();
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.onSuccess();
+        trip();
+        assertEquals(mClock.mNow + 1000, mBreaker.getRetryAt());
+    }
+
+    @Test
+    public void failuresWhileOpenAreIgnored() {
+        mClock.mNow = START;
+        trip();
+
+        // requests in flight when it opened fail afterwards
+        mClock.mNow += 500;
+        mBreaker.onFailure();
+        mBreaker.onFailure();
+        assertEquals(START + 1000, mBreaker.getRetryAt());
+
+        // and the trial still waits only twice as long when it fails
+        mClock.mNow = mBreaker.getRetryAt();
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.onFailure();
+        assertEquals(mClock.mNow + 2000, mBreaker.getRetryAt());
+    }
+
+    @Test
+    public void lostTrialIsReplacedAfterAWhile() {
+        mClock.mNow = START;
+        trip();
+        mClock.mNow += 1000;
+        assertTrue(mBreaker.allowRequest());
+
+        // the trial was cancelled and never reported back
+        mClock.mNow += 999;
+        assertFalse(mBreaker.allowRequest());
+        mClock.mNow += 1;
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void retryAfterOpensWithoutShorteningAnOpenBreaker() {
+        mClock.mNow = START;
+        mBreaker.onRetryAfter(60000);
+        assertTrue(mBreaker.isOpen());
+        assertEquals(START + 60000, mBreaker.getRetryAt());
+
+        mBreaker.onRetryAfter(5000);
+        assertEquals(START + 60000, mBreaker.getRetryAt());
+    }
+
+    @Test
+    public void forServer_sharesOneBreakerPerServer() throws Exception {
+        CircuitBreaker breaker =
+                CircuitBreaker.forServer(new URL("https://example.com/search?q=a"));
+
+        assertSame(breaker, CircuitBreaker.forServer(new URL("https://example.com/tags")));
+        assertNotSame(breaker, CircuitBreaker.forServer(new URL("https://example.com:8443/")));
+        assertNotSame(breaker, CircuitBreaker.forServer(new URL("http://example.com/")));
+    }
+
+    private void trip() {
+        for (int i = 0; i < 3; i++) {
+            mBreaker.onFailure();
+        }
+        assertTrue(mBreaker.isOpen());
+    }
+
+    private static class FakeClock implements NewsSync.Clock {
+
+        long mNow;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+}
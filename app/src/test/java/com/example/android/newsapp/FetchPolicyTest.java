@@ -0,0 +1,139 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FetchPolicy}, fed synthetic traces of completed requests.
+ */
+public class FetchPolicyTest {
+
+    // first byte millis, body bytes, body millis of some typical requests
+    private static final long[][] WIFI = {
+            {80, 60000, 40}, {120, 45000, 30}, {60, 200000, 150}, {90, 30000, 25}};
+    private static final long[][] LTE = {
+            {400, 60000, 200}, {350, 45000, 150}, {500, 30000, 120}};
+    private static final long[][] EDGE = {
+            {1800, 60000, 4000}, {2500, 45000, 3500}, {2000, 30000, 2500}};
+
+    // small bodies, such as 304s, which only tell the latency
+    private static final long[][] WIFI_NOT_MODIFIED = {{70, 0, 0}, {90, 300, 1}};
+
+    @Test
+    public void unknownNetwork_keepsDefaults() {
+        HttpTransport transport = new HttpTransport();
+        FetchPolicy policy = new FetchPolicy(transport);
+
+        assertEquals(FetchPolicy.Quality.UNKNOWN, policy.getQuality());
+        assertEquals(FetchPolicy.SLOW_PAGE_SIZE, policy.getPageSize());
+        assertEquals(HttpTransport.DEFAULT_READ_TIMEOUT_MILLIS, policy.getReadTimeoutMillis());
+        assertTrue(policy.shouldPrefetch());
+        assertEquals(HttpTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                transport.getConnectTimeoutMillis());
+    }
+
+    @Test
+    public void fastNetwork_largePagesShortTimeouts() {
+        HttpTransport transport = new HttpTransport();
+        FetchPolicy policy = new FetchPolicy(transport);
+
+        play(policy, WIFI);
+
+        assertEquals(FetchPolicy.Quality.FAST, policy.getQuality());
+        assertEquals(FetchPolicy.FAST_PAGE_SIZE, policy.getPageSize());
+        assertTrue(policy.shouldPrefetch());
+        assertTrue(policy.getReadTimeoutMillis() < HttpTransport.DEFAULT_READ_TIMEOUT_MILLIS);
+        assertEquals(policy.getConnectTimeoutMillis(), transport.getConnectTimeoutMillis());
+        assertEquals(policy.getReadTimeoutMillis(), transport.getReadTimeoutMillis());
+    }
+
+    @Test
+    public void latencyAlone_isNeverFast() {
+        FetchPolicy policy = new FetchPolicy(null);
+
+        play(policy, WIFI_NOT_MODIFIED);
+
+        assertEquals(FetchPolicy.Quality.MODERATE, policy.getQuality());
+        assertEquals(FetchPolicy.MODERATE_PAGE_SIZE, policy.getPageSize());
+    }
+
+    @Test
+    public void slowNetwork_smallPagesLongTimeoutsNoPrefetch() {
+        HttpTransport transport = new HttpTransport();
+        FetchPolicy policy = new FetchPolicy(transport);
+
+        play(policy, EDGE);
+
+        assertEquals(FetchPolicy.Quality.SLOW, policy.getQuality());
+        assertEquals(FetchPolicy.SLOW_PAGE_SIZE, policy.getPageSize());
+        assertFalse(policy.shouldPrefetch());
+        assertTrue(transport.getReadTimeoutMillis() > HttpTransport.DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void degradingNetwork_followsWithinAFewRequests() {
+        FetchPolicy policy = new FetchPolicy(null);
+        play(policy, WIFI);
+        play(policy, WIFI);
+        assertEquals(FetchPolicy.Quality.FAST, policy.getQuality());
+
+        // one slow request is smoothed over
+        play(policy, new long[][]{EDGE[0]});
+        assertEquals(FetchPolicy.Quality.FAST, policy.getQuality());
+
+        play(policy, LTE);
+        assertEquals(FetchPolicy.Quality.MODERATE, policy.getQuality());
+        play(policy, EDGE);
+        play(policy, EDGE);
+        assertEquals(FetchPolicy.Quality.SLOW, policy.getQuality());
+    }
+
+    @Test
+    public void failures_countAsSlow() {
+        FetchPolicy policy = new FetchPolicy(null);
+        play(policy, LTE);
+
+        policy.onFailure(10000);
+        policy.onFailure(10000);
+
+        assertEquals(FetchPolicy.Quality.SLOW, policy.getQuality());
+    }
+
+    @Test
+    public void setNetwork_startsOverOnlyWhenChanged() {
+        FetchPolicy policy = new FetchPolicy(null);
+        policy.setNetwork("WIFI/");
+        play(policy, EDGE);
+
+        policy.setNetwork("WIFI/");
+        assertEquals(FetchPolicy.Quality.SLOW, policy.getQuality());
+
+        policy.setNetwork("MOBILE/LTE");
+        assertEquals(FetchPolicy.Quality.UNKNOWN, policy.getQuality());
+        play(policy, LTE);
+        assertEquals(FetchPolicy.Quality.MODERATE, policy.getQuality());
+    }
+
+    @Test
+    public void sameTrace_sameChoices() {
+        FetchPolicy first = new FetchPolicy(null);
+        FetchPolicy second = new FetchPolicy(null);
+        long[][][] trace = {WIFI, EDGE, LTE, WIFI_NOT_MODIFIED, EDGE, WIFI};
+
+        for (long[][] requests : trace) {
+            for (long[] request : requests) {
+                first.onResponse(request[0], request[1], request[2]);
+                second.onResponse(request[0], request[1], request[2]);
+                assertEquals(first.getQuality(), second.getQuality());
+                assertEquals(first.getPageSize(), second.getPageSize());
+            }
+        }
+    }
+
+    private static void play(FetchPolicy policy, long[][] requests) {
+        for (long[] request : requests) {
+            policy.onResponse(request[0], request[1], request[2]);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static com.example.android.newsapp.TestUtils.readResource;
+import static com.example.android.newsapp.TestUtils.respond;
+import static com.example.android.newsapp.TestUtils.searchUrl;
+import static com.example.android.newsapp.TestUtils.startSearchServer;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HttpTransport} against a stub HTTP server on the loopback
+ * interface.
+ */
+public class HttpTransportTest {
+
+    private HttpServer mServer;
+    private byte[] mBody;
+    private final Set<Integer> mClientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private volatile String mAcceptEncoding;
+
+    @Before
+    public void startServer() throws IOException {
+        mBody = readResource("guardian_search_50.json");
+        mServer = startSearchServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mClientPorts.add(exchange.getRemoteAddress().getPort());
+                mAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+                byte[] body = mBody;
+                if ("gzip".equals(mAcceptEncoding)) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                    gzip.write(body);
+                    gzip.close();
+                    body = compressed.toByteArray();
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                }
+                respond(exchange, 200, body);
+            }
+        });
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void get_negotiatesGzip() throws IOException {
+        HttpTransport transport = new HttpTransport();
+
+        HttpTransport.Response response = transport.get(url(), null);
+        List<News> news = QueryUtils.extractFeatureFromStream(response.getBody());
+        response.close();
+
+        assertEquals("gzip", mAcceptEncoding);
+        assertEquals(50, news.size());
+        assertTrue(transport.getBytesRead() > 0);
+        assertTrue(transport.getBytesRead() < mBody.length / 2);
+    }
+
+    @Test
+    public void get_reusesConnection() throws IOException {
+        HttpTransport transport = new HttpTransport();
+
+        for (int i = 0; i < 5; i++) {
+            HttpTransport.Response response = transport.get(url(), null);
+            QueryUtils.extractFeatureFromStream(response.getBody());
+            response.close();
+        }
+
+        assertEquals(1, mClientPorts.size());
+    }
+
+    @Test
+    public void setTimeouts_appliesToTransport() {
+        HttpTransport transport = new HttpTransport();
+        assertEquals(HttpTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                transport.getConnectTimeoutMillis());
+
+        transport.setTimeouts(3000, 4000);
+
+        assertEquals(3000, transport.getConnectTimeoutMillis());
+        assertEquals(4000, transport.getReadTimeoutMillis());
+    }
+
+    @Test
+    public void get_reportsEachResponseToListener() throws IOException {
+        HttpTransport transport = new HttpTransport();
+        final List<long[]> responses = new ArrayList<>();
+        transport.setListener(new HttpTransport.Listener() {
+            @Override
+            public void onResponse(long firstByteMillis, long bodyBytes, long bodyMillis) {
+                responses.add(new long[]{firstByteMillis, bodyBytes, bodyMillis});
+            }
+
+            @Override
+            public void onFailure(long elapsedMillis) {
+                fail("no request failed");
+            }
+        });
+
+        // one body read by the parser, one left for close() to drain
+        HttpTransport.Response response = transport.get(url(), null);
+        QueryUtils.extractFeatureFromStream(response.getBody());
+        response.close();
+        transport.get(url(), null).close();
+
+        assertEquals(2, responses.size());
+        for (long[] sample : responses) {
+            assertTrue(sample[0] >= 0 && sample[2] >= 0);
+        }
+        assertEquals(transport.getBytesRead(), responses.get(0)[1] + responses.get(1)[1]);
+        assertEquals(responses.get(0)[1], responses.get(1)[1]);
+    }
+
+    @Test
+    public void get_reportsFailureToListener() throws IOException {
+        HttpTransport transport = new HttpTransport();
+        final List<Long> failures = new ArrayList<>();
+        transport.setListener(new HttpTransport.Listener() {
+            @Override
+            public void onResponse(long firstByteMillis, long bodyBytes, long bodyMillis) {
+                fail("nothing is listening");
+            }
+
+            @Override
+            public void onFailure(long elapsedMillis) {
+                failures.add(elapsedMillis);
+            }
+        });
+        URL url = url();
+        mServer.stop(0);
+
+        try {
+            transport.get(url, null).close();
+            fail("the server is gone");
+        } catch (IOException e) {
+            assertEquals(1, failures.size());
+        }
+    }
+
+    @Test
+    public void close_dropsTheConnectionRatherThanDrainALargeBody() throws IOException {
+        mBody = new byte[HttpTransport.MAX_DRAIN_BYTES * 64];
+        HttpTransport transport = new HttpTransport();
+
+        // the body compresses to a few KB when gzip is asked for, so ask for it plain
+        HttpTransport.Response response = transport.get(url(),
+                Collections.singletonMap("Accept-Encoding", "identity"));
+        response.getBody().read(new byte[1024]);
+        response.close();
+        // a new connection, as the first was dropped with most of its body unread
+        transport.get(url(), null).close();
+
+        assertTrue(transport.getBytesRead() < mBody.length / 2);
+        assertEquals(2, mClientPorts.size());
+    }
+
+    private URL url() throws IOException {
+        return new URL(searchUrl(mServer));
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ImagePipeline} and {@link ImageDiskCache}, with "images"
+ * whose bytes are their size as text, e.g. "500x300", decoded into a description of the
+ * scaled image.
+ */
+public class ImagePipelineTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String URL = "https://media.guim.co.uk/a/500.jpg";
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final ExecutorService mWorkers = Executors.newCachedThreadPool();
+
+    private final List<String> mDelivered = Collections.synchronizedList(new ArrayList<String>());
+
+    private final ImagePipeline.Callback<String> mCallback = new ImagePipeline.Callback<String>() {
+        @Override
+        public void onImage(String image) {
+            mDelivered.add(image);
+        }
+    };
+
+    @Test
+    public void sampleSizeFor_keepsTheViewCovered() {
+        assertEquals(1, ImagePipeline.sampleSizeFor(500, 300, 300, 180));
+        assertEquals(2, ImagePipeline.sampleSizeFor(500, 300, 250, 150));
+        assertEquals(4, ImagePipeline.sampleSizeFor(2000, 1200, 300, 180));
+        // the shorter side decides
+        assertEquals(2, ImagePipeline.sampleSizeFor(2000, 400, 300, 180));
+        assertEquals(1, ImagePipeline.sampleSizeFor(0, 0, 300, 180));
+    }
+
+    @Test
+    public void load_decodesDownsampledForTheView() throws InterruptedException {
+        FakeDownloader downloader = new FakeDownloader("2000x1200");
+        ImagePipeline<String> pipeline = newPipeline(downloader, null, 1 << 20);
+
+        pipeline.load(URL, 300, 180, mCallback);
+        awaitDeliveries(1);
+
+        assertEquals(Collections.singletonList("500x300"), mDelivered);
+        assertEquals("500x300", pipeline.getCached(URL, 300, 180));
+        assertNull(pipeline.getCached(URL, 100, 60));
+    }
+
+    @Test
+    public void sameImage_isLoadedOnceForAllRequests() throws InterruptedException {
+        FakeDownloader downloader = new FakeDownloader("500x300");
+        downloader.mRelease = new CountDownLatch(1);
+        ImagePipeline<String> pipeline = newPipeline(downloader, null, 1 << 20);
+
+        pipeline.load(URL, 300, 180, mCallback);
+        pipeline.load(URL, 300, 180, mCallback);
+        assertEquals(1, pipeline.getLoadCount());
+        downloader.mRelease.countDown();
+        awaitDeliveries(2);
+
+        assertEquals(1, downloader.mDownloads.get());
+        assertEquals(2, mDelivered.size());
+
+        // then from memory, before load returns
+        pipeline.load(URL, 300, 180, mCallback);
+        assertEquals(3, mDelivered.size());
+        assertEquals(1, downloader.mDownloads.get());
+    }
+
+    @Test
+    public void cancellingOneRequest_keepsTheLoadForTheOthers() throws InterruptedException {
+        FakeDownloader downloader = new FakeDownloader("500x300");
+        downloader.mRelease = new CountDownLatch(1);
+        ImagePipeline<String> pipeline = newPipeline(downloader, null, 1 << 20);
+
+        ImagePipeline<String>.Request recycled = pipeline.load(URL, 300, 180, mCallback);
+        pipeline.load(URL, 300, 180, mCallback);
+        recycled.cancel();
+        downloader.mRelease.countDown();
+        awaitDeliveries(1);
+        mWorkers.shutdown();
+        assertTrue(mWorkers.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, mDelivered.size());
+    }
+
+    @Test
+    public void cancellingEveryRequest_abortsTheDownload() throws InterruptedException {
+        FakeDownloader downloader = new FakeDownloader("500x300");
+        downloader.mRelease = new CountDownLatch(1);
+        ImagePipeline<String> pipeline = newPipeline(downloader, null, 1 << 20);
+
+        ImagePipeline<String>.Request request = pipeline.load(URL, 300, 180, mCallback);
+        assertTrue(downloader.mStarted.await(5, TimeUnit.SECONDS));
+        request.cancel();
+
+        assertEquals(0, pipeline.getLoadCount());
+        assertTrue(downloader.mAborted.await(5, TimeUnit.SECONDS));
+        mWorkers.shutdown();
+        assertTrue(mWorkers.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(mDelivered.isEmpty());
+        assertNull(pipeline.getCached(URL, 300, 180));
+    }
+
+    @Test
+    public void diskCache_servesImagesAcrossPipelines() throws IOException, InterruptedException {
+        ImageDiskCache disk = new ImageDiskCache(mFolder.newFolder("thumbnails"), 1 << 20);
+        FakeDownloader downloader = new FakeDownloader("500x300");
+        ImagePipeline<String> first = newPipeline(downloader, disk, 1 << 20);
+        first.load(URL, 300, 180, mCallback);
+        awaitDeliveries(1);
+
+        // a new process starts with an empty memory cache
+        ImagePipeline<String> second = newPipeline(downloader, disk, 1 << 20);
+        second.load(URL, 300, 180, mCallback);
+        awaitDeliveries(2);
+
+        assertEquals(1, downloader.mDownloads.get());
+        assertEquals(2, mDelivered.size());
+        assertEquals("500x300", mDelivered.get(1));
+    }
+
+    @Test
+    public void memoryCache_keepsTheMostRecentlyUsedWithinItsBudget()
+            throws InterruptedException {
+        FakeDownloader downloader = new FakeDownloader("100x100");
+        // each image takes 100 bytes, see FakeDecoder
+        ImagePipeline<String> pipeline = newPipeline(downloader, null, 250);
+
+        String[] urls = {"a", "b", "c"};
+        for (int i = 0; i < urls.length; i++) {
+            pipeline.load(urls[i], 100, 100, mCallback);
+            awaitDeliveries(i + 1);
+        }
+
+        assertEquals(200, pipeline.getMemoryBytes());
+        assertNull(pipeline.getCached("a", 100, 100));
+        assertNotNull(pipeline.getCached("b", 100, 100));
+        assertNotNull(pipeline.getCached("c", 100, 100));
+    }
+
+    @Test
+    public void diskCache_evictsTheLeastRecentlyUsed() throws IOException {
+        ImageDiskCache disk = new ImageDiskCache(mFolder.newFolder("thumbnails"), 250);
+        byte[] image = new byte[100];
+
+        disk.put("a", image);
+        disk.put("b", image);
+        disk.put("c", image);
+
+        assertTrue(disk.size() <= 250);
+        assertNotNull(disk.get("c"));
+        assertEquals(2, (disk.get("a") != null ? 1 : 0) + (disk.get("b") != null ? 1 : 0)
+                + (disk.get("c") != null ? 1 : 0));
+    }
+
+    private ImagePipeline<String> newPipeline(FakeDownloader downloader, ImageDiskCache disk,
+                                              long memoryBytes) {
+        return new ImagePipeline<>(downloader, new FakeDecoder(), disk, memoryBytes, mWorkers,
+                DIRECT);
+    }
+
+    private void awaitDeliveries(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mDelivered.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, mDelivered.size());
+    }
+
+    private static class FakeDownloader implements ImagePipeline.Downloader {
+
+        final byte[] mImage;
+        final AtomicInteger mDownloads = new AtomicInteger();
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mAborted = new CountDownLatch(1);
+        CountDownLatch mRelease;
+
+        FakeDownloader(String image) {
+            mImage = image.getBytes(UTF_8);
+        }
+
+        @Override
+        public byte[] download(String url, Cancellation cancellation) throws IOException {
+            mDownloads.incrementAndGet();
+            mStarted.countDown();
+            if (mRelease != null) {
+                final CountDownLatch release = mRelease;
+                // stands in for the disconnect that ends a real download
+                cancellation.addOnCancelListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        mAborted.countDown();
+                        release.countDown();
+                    }
+                });
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (cancellation.isCancelled()) {
+                    throw new InterruptedIOException("Request cancelled");
+                }
+            }
+            return mImage;
+        }
+    }
+
+    private static class FakeDecoder implements ImagePipeline.Decoder<String> {
+
+        @Override
+        public int[] readSize(byte[] data) {
+            String[] size = new String(data, UTF_8).split("x");
+            return new int[]{Integer.parseInt(size[0]), Integer.parseInt(size[1])};
+        }
+
+        @Override
+        public String decode(byte[] data, int sampleSize) {
+            int[] size = readSize(data);
+            return size[0] / sampleSize + "x" + size[1] / sampleSize;
+        }
+
+        @Override
+        public long sizeOf(String image) {
+            return 100;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.android.newsapp.TestUtils.readResource;
+import static com.example.android.newsapp.TestUtils.respond;
+import static com.example.android.newsapp.TestUtils.searchUrl;
+import static com.example.android.newsapp.TestUtils.startSearchServer;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsCache} and the conditional requests made through it,
+ * served by a stub HTTP server on the loopback interface.
+ */
+public class NewsCacheTest {
+
+    private static final String ETAG = "\"abc123\"";
+
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private final AtomicInteger mFullResponses = new AtomicInteger();
+    private final AtomicInteger mNotModifiedResponses = new AtomicInteger();
+    private volatile int mStatusOverride;
+
+    @Before
+    public void startServer() throws IOException {
+        final byte[] body = readResource("guardian_search_10.json");
+        mServer = startSearchServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (mStatusOverride != 0) {
+                    exchange.sendResponseHeaders(mStatusOverride, -1);
+                } else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    mNotModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    mFullResponses.incrementAndGet();
+                    exchange.getResponseHeaders().add("ETag", ETAG);
+                    respond(exchange, 200, body);
+                }
+                exchange.close();
+            }
+        });
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void keyFor_ignoresParameterOrderAndApiKey() {
+        assertEquals(
+                NewsCache.keyFor("https://host/search?order-by=newest&editions=us&api-key=1"),
+                NewsCache.keyFor("https://host/search?editions=us&api-key=2&order-by=newest"));
+        assertNotEquals(
+                NewsCache.keyFor("https://host/search?editions=us"),
+                NewsCache.keyFor("https://host/search?editions=uk"));
+    }
+
+    @Test
+    public void putThenGet_roundTripsNews() throws IOException {
+        NewsCache cache = new NewsCache(mFolder.newFolder(), 1024 * 1024, ONE_HOUR);
+        List<News> news = new ArrayList<>();
+        news.add(new News("Title", "2018-08-10", "World news", "Byline", "https://a"));
+        news.add(new News("No author", "Sport", "https://b"));
+
+        cache.put("key", news, ETAG, "Fri, 10 Aug 2018 09:00:00 GMT");
+        NewsCache.Entry entry = cache.get("key");
+
+        assertNotNull(entry);
+        assertEquals(ETAG, entry.getETag());
+        assertEquals("Fri, 10 Aug 2018 09:00:00 GMT", entry.getLastModified());
+        assertEquals(2, entry.getNews().size());
+        assertEquals("Title", entry.getNews().get(0).getTitle());
+        assertEquals("Byline", entry.getNews().get(0).getAuthor());
+        assertFalse(entry.getNews().get(1).hasDate());
+        assertFalse(entry.getNews().get(1).hasAuthor());
+        assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void fetch_revalidatesWithETag() throws IOException {
+        NewsCache cache = new NewsCache(mFolder.newFolder(), 1024 * 1024, ONE_HOUR);
+        String url = requestUrl();
+
+        List<News> first = QueryUtils.fetchNewsData(url, cache);
+        List<News> second = QueryUtils.fetchNewsData(url, cache);
+
+        assertEquals(1, mFullResponses.get());
+        assertEquals(1, mNotModifiedResponses.get());
+        assertEquals(10, first.size());
+        assertEquals(first.size(), second.size());
+        assertEquals(first.get(0).getUrl(), second.get(0).getUrl());
+    }
+
+    @Test
+    public void fetch_servesCacheWhenServerFails() throws IOException {
+        NewsCache cache = new NewsCache(mFolder.newFolder(), 1024 * 1024, ONE_HOUR);
+        String url = requestUrl();
+        QueryUtils.fetchNewsData(url, cache);
+
+        mStatusOverride = 503;
+        List<News> news = QueryUtils.fetchNewsData(url, cache);
+
+        assertNotNull(news);
+        assertEquals(10, news.size());
+    }
+
+    @Test
+    public void get_evictsEntriesPastMaxAge() throws IOException {
+        File directory = mFolder.newFolder();
+        NewsCache cache = new NewsCache(directory, 1024 * 1024, ONE_HOUR);
+        cache.put("key", new ArrayList<News>(), null, null);
+
+        for (File file : directory.listFiles()) {
+            file.setLastModified(System.currentTimeMillis() - 2 * ONE_HOUR);
+        }
+
+        // a new instance has nothing in memory, as after a process restart
+        cache = new NewsCache(directory, 1024 * 1024, ONE_HOUR);
+        assertNull(cache.get("key"));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void put_evictsOldestWhenOverSize() throws IOException {
+        File directory = mFolder.newFolder();
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            news.add(new News("Title " + i, "2018-08-10", "World news", "Byline", "https://a/" + i));
+        }
+        // room for about two entries
+        NewsCache cache = new NewsCache(directory, 2500, ONE_HOUR);
+
+        cache.put("first", news, null, null);
+        directory.listFiles()[0].setLastModified(System.currentTimeMillis() - 60 * 1000);
+        cache.put("second", news, null, null);
+        cache.put("third", news, null, null);
+
+        assertNull(cache.get("first"));
+        assertNotNull(cache.get("third"));
+    }
+
+    @Test
+    public void get_servesFromMemoryAfterFileIsGone() throws IOException {
+        File directory = mFolder.newFolder();
+        NewsCache cache = new NewsCache(directory, 1024 * 1024, ONE_HOUR);
+        List<News> news = new ArrayList<>();
+        news.add(new News("Title", "Sport", "https://a"));
+        cache.put("key", news, null, null);
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        assertSame(news, cache.get("key").getNews());
+    }
+
+    private String requestUrl() {
+        return searchUrl(mServer)
+                + "?editions=us&order-by=newest&page-size=10&show-fields=byline";
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.android.newsapp.TestUtils.article;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsClusterer}.
+ */
+public class NewsClustererTest {
+
+    @Test
+    public void cluster_groupsReworkedHeadlines() {
+        List<News> news = Arrays.asList(
+                article(0, "Trump and Putin meet in Helsinki for summit"),
+                article(1, "Heatwave grips Europe as temperatures soar"),
+                article(2, "Putin and Trump meet for Helsinki summit"),
+                article(3, "Wildfires rage across California as thousands evacuate"),
+                article(4, "Helsinki summit: Trump and Putin meet"),
+                article(5, "California wildfires rage as thousands evacuate homes"));
+
+        List<News> clusters = NewsClusterer.cluster(news, null);
+
+        assertEquals(3, clusters.size());
+        // the first article stands for its story, in the original order
+        assertEquals(news.get(0).getUrl(), clusters.get(0).getUrl());
+        assertEquals(2, clusters.get(0).getSimilarCount());
+        assertEquals(news.get(1).getUrl(), clusters.get(1).getUrl());
+        assertEquals(0, clusters.get(1).getSimilarCount());
+        assertSame(news.get(1), clusters.get(1));
+        assertEquals(news.get(3).getUrl(), clusters.get(2).getUrl());
+        assertEquals(1, clusters.get(2).getSimilarCount());
+        // the articles themselves are left as they were
+        assertEquals(0, news.get(0).getSimilarCount());
+    }
+
+    @Test
+    public void cluster_keepsDifferentStoriesApart() {
+        List<News> news = Arrays.asList(
+                article(0, "Senate passes budget deal after late night vote"),
+                article(1, "Senate rejects health bill in late night vote"),
+                article(2, "Minute-by-minute report"),
+                article(3, "Minute-by-minute report"),
+                article(4, "Live"));
+
+        List<News> clusters = NewsClusterer.cluster(news, null);
+
+        // titles of one or two words say too little to be grouped
+        assertEquals(5, clusters.size());
+    }
+
+    @Test
+    public void cluster_leavesArticlesPastTheCapacityAlone() {
+        NewsClusterer clusterer = new NewsClusterer(2);
+        clusterer.addAll(Arrays.asList(
+                article(0, "Trump and Putin meet in Helsinki for summit"),
+                article(1, "Putin and Trump meet for Helsinki summit")));
+        clusterer.addAll(Arrays.asList(
+                article(2, "Helsinki summit: Trump and Putin meet")));
+
+        assertEquals(3, clusterer.size());
+        assertTrue(clusterer.isSameStory(0, 1));
+        assertFalse(clusterer.isSameStory(0, 2));
+    }
+
+    @Test
+    public void cluster_stopsWhenCancelled() {
+        Cancellation cancellation = new Cancellation();
+        cancellation.cancel();
+
+        assertNull(NewsClusterer.cluster(Arrays.asList(article(0, "One two three")),
+                cancellation));
+        assertNull(NewsClusterer.cluster(null, null));
+    }
+
+    @Test
+    public void cluster_findsMostVariantsAcrossChunks() {
+        // stories told three ways, one word changed and the rest shuffled
+        Random random = new Random(42);
+        List<News> news = new ArrayList<>();
+        int stories = 1000;
+        List<List<String>> words = new ArrayList<>();
+        for (int story = 0; story < stories; story++) {
+            List<String> title = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                title.add("w" + random.nextInt(20000));
+            }
+            words.add(title);
+        }
+        for (int variant = 0; variant < 3; variant++) {
+            for (int story = 0; story < stories; story++) {
+                List<String> title = new ArrayList<>(words.get(story));
+                if (variant > 0) {
+                    title.set(random.nextInt(title.size()), "v" + random.nextInt(20000));
+                    Collections.shuffle(title, random);
+                }
+                StringBuilder text = new StringBuilder();
+                for (String word : title) {
+                    text.append(word).append(' ');
+                }
+                news.add(article(variant * stories + story, text.toString()));
+            }
+        }
+
+        NewsClusterer clusterer = new NewsClusterer(news.size());
+        for (int start = 0; start < news.size(); start += 500) {
+            clusterer.addAll(news.subList(start, start + 500));
+        }
+
+        int found = 0;
+        int merged = 0;
+        for (int story = 0; story < stories; story++) {
+            for (int variant = 1; variant < 3; variant++) {
+                if (clusterer.isSameStory(story, variant * stories + story)) {
+                    found++;
+                }
+            }
+            if (clusterer.isSameStory(story, (story + 1) % stories)) {
+                merged++;
+            }
+        }
+        // 7 of 9 words shared, Jaccard 0.78
+        assertTrue("found " + found, found > 0.95 * 2 * stories);
+        assertTrue("merged " + merged, merged < 0.01 * stories);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsDates}, checked against SimpleDateFormat.
+ */
+public class NewsDatesTest {
+
+    @Test
+    public void parse_guardianTimestamps() {
+        assertEquals(1533893400000L, NewsDates.parse("2018-08-10T09:30:00Z"));
+        assertEquals(1533893400000L, NewsDates.parse("2018-08-10T09:30:00.000Z"));
+        assertEquals(1533893400000L, NewsDates.parse("2018-08-10T10:30:00+01:00"));
+        assertEquals(1533859200000L, NewsDates.parse("2018-08-10"));
+        assertEquals(0L, NewsDates.parse("1970-01-01T00:00:00Z"));
+    }
+
+    @Test
+    public void parse_rejectsMalformedDates() {
+        assertEquals(NewsDates.NO_DATE, NewsDates.parse(null));
+        assertEquals(NewsDates.NO_DATE, NewsDates.parse(""));
+        assertEquals(NewsDates.NO_DATE, NewsDates.parse("yesterday"));
+        assertEquals(NewsDates.NO_DATE, NewsDates.parse("2018-13-10"));
+        assertEquals(NewsDates.NO_DATE, NewsDates.parse("2018-08-10T09:30"));
+        assertEquals(NewsDates.NO_DATE, NewsDates.parse("2018-08-10T09:30:00"));
+        assertEquals(NewsDates.NO_DATE, NewsDates.parse("2018-08-10T09:30:00.Z"));
+    }
+
+    @Test
+    public void formatDate_sharesOneStringPerDay() {
+        String morning = NewsDates.formatDate(NewsDates.parse("2018-08-10T01:00:00Z"));
+        String evening = NewsDates.formatDate(NewsDates.parse("2018-08-10T23:00:00Z"));
+
+        assertEquals("2018-08-10", morning);
+        assertSame(morning, evening);
+        assertEquals("1969-12-31", NewsDates.formatDate(-1));
+    }
+
+    @Test
+    public void parseAndFormat_matchSimpleDateFormat() throws ParseException {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        day.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            // any second between 1900 and 2100
+            long millis = (-2208988800L + (long) (random.nextDouble() * 6311433600L)) * 1000;
+            String text = iso.format(millis);
+            assertEquals(text, iso.parse(text).getTime(), NewsDates.parse(text));
+            assertEquals(text, day.format(millis), NewsDates.formatDate(millis));
+            assertEquals(text, NewsDates.formatTimestamp(millis + random.nextInt(1000)));
+        }
+    }
+
+    @Test
+    public void formatRelative_showsAgeThenLocalDate() {
+        long published = NewsDates.parse("2018-08-10T09:30:00Z");
+        long minute = 60 * 1000L;
+
+        assertEquals("just now", NewsDates.formatRelative(published, published + 59 * 1000));
+        assertEquals("just now", NewsDates.formatRelative(published, published - minute));
+        assertEquals("1m ago", NewsDates.formatRelative(published, published + minute));
+        assertEquals("59m ago", NewsDates.formatRelative(published, published + 60 * minute - 1));
+        assertEquals("2h ago", NewsDates.formatRelative(published, published + 150 * minute));
+        assertEquals("6d ago",
+                NewsDates.formatRelative(published, published + 7 * 24 * 60 * minute - 1));
+
+        // from a week on, the date as the device would show it
+        DateFormat local = DateFormat.getDateInstance(DateFormat.MEDIUM);
+        assertEquals(local.format(published),
+                NewsDates.formatRelative(published, published + 7 * 24 * 60 * minute));
+
+        // the same age is the same String
+        assertSame(NewsDates.formatRelative(published, published + 150 * minute),
+                NewsDates.formatRelative(published + minute, published + 151 * minute));
+    }
+
+    @Test
+    public void formatRelative_usesTemplates() {
+        try {
+            NewsDates.setRelativeStrings("now", "vor %d Min.", "vor %d Std.", "vor %d T.");
+            long published = NewsDates.parse("2018-08-10T09:30:00Z");
+            assertEquals("now", NewsDates.formatRelative(published, published));
+            assertEquals("vor 3 Std.",
+                    NewsDates.formatRelative(published, published + 3 * 3600 * 1000L));
+        } finally {
+            NewsDates.setRelativeStrings("just now", "%dm ago", "%dh ago", "%dd ago");
+        }
+    }
+
+    @Test
+    public void formatLocalDate_followsDefaultLocale() {
+        Locale locale = Locale.getDefault();
+        TimeZone zone = TimeZone.getDefault();
+        try {
+            long published = NewsDates.parse("2018-08-10T23:30:00Z");
+            Locale.setDefault(Locale.US);
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            assertEquals("Aug 10, 2018", NewsDates.formatLocalDate(published));
+
+            // an hour later in Berlin, and in German
+            Locale.setDefault(Locale.GERMANY);
+            TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+            assertEquals(DateFormat.getDateInstance(DateFormat.MEDIUM, Locale.GERMANY)
+                    .format(published), NewsDates.formatLocalDate(published));
+            assertTrue(NewsDates.formatLocalDate(published).startsWith("11."));
+        } finally {
+            Locale.setDefault(locale);
+            TimeZone.setDefault(zone);
+        }
+    }
+
+    @Test
+    public void displayDate_followsTheClock() {
+        long published = NewsDates.parse("2018-08-10T09:30:00Z");
+        long now = published + 90 * 60 * 1000L;
+        NewsDisplay display =
+                new News("Title", published, "World news", "Author", "url").getDisplay();
+
+        String shown = display.getDate(now);
+        assertEquals("1h ago", shown);
+        assertSame(shown, display.getDate(now + 1000));
+        assertEquals("2h ago", display.getDate(now + 30 * 60 * 1000L));
+        assertNull(new News("Title", "World news", "url").getDisplay().getDate(now));
+    }
+}
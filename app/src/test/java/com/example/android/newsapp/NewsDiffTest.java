@@ -0,0 +1,126 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsDiff}.
+ */
+public class NewsDiffTest {
+
+    @Test
+    public void identicalLists_produceNoChanges() {
+        List<News> old = articles("a", "b", "c");
+        List<News> fresh = articles("a", "b", "c");
+
+        NewsDiff diff = NewsDiff.calculate(old, fresh);
+
+        assertTrue(diff.isEmpty());
+        assertSame(old.get(1), apply(old, diff).get(1));
+    }
+
+    @Test
+    public void singleMove_movesOneArticle() {
+        List<News> old = articles("a", "b", "c", "d", "e");
+        List<News> fresh = articles("b", "c", "d", "e", "a");
+
+        NewsDiff diff = NewsDiff.calculate(old, fresh);
+
+        assertEquals(1, diff.getMovedCount());
+        assertEquals(0, diff.getRemovedCount());
+        assertEquals(0, diff.getInsertedCount());
+        assertUrls(fresh, apply(old, diff));
+    }
+
+    @Test
+    public void insertsRemovalsAndChanges() {
+        List<News> old = articles("a", "b", "c", "d");
+        List<News> fresh = articles("new", "a", "c", "d");
+        fresh.set(2, new News("Edited c", "2018-08-10", "Sport", "Byline", "c"));
+
+        NewsDiff diff = NewsDiff.calculate(old, fresh);
+
+        assertEquals(1, diff.getInsertedCount());
+        assertEquals(1, diff.getRemovedCount());
+        assertEquals(1, diff.getChangedCount());
+        assertEquals(0, diff.getMovedCount());
+        List<News> result = apply(old, diff);
+        assertUrls(fresh, result);
+        assertEquals("Edited c", result.get(2).getTitle());
+    }
+
+    @Test
+    public void duplicateUrls_keepFirst() {
+        List<News> old = articles("a", "a", "b");
+        List<News> fresh = articles("b", "b", "a");
+
+        NewsDiff diff = NewsDiff.calculate(old, fresh);
+
+        assertUrls(articles("b", "a"), apply(old, diff));
+        assertEquals(2, diff.getNewList().size());
+    }
+
+    @Test
+    public void randomLists_applyToNewList() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<News> old = randomArticles(random);
+            List<News> fresh = randomArticles(random);
+
+            assertUrls(fresh, apply(old, NewsDiff.calculate(old, fresh)));
+        }
+    }
+
+    private static List<News> apply(List<News> old, NewsDiff diff) {
+        final List<News> list = new ArrayList<>(old);
+        diff.dispatchTo(new NewsDiff.Callback() {
+            @Override
+            public void onRemove(int position) {
+                list.remove(position);
+            }
+
+            @Override
+            public void onInsert(int position, News news) {
+                list.add(position, news);
+            }
+
+            @Override
+            public void onChange(int position, News news) {
+                list.set(position, news);
+            }
+        });
+        return list;
+    }
+
+    private static void assertUrls(List<News> expected, List<News> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getUrl(), actual.get(i).getUrl());
+        }
+    }
+
+    private static List<News> articles(String... urls) {
+        List<News> news = new ArrayList<>();
+        for (String url : urls) {
+            news.add(new News("Title " + url, "2018-08-10", "Sport", "Byline", url));
+        }
+        return news;
+    }
+
+    private static List<News> randomArticles(Random random) {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            if (random.nextInt(3) > 0) {
+                urls.add("u" + i);
+            }
+        }
+        Collections.shuffle(urls, random);
+        return articles(urls.toArray(new String[urls.size()]));
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local test comparing the heap a large list of {@link News} retains against the
+ * representation it replaced, five separate Strings per article with the date cut out of
+ * the timestamp, and a display model copying them. Sizes are worked out from the fields of
+ * each object reached, as a 64-bit VM with compressed references lays them out, so the
+ * result doesn't depend on the collector.
+ */
+public class NewsFootprintTest {
+
+    private static final int ARTICLES = 50000;
+
+    /** Bytes of an object header */
+    private static final int HEADER_BYTES = 12;
+
+    /** Bytes of an array header, with its length */
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    /** Bytes of a reference */
+    private static final int REFERENCE_BYTES = 4;
+
+    /** Bytes of a String and its hash, without the characters */
+    private static final int STRING_BYTES = align(HEADER_BYTES + REFERENCE_BYTES + 4);
+
+    private static final String[] WORDS = ("senate climate vote market storm league election "
+            + "court budget city report trade plan energy school health deal team police film")
+            .split(" ");
+
+    private static final String[] SECTIONS = {"US news", "World news", "Politics", "Sport",
+            "Business", "Technology", "Culture", "Environment", "Opinion", "Football"};
+
+    private static final String[] AUTHORS = {"Lauren Gambino", "Julian Borger",
+            "Damian Carrington", "Alex Hern", "Sean Ingle", "Richard Luscombe",
+            "Martin Pengelly", "Jessica Glenza", "Julia Carrie Wong and Sam Levin"};
+
+    @Test
+    public void compactNews_retainsLessHeap() throws IllegalAccessException {
+        // each article gets fresh strings, as parsing a response does
+        String[][] feed = generateFeed();
+        List<Object> legacy = new ArrayList<>(ARTICLES);
+        List<Object> compact = new ArrayList<>(ARTICLES);
+        for (String[] fields : feed) {
+            legacy.add(new LegacyNews(copy(fields[0]), copy(fields[1]).split("T")[0],
+                    copy(fields[2]), copy(fields[3]), copy(fields[4])));
+            compact.add(new News(copy(fields[0]), NewsDates.parse(copy(fields[1])),
+                    copy(fields[2]), copy(fields[3]), copy(fields[4])));
+        }
+
+        long legacyBytes = sizeOf(legacy);
+        long compactBytes = sizeOf(compact);
+        // sections and bylines are shared, the date is a long and the display model is only
+        // built for the rows shown
+        assertTrue("legacy " + legacyBytes / ARTICLES + " compact "
+                        + compactBytes / ARTICLES + " bytes per article",
+                compactBytes < legacyBytes * 0.85);
+    }
+
+    @Test
+    public void sizeOf_countsSharedObjectsOnce() throws IllegalAccessException {
+        News article = new News("Title", "2018-08-10", "World news", "Author", "url");
+        long one = sizeOf(Arrays.asList(article));
+        assertEquals(one, sizeOf(Arrays.asList(article, article)));
+
+        // literals are interned, so another article with them only adds itself
+        long empty = sizeOf(Arrays.asList(new News(null, NewsDates.NO_DATE, null, null, null)));
+        assertEquals(one + empty, sizeOf(Arrays.asList(article,
+                new News("Title", "2018-08-10", "World news", "Author", "url"))));
+    }
+
+    /**
+     * Return the bytes of the articles in the list and everything they reach, each object
+     * counted once.
+     */
+    private static long sizeOf(List<?> objects) throws IllegalAccessException {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        long bytes = 0;
+        for (Object object : objects) {
+            bytes += sizeOf(object, seen);
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(Object object, Set<Object> seen)
+            throws IllegalAccessException {
+        if (object == null || !seen.add(object)) {
+            return 0;
+        }
+        if (object instanceof String) {
+            // the UTF-16 characters of a String in an array of their own
+            return STRING_BYTES
+                    + align(ARRAY_HEADER_BYTES + 2 * ((String) object).length());
+        }
+        if (!object.getClass().getName().startsWith("com.example.android.newsapp.")) {
+            throw new AssertionError("No size for " + object.getClass());
+        }
+        long bytes = HEADER_BYTES;
+        long reached = 0;
+        for (Class<?> type = object.getClass(); type != Object.class;
+             type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Class<?> fieldType = field.getType();
+                if (fieldType == long.class || fieldType == double.class) {
+                    bytes += 8;
+                } else if (fieldType == int.class || fieldType == float.class) {
+                    bytes += 4;
+                } else if (fieldType == short.class || fieldType == char.class) {
+                    bytes += 2;
+                } else if (fieldType == byte.class || fieldType == boolean.class) {
+                    bytes += 1;
+                } else {
+                    bytes += REFERENCE_BYTES;
+                    field.setAccessible(true);
+                    reached += sizeOf(field.get(object), seen);
+                }
+            }
+        }
+        return align(bytes) + reached;
+    }
+
+    private static int align(long bytes) {
+        return (int) ((bytes + 7) / 8 * 8);
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static String[][] generateFeed() {
+        Random random = new Random(3);
+        String[][] feed = new String[ARTICLES][];
+        for (int i = 0; i < ARTICLES; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 4 + random.nextInt(7);
+            for (int w = 0; w < words; w++) {
+                title.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            String date = String.format("2018-08-%02dT%02d:%02d:00Z",
+                    1 + random.nextInt(12), random.nextInt(24), random.nextInt(60));
+            feed[i] = new String[]{title.toString(), date,
+                    SECTIONS[random.nextInt(SECTIONS.length)],
+                    AUTHORS[random.nextInt(AUTHORS.length)],
+                    "https://www.theguardian.com/world/2018/aug/10/article-" + i};
+        }
+        return feed;
+    }
+
+    /**
+     * News as it was before the compact representation.
+     */
+    private static class LegacyNews {
+
+        private final String mTitle;
+        private final String mDate;
+        private final String mSection;
+        private final String mAuthor;
+        private final String mUrl;
+        private final LegacyDisplay mDisplay;
+
+        LegacyNews(String title, String date, String section, String author, String url) {
+            mTitle = title;
+            mDate = date;
+            mSection = section;
+            mAuthor = author;
+            mUrl = url;
+            mDisplay = new LegacyDisplay(this);
+        }
+    }
+
+    private static class LegacyDisplay {
+
+        private final String mTitle;
+        private final String mSection;
+        private final String mDate;
+        private final int mDateVisibility;
+        private final String mAuthor;
+        private final int mAuthorVisibility;
+
+        LegacyDisplay(LegacyNews news) {
+            mTitle = news.mTitle;
+            mSection = news.mSection;
+            mDate = news.mDate;
+            mDateVisibility = 0;
+            mAuthor = news.mAuthor;
+            mAuthorVisibility = 0;
+        }
+    }
+}
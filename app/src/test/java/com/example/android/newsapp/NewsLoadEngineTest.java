@@ -0,0 +1,170 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.android.newsapp.TestUtils.searchUrl;
+import static com.example.android.newsapp.TestUtils.startSearchServer;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsLoadEngine}, delivering on the worker thread.
+ */
+public class NewsLoadEngineTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private final BlockingQueue<Object> mDelivered = new LinkedBlockingQueue<>();
+
+    private final NewsLoadEngine.Callback<Object> mCallback =
+            new NewsLoadEngine.Callback<Object>() {
+                @Override
+                public void onResult(Object result) {
+                    mDelivered.add(result != null ? result : "null");
+                }
+            };
+
+    @Test
+    public void loads_runAtTheSameTime() throws InterruptedException {
+        NewsLoadEngine engine = new NewsLoadEngine(2);
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        NewsLoadEngine.Job<Object> job = new NewsLoadEngine.Job<Object>() {
+            @Override
+            public Object run(Cancellation cancellation) {
+                bothRunning.countDown();
+                try {
+                    // only returns true if the other load runs alongside this one
+                    return bothRunning.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+        };
+
+        engine.submit(job, DIRECT, mCallback);
+        engine.submit(job, DIRECT, mCallback);
+
+        assertEquals(true, mDelivered.poll(5, TimeUnit.SECONDS));
+        assertEquals(true, mDelivered.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledQueuedLoad_neverStarts() throws InterruptedException {
+        NewsLoadEngine engine = new NewsLoadEngine(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean started = new AtomicBoolean();
+        engine.submit(new NewsLoadEngine.Job<Object>() {
+            @Override
+            public Object run(Cancellation cancellation) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "first";
+            }
+        }, DIRECT, mCallback);
+        NewsLoadEngine.Task queued = engine.submit(new NewsLoadEngine.Job<Object>() {
+            @Override
+            public Object run(Cancellation cancellation) {
+                started.set(true);
+                return "second";
+            }
+        }, DIRECT, mCallback);
+
+        queued.cancel();
+        release.countDown();
+
+        assertEquals("first", mDelivered.poll(5, TimeUnit.SECONDS));
+        assertNull(mDelivered.poll(200, TimeUnit.MILLISECONDS));
+        assertFalse(started.get());
+        assertTrue(queued.isCancelled());
+    }
+
+    @Test
+    public void cancel_abortsTheSocketReadAndDropsTheResult()
+            throws IOException, InterruptedException {
+        final CountDownLatch requested = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = startSearchServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requested.countDown();
+                try {
+                    // a server that never answers in time
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+            }
+        });
+        final String url = searchUrl(server);
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        try {
+            NewsLoadEngine engine = new NewsLoadEngine(1);
+            NewsLoadEngine.Task task = engine.submit(new NewsLoadEngine.Job<Object>() {
+                @Override
+                public Object run(Cancellation cancellation) {
+                    List<News> news = QueryUtils.fetchNewsData(url, null, cancellation);
+                    finished.countDown();
+                    return news;
+                }
+            }, DIRECT, mCallback);
+            assertTrue(requested.await(5, TimeUnit.SECONDS));
+
+            task.cancel();
+
+            // the blocked read gives up long before the server would have answered
+            assertTrue(finished.await(2, TimeUnit.SECONDS));
+            assertTrue(task.isDone());
+            assertNull(mDelivered.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void failingJob_deliversNull() throws InterruptedException {
+        NewsLoadEngine engine = new NewsLoadEngine(1);
+
+        engine.submit(new NewsLoadEngine.Job<Object>() {
+            @Override
+            public Object run(Cancellation cancellation) {
+                throw new IllegalStateException("broken");
+            }
+        }, DIRECT, mCallback);
+
+        assertEquals("null", mDelivered.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void setPoolSize_growsAndShrinks() {
+        NewsLoadEngine engine = new NewsLoadEngine(2);
+
+        engine.setPoolSize(4);
+        assertEquals(4, engine.getPoolSize());
+        engine.setPoolSize(1);
+        assertEquals(1, engine.getPoolSize());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.newsapp;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsMetrics}.
+ */
+public class NewsMetricsTest {
+
+    @Test
+    public void disabled_recordsNothing() {
+        NewsMetrics metrics = new NewsMetrics();
+
+        long startedAt = metrics.startTimer();
+        metrics.stopTimer(NewsMetrics.HTTP_CONNECT, startedAt);
+        metrics.record(NewsMetrics.PARSE_ITEMS, 10);
+        metrics.increment(NewsMetrics.HTTP_REQUESTS);
+
+        assertEquals(0, startedAt);
+        assertNull(metrics.getHistogram(NewsMetrics.HTTP_CONNECT));
+        assertNull(metrics.getHistogram(NewsMetrics.PARSE_ITEMS));
+        assertEquals(0, metrics.getCount(NewsMetrics.HTTP_REQUESTS));
+    }
+
+    @Test
+    public void timerStartedWhileDisabled_isIgnored() {
+        NewsMetrics metrics = new NewsMetrics();
+        long startedAt = metrics.startTimer();
+        metrics.setEnabled(true);
+
+        metrics.stopTimer(NewsMetrics.HTTP_CONNECT, startedAt);
+
+        assertNull(metrics.getHistogram(NewsMetrics.HTTP_CONNECT));
+    }
+
+    @Test
+    public void histogram_percentilesWithinOneBucket() {
+        NewsMetrics.Histogram histogram = new NewsMetrics.Histogram();
+        Random random = new Random(5);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 14);
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+
+        for (double fraction : new double[]{0.5, 0.9, 0.99}) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long reported = histogram.getPercentile(fraction);
+            assertTrue(fraction + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact * 1.125 + 1);
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    public void histogram_bucketsCoverEveryValue() {
+        for (long value = 0; value < 100000; value++) {
+            int bucket = NewsMetrics.Histogram.bucketOf(value);
+            assertTrue(value + " above its bucket",
+                    value <= NewsMetrics.Histogram.highestIn(bucket));
+            assertTrue(value + " below its bucket",
+                    bucket == 0 || value > NewsMetrics.Histogram.highestIn(bucket - 1));
+        }
+    }
+
+    @Test
+    public void toJson_exportsCountersAndHistograms() throws JSONException {
+        NewsMetrics metrics = new NewsMetrics();
+        metrics.setEnabled(true);
+        metrics.increment(NewsMetrics.HTTP_REQUESTS);
+        metrics.increment(NewsMetrics.HTTP_REQUESTS);
+        for (int items = 1; items <= 100; items++) {
+            metrics.record(NewsMetrics.PARSE_ITEMS, items);
+        }
+        metrics.recordMillis(NewsMetrics.LOAD_FINISHED, 250);
+
+        JSONObject snapshot = new JSONObject(metrics.toJson());
+
+        assertEquals(2, snapshot.getJSONObject("counters").getLong(NewsMetrics.HTTP_REQUESTS));
+        JSONObject items = snapshot.getJSONObject("histograms")
+                .getJSONObject(NewsMetrics.PARSE_ITEMS);
+        assertEquals(100, items.getLong("count"));
+        assertEquals(50, items.getLong("mean"));
+        assertEquals(100, items.getLong("max"));
+        assertTrue(items.getLong("p50") >= 50 && items.getLong("p50") <= 56);
+        assertEquals(250000, snapshot.getJSONObject("histograms")
+                .getJSONObject(NewsMetrics.LOAD_FINISHED).getLong("max"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsSearchIndex}.
+ */
+public class NewsSearchIndexTest {
+
+    @Test
+    public void search_matchesPrefixesOfAllWords() {
+        NewsSearchIndex index = new NewsSearchIndex(100);
+        index.addAll(Arrays.asList(
+                news("a", "Senate passes climate bill", "Politics", "Lauren Gambino"),
+                news("b", "Climate talks stall", "Environment", "Damian Carrington"),
+                news("c", "Storm season", "Environment", null)));
+
+        assertEquals(urls("b", "a"), urlsOf(index.search("clim", 10)));
+        assertEquals(urls("b"), urlsOf(index.search("climate ENV", 10)));
+        assertEquals(urls("a"), urlsOf(index.search("gambino", 10)));
+        assertEquals(urls("c", "b"), urlsOf(index.search("environment", 10)));
+        assertTrue(index.search("climate storm", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+        assertEquals(1, index.search("environment", 1).size());
+    }
+
+    @Test
+    public void addAll_replacesChangedArticles() {
+        NewsSearchIndex index = new NewsSearchIndex(100);
+        index.addAll(Arrays.asList(news("a", "Old headline", "World news", null)));
+        index.addAll(Arrays.asList(news("a", "New headline", "World news", null)));
+
+        assertTrue(index.search("old", 10).isEmpty());
+        assertEquals(urls("a"), urlsOf(index.search("headline", 10)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void addAll_evictsOldestArticles() {
+        NewsSearchIndex index = new NewsSearchIndex(3);
+        index.addAll(Arrays.asList(
+                news("a", "Alpha", "Sport", null),
+                news("b", "Bravo", "Sport", null),
+                news("c", "Charlie", "Sport", null),
+                news("d", "Delta", "Sport", null)));
+
+        assertEquals(3, index.size());
+        assertTrue(index.search("alpha", 10).isEmpty());
+        assertEquals(urls("d", "c", "b"), urlsOf(index.search("sport", 10)));
+        // the evicted article's own words are gone from the dictionary
+        assertEquals(4, index.getTermCount());
+    }
+
+    @Test
+    public void addAll_keepsPostingsBoundedUnderChurn() {
+        NewsSearchIndex index = new NewsSearchIndex(1000);
+        for (int batch = 0; batch < 50; batch++) {
+            List<News> news = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int n = batch * 100 + i;
+                news.add(news("u" + n, "Headline " + n, "Sport", null));
+            }
+            index.addAll(news);
+        }
+
+        assertEquals(1000, index.size());
+        // "sport" holds one small delta per live article, plus "headline" and the number
+        assertTrue(index.getPostingBytes() < 1000 * 3 + 3 * 1000);
+        assertEquals(urls("u4999"), urlsOf(index.search("4999", 10)));
+        assertTrue(index.search("3999", 10).isEmpty());
+    }
+
+    private static News news(String url, String title, String section, String author) {
+        return new News(title, "2018-08-10", section, author, url);
+    }
+
+    private static List<String> urls(String... urls) {
+        return Arrays.asList(urls);
+    }
+
+    private static List<String> urlsOf(List<News> news) {
+        List<String> urls = new ArrayList<>();
+        for (News article : news) {
+            urls.add(article.getUrl());
+        }
+        return urls;
+    }
+}
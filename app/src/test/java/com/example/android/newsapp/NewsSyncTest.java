@@ -0,0 +1,293 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.android.newsapp.TestUtils.readResource;
+import static com.example.android.newsapp.TestUtils.respond;
+import static com.example.android.newsapp.TestUtils.searchUrl;
+import static com.example.android.newsapp.TestUtils.startSearchServer;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NewsSync} and {@link ArticleStore}, driven by a fake clock
+ * against a stub HTTP server on the loopback interface.
+ */
+public class NewsSyncTest {
+
+    private static final long START = 1534000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private byte[] mBody;
+    private final AtomicInteger mHits = new AtomicInteger();
+    private volatile int mStatusOverride;
+    private volatile String mLastQuery;
+    private final FakeClock mClock = new FakeClock();
+
+    @Before
+    public void startServer() throws IOException {
+        mBody = readResource("guardian_search_10.json");
+        mServer = startSearchServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mHits.incrementAndGet();
+                mLastQuery = exchange.getRequestURI().getRawQuery();
+                if (mStatusOverride != 0) {
+                    exchange.sendResponseHeaders(mStatusOverride, -1);
+                } else {
+                    respond(exchange, 200, mBody);
+                }
+                exchange.close();
+            }
+        });
+        mClock.mNow = START;
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void sync_storesEveryQueryInOneBatch() throws IOException {
+        File file = new File(mFolder.newFolder(), "articles.bin");
+        NewsSync sync = new NewsSync(new ArticleStore(file), null, mClock);
+        List<String> urls = Arrays.asList(url("editions=uk"), url("editions=us"));
+
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+
+        // read back through a new store, as the app would after being restarted
+        ArticleStore store = new ArticleStore(file);
+        for (String url : urls) {
+            ArticleStore.Query query = store.get(NewsCache.keyFor(url));
+            assertNotNull(query);
+            assertEquals(10, query.getNews().size());
+            assertEquals(START, query.getSyncedAt());
+        }
+        assertEquals(2, mHits.get());
+    }
+
+    @Test
+    public void sync_doesNotServeArticlesTheLogFailedToStore() throws IOException {
+        File file = new File(mFolder.newFolder(), "articles.bin");
+        // a directory where the article log should be makes every append fail
+        assertTrue(new File(file.getPath() + ".log").mkdir());
+        ArticleStore store = new ArticleStore(file);
+        NewsSync sync = new NewsSync(store, null, mClock);
+        String url = url("editions=uk");
+
+        sync.sync(Collections.singletonList(url), true, false, null);
+
+        assertNull(store.get(NewsCache.keyFor(url)));
+    }
+
+    @Test
+    public void sync_waitsForNetworkAndBattery() throws IOException {
+        NewsSync sync = new NewsSync(new ArticleStore(new File(mFolder.newFolder(), "a")),
+                null, mClock);
+        List<String> urls = Arrays.asList(url("editions=uk"));
+
+        assertEquals(NewsSync.Result.CONSTRAINED, sync.sync(urls, false, false, null));
+        assertEquals(NewsSync.Result.CONSTRAINED, sync.sync(urls, true, true, null));
+        assertEquals(0, mHits.get());
+    }
+
+    @Test
+    public void sync_backsOffExponentiallyAfterFailures() throws IOException {
+        File file = new File(mFolder.newFolder(), "articles.bin");
+        NewsSync sync = new NewsSync(new ArticleStore(file), null, mClock);
+        List<String> urls = Arrays.asList(url("editions=uk"));
+        long backoff = NewsSync.INITIAL_BACKOFF_MILLIS;
+        mStatusOverride = 500;
+
+        assertEquals(NewsSync.Result.FAILED, sync.sync(urls, true, false, null));
+        mClock.mNow += backoff - 1;
+        assertEquals(NewsSync.Result.BACKING_OFF, sync.sync(urls, true, false, null));
+        mClock.mNow += 1;
+        assertEquals(NewsSync.Result.FAILED, sync.sync(urls, true, false, null));
+
+        // the second failure doubles the wait, and a restart doesn't reset it
+        sync = new NewsSync(new ArticleStore(file), null, mClock);
+        mClock.mNow += backoff;
+        assertEquals(NewsSync.Result.BACKING_OFF, sync.sync(urls, true, false, null));
+        mClock.mNow += backoff;
+        mStatusOverride = 0;
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+        // each failed sync tried as often as the retry policy allows
+        assertEquals(2 * RetryPolicy.DEFAULT_MAX_ATTEMPTS + 1, mHits.get());
+
+        ArticleStore store = new ArticleStore(file);
+        assertEquals(0, store.getFailures());
+        assertEquals(0, store.getNextAttemptAt());
+    }
+
+    @Test
+    public void sync_doesNotCountCachedFallbackAsSynced() throws IOException {
+        NewsCache cache = new NewsCache(mFolder.newFolder(), 1024 * 1024, 60 * 60 * 1000L);
+        ArticleStore store = new ArticleStore(new File(mFolder.newFolder(), "articles.bin"));
+        NewsSync sync = new NewsSync(store, cache, mClock);
+        String url = url("editions=au");
+        cache.put(NewsCache.keyFor(url), QueryUtils.fetchNewsData(url), null, null);
+        mStatusOverride = 503;
+
+        // let the cached copy age past the window in which a result shared by SingleFlight
+        // still counts as fetched by this sync
+        sleep(SingleFlight.RECENT_MILLIS + 100);
+
+        assertEquals(NewsSync.Result.FAILED, sync.sync(Arrays.asList(url), true, false, null));
+        assertNull(store.get(NewsCache.keyFor(url)));
+    }
+
+    @Test
+    public void getBackoffMillis_doublesUpToMax() {
+        assertEquals(NewsSync.INITIAL_BACKOFF_MILLIS, NewsSync.getBackoffMillis(1));
+        assertEquals(2 * NewsSync.INITIAL_BACKOFF_MILLIS, NewsSync.getBackoffMillis(2));
+        assertEquals(4 * NewsSync.INITIAL_BACKOFF_MILLIS, NewsSync.getBackoffMillis(3));
+        assertEquals(NewsSync.MAX_BACKOFF_MILLIS, NewsSync.getBackoffMillis(100));
+    }
+
+    @Test
+    public void sync_incrementalFetchesOnlyNewerArticles() throws IOException {
+        File file = new File(mFolder.newFolder(), "articles.bin");
+        NewsSync sync = new NewsSync(new ArticleStore(file), null, mClock);
+        sync.setIncremental(true);
+        String url = url("order-by=newest&page-size=10");
+        List<String> urls = Arrays.asList(url);
+
+        // the first sync has nothing to start from
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+        assertEquals("order-by=newest&page-size=10", mLastQuery);
+
+        mBody = ("{\"response\":{\"results\":[" + article("delta-11",
+                "2018-08-13T10:00:00Z") + "]}}").getBytes("UTF-8");
+        mClock.mNow += NewsSync.INITIAL_BACKOFF_MILLIS;
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+
+        // asked from just after the newest stored article, 2018-08-12T16:51:08Z
+        assertEquals("order-by=newest&page-size=10&from-date=2018-08-12T16%3A51%3A09Z",
+                mLastQuery);
+        List<News> news = new ArrayList<>(
+                new ArticleStore(file).get(NewsCache.keyFor(url)).getNews());
+        assertEquals(10, news.size());
+        assertEquals("https://www.theguardian.com/world/delta-11", news.get(0).getUrl());
+        // and the oldest, from 2018-08-01, was dropped past the page size
+        assertEquals("2018-08-02", news.get(news.size() - 1).getDate());
+    }
+
+    @Test
+    public void sync_incrementalKeepsDeltasOutOfTheCache() throws IOException {
+        NewsCache cache = new NewsCache(mFolder.newFolder(), 1024 * 1024, 60 * 60 * 1000L);
+        NewsSync sync = new NewsSync(new ArticleStore(new File(mFolder.newFolder(), "a")),
+                cache, mClock);
+        sync.setIncremental(true);
+        String url = url("order-by=newest&page-size=10");
+        List<String> urls = Arrays.asList(url);
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+
+        mBody = ("{\"response\":{\"results\":[" + article("delta-11",
+                "2018-08-13T10:00:00Z") + "]}}").getBytes("UTF-8");
+        mClock.mNow += NewsSync.INITIAL_BACKOFF_MILLIS;
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+
+        assertNull(cache.get(NewsCache.keyFor(
+                NewsSync.buildDeltaUrl(url, NewsDates.parse("2018-08-12T16:51:08Z")))));
+        // the query's own entry holds the merged articles
+        List<News> news = cache.get(NewsCache.keyFor(url)).getNews();
+        assertEquals(10, news.size());
+        assertEquals("https://www.theguardian.com/world/delta-11", news.get(0).getUrl());
+    }
+
+    @Test
+    public void sync_incrementalLeavesOtherQueriesWhole() throws IOException {
+        NewsSync sync = new NewsSync(new ArticleStore(new File(mFolder.newFolder(), "a")),
+                null, mClock);
+        sync.setIncremental(true);
+        List<String> urls = Arrays.asList(url("order-by=oldest"));
+
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+        assertEquals(NewsSync.Result.SYNCED, sync.sync(urls, true, false, null));
+        assertEquals("order-by=oldest", mLastQuery);
+    }
+
+    @Test
+    public void buildDeltaUrl_replacesTheStartDate() {
+        long watermark = NewsDates.parse("2018-08-12T16:51:08Z");
+
+        assertEquals("http://h/search?section=world&order-by=newest"
+                        + "&from-date=2018-08-12T16%3A51%3A09Z",
+                NewsSync.buildDeltaUrl("http://h/search?from-date=2018-08-01&section=world"
+                        + "&order-by=newest", watermark));
+        assertNull(NewsSync.buildDeltaUrl("http://h/search?order-by=oldest", watermark));
+        assertNull(NewsSync.buildDeltaUrl("http://h/search?order-by=newest",
+                NewsDates.NO_DATE));
+    }
+
+    @Test
+    public void mergeDelta_keepsTheNewestAndFreshCopies() {
+        List<News> stored = Arrays.asList(
+                new News("Old title", "2018-08-03", "World", null, "https://g/3"),
+                new News("Two", "2018-08-02", "World", null, "https://g/2"),
+                new News("One", "2018-08-01", "World", null, "https://g/1"));
+        List<News> fresh = Arrays.asList(
+                new News("Four", "2018-08-04", "World", null, "https://g/4"),
+                new News("New title", "2018-08-03", "World", null, "https://g/3"));
+
+        List<News> merged = NewsSync.mergeDelta(stored, fresh, 3);
+
+        assertEquals(3, merged.size());
+        assertEquals("Four", merged.get(0).getTitle());
+        assertEquals("New title", merged.get(1).getTitle());
+        assertEquals("Two", merged.get(2).getTitle());
+
+        // a full page may have skipped articles between it and the stored ones
+        List<News> page = Arrays.asList(fresh.get(0), fresh.get(1));
+        assertSame(page, NewsSync.mergeDelta(stored, page, 2));
+    }
+
+    private static String article(String id, String published) {
+        return "{\"sectionName\":\"World news\",\"webTitle\":\"" + id + "\","
+                + "\"webUrl\":\"https://www.theguardian.com/world/" + id + "\","
+                + "\"webPublicationDate\":\"" + published + "\","
+                + "\"fields\":{\"byline\":\"Reporter\"}}";
+    }
+
+    private String url(String query) {
+        return searchUrl(mServer) + "?" + query;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FakeClock implements NewsSync.Clock {
+
+        long mNow;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+}
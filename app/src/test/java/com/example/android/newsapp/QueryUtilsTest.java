@@ -0,0 +1,102 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests checking the streaming parser in {@link QueryUtils} against the
+ * JSONObject based one on recorded Guardian search responses.
+ */
+public class QueryUtilsTest {
+
+    @Test
+    public void streamingParser_matchesJsonParser_tenResults() throws IOException {
+        assertSameNews("guardian_search_10.json", 10);
+    }
+
+    @Test
+    public void streamingParser_matchesJsonParser_fiftyResults() throws IOException {
+        assertSameNews("guardian_search_50.json", 50);
+    }
+
+    @Test
+    public void streamingParser_keepsArticlesBeforeTruncation() throws IOException {
+        String json = "{\"response\":{\"results\":["
+                + "{\"sectionName\":\"World news\",\"webTitle\":\"First\","
+                + "\"webUrl\":\"https://www.theguardian.com/a\","
+                + "\"webPublicationDate\":\"2018-08-10T09:00:00Z\",\"fields\":{}},"
+                + "{\"sectionName\":\"Sport\",\"webTi";
+
+        List<News> news = QueryUtils.extractFeatureFromStream(toStream(json));
+
+        assertEquals(1, news.size());
+        assertEquals("First", news.get(0).getTitle());
+        assertEquals("2018-08-10", news.get(0).getDate());
+        assertEquals("", news.get(0).getAuthor());
+    }
+
+    @Test
+    public void parsers_readThumbnails() throws IOException {
+        String json = "{\"response\":{\"results\":["
+                + "{\"sectionName\":\"World news\",\"webTitle\":\"With\","
+                + "\"webUrl\":\"https://www.theguardian.com/a\","
+                + "\"webPublicationDate\":\"2018-08-10T09:00:00Z\","
+                + "\"fields\":{\"byline\":\"Julian Borger\","
+                + "\"thumbnail\":\"https://media.guim.co.uk/a/500.jpg\"}},"
+                + "{\"sectionName\":\"Sport\",\"webTitle\":\"Without\","
+                + "\"webUrl\":\"https://www.theguardian.com/b\","
+                + "\"webPublicationDate\":\"2018-08-10T08:00:00Z\","
+                + "\"fields\":{\"thumbnail\":null}}]}}";
+
+        for (List<News> news : Arrays.asList(QueryUtils.extractFeatureFromJson(json),
+                QueryUtils.extractFeatureFromStream(toStream(json)))) {
+            assertEquals(2, news.size());
+            assertEquals("https://media.guim.co.uk/a/500.jpg", news.get(0).getThumbnail());
+            assertEquals("Julian Borger", news.get(0).getAuthor());
+            assertNull(news.get(1).getThumbnail());
+        }
+    }
+
+    @Test
+    public void streamingParser_nullStream() throws IOException {
+        assertNull(QueryUtils.extractFeatureFromStream(null));
+    }
+
+    private void assertSameNews(String resource, int expectedSize) throws IOException {
+        String json = QueryUtils.readFromStream(open(resource));
+
+        List<News> expected = QueryUtils.extractFeatureFromJson(json);
+        List<News> actual = QueryUtils.extractFeatureFromStream(open(resource));
+
+        assertEquals(expectedSize, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            News e = expected.get(i);
+            News a = actual.get(i);
+            assertEquals(e.getTitle(), a.getTitle());
+            assertEquals(e.getDate(), a.getDate());
+            assertEquals(e.getSection(), a.getSection());
+            assertEquals(e.getAuthor(), a.getAuthor());
+            assertEquals(e.getUrl(), a.getUrl());
+            assertEquals(e.getThumbnail(), a.getThumbnail());
+        }
+    }
+
+    private InputStream open(String resource) {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resource);
+        assertNotNull("missing test resource " + resource, in);
+        return in;
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")));
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.android.newsapp.TestUtils.readResource;
+import static com.example.android.newsapp.TestUtils.respond;
+import static com.example.android.newsapp.TestUtils.searchUrl;
+import static com.example.android.newsapp.TestUtils.startSearchServer;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RetryPolicy}, and for the retries and {@link CircuitBreaker}
+ * of {@link QueryUtils} against a stub HTTP server that fails as it is told to.
+ */
+public class RetryPolicyTest {
+
+    private static final long START = 1534000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private byte[] mBody;
+    private final AtomicInteger mHits = new AtomicInteger();
+
+    /** Status codes to answer with, in order, before answering 200 again */
+    private final Queue<Integer> mFailures = new ConcurrentLinkedQueue<>();
+    private volatile String mRetryAfter;
+
+    // short delays so the tests don't wait on the default ones
+    private final RetryPolicy mPolicy = new RetryPolicy(3, 10, 2000, new Random(42));
+    private final FakeClock mClock = new FakeClock();
+    private final CircuitBreaker mBreaker = new CircuitBreaker(3, 30000, 300000, mClock);
+
+    @Before
+    public void startServer() throws IOException {
+        mBody = readResource("guardian_search_10.json");
+        mServer = startSearchServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mHits.incrementAndGet();
+                Integer failure = mFailures.poll();
+                if (failure != null) {
+                    if (mRetryAfter != null) {
+                        exchange.getResponseHeaders().set("Retry-After", mRetryAfter);
+                    }
+                    exchange.sendResponseHeaders(failure, -1);
+                } else {
+                    respond(exchange, 200, mBody);
+                }
+                exchange.close();
+            }
+        });
+        mClock.mNow = START;
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void fetch_retriesTransientFailures() throws IOException {
+        mFailures.addAll(Arrays.asList(503, 502));
+
+        List<News> news = fetch(null);
+
+        assertNotNull(news);
+        assertEquals(10, news.size());
+        assertEquals(3, mHits.get());
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void fetch_doesNotRetryClientErrors() throws IOException {
+        mFailures.add(404);
+
+        assertNull(fetch(null));
+        assertEquals(1, mHits.get());
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void fetch_readsRefusedPageAsTheEnd() throws IOException {
+        // the Guardian API answers a page past the last one with 400
+        mFailures.addAll(Arrays.asList(400, 400));
+
+        List<News> news = QueryUtils.fetchNewsData(new URL(url() + "&page=7"), null, null,
+                mPolicy, mBreaker);
+        assertNotNull(news);
+        assertTrue(news.isEmpty());
+
+        // while page 1 being refused is a failure
+        assertNull(fetch(null));
+        assertEquals(2, mHits.get());
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void fetch_waitsForShortRetryAfter() throws IOException {
+        mFailures.add(RetryPolicy.HTTP_TOO_MANY_REQUESTS);
+        mRetryAfter = "1";
+
+        long startedAt = System.currentTimeMillis();
+        List<News> news = fetch(null);
+
+        assertNotNull(news);
+        assertEquals(2, mHits.get());
+        assertTrue(System.currentTimeMillis() - startedAt >= 1000);
+    }
+
+    @Test
+    public void fetch_servesCacheWhileRateLimited() throws IOException {
+        NewsCache cache = new NewsCache(mFolder.newFolder(), 1024 * 1024, 60 * 60 * 1000L);
+        assertNotNull(fetch(cache));
+
+        // longer than the policy waits, so the breaker opens until then
+        mFailures.add(RetryPolicy.HTTP_TOO_MANY_REQUESTS);
+        mRetryAfter = "120";
+        List<News> news = fetch(cache);
+
+        assertNotNull(news);
+        assertEquals(10, news.size());
+        assertEquals(2, mHits.get());
+        assertTrue(mBreaker.isOpen());
+        assertEquals(START + 120 * 1000L, mBreaker.getRetryAt());
+
+        // not asked again until the server said so
+        assertEquals(10, fetch(cache).size());
+        assertEquals(2, mHits.get());
+        mClock.mNow += 120 * 1000L;
+        assertEquals(10, fetch(cache).size());
+        assertEquals(3, mHits.get());
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void fetch_stopsAskingAfterRepeatedFailures() throws IOException {
+        for (int i = 0; i < 3 * mPolicy.getMaxAttempts(); i++) {
+            mFailures.add(500);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertNull(fetch(null));
+        }
+        assertEquals(3 * mPolicy.getMaxAttempts(), mHits.get());
+        assertTrue(mBreaker.isOpen());
+
+        assertNull(fetch(null));
+        assertEquals(3 * mPolicy.getMaxAttempts(), mHits.get());
+    }
+
+    @Test
+    public void fetch_givesUpWhenCancelledDuringDelay() throws IOException {
+        RetryPolicy slow = new RetryPolicy(3, 10000, 10000, new Random(42));
+        final Cancellation cancellation = new Cancellation();
+        mFailures.add(503);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sleep(200);
+                cancellation.cancel();
+            }
+        }).start();
+
+        long startedAt = System.currentTimeMillis();
+        assertNull(QueryUtils.fetchNewsData(new URL(url()), null, cancellation, slow,
+                mBreaker));
+
+        assertTrue(System.currentTimeMillis() - startedAt < 5000);
+        assertEquals(1, mHits.get());
+    }
+
+    @Test
+    public void getDelayMillis_growsWithinJitterBounds() {
+        RetryPolicy policy = new RetryPolicy(5, 500, 4000, new Random(7));
+        for (int i = 0; i < 100; i++) {
+            assertBetween(250, 500, policy.getDelayMillis(1));
+            assertBetween(500, 1000, policy.getDelayMillis(2));
+            assertBetween(1000, 2000, policy.getDelayMillis(3));
+            assertBetween(2000, 4000, policy.getDelayMillis(4));
+            assertBetween(2000, 4000, policy.getDelayMillis(30));
+        }
+    }
+
+    @Test
+    public void isRetryable_onlyTransientCodes() {
+        for (int code : new int[]{408, 429, 500, 502, 503, 504}) {
+            assertTrue(String.valueOf(code), RetryPolicy.isRetryable(code));
+        }
+        for (int code : new int[]{200, 304, 400, 401, 403, 404, 501}) {
+            assertFalse(String.valueOf(code), RetryPolicy.isRetryable(code));
+        }
+    }
+
+    @Test
+    public void parseRetryAfter_readsSecondsAndDates() {
+        // Sun, 06 Nov 1994 08:49:37 GMT
+        long date = 784111777000L;
+
+        assertEquals(120 * 1000L, RetryPolicy.parseRetryAfter("120", date));
+        assertEquals(0, RetryPolicy.parseRetryAfter(" 0 ", date));
+        assertEquals(30 * 1000L, RetryPolicy.parseRetryAfter(
+                "Sun, 06 Nov 1994 08:50:07 GMT", date));
+        assertEquals(0, RetryPolicy.parseRetryAfter(
+                "Sun, 06 Nov 1994 08:49:00 GMT", date));
+        assertEquals(-1, RetryPolicy.parseRetryAfter(null, date));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("-5", date));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("soon", date));
+    }
+
+    private List<News> fetch(NewsCache cache) throws IOException {
+        return QueryUtils.fetchNewsData(new URL(url()), cache, null, mPolicy, mBreaker);
+    }
+
+    private String url() {
+        return searchUrl(mServer) + "?q=retry";
+    }
+
+    private static void assertBetween(long min, long max, long value) {
+        assertTrue(value + " < " + min, value >= min);
+        assertTrue(value + " > " + max, value <= max);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FakeClock implements NewsSync.Clock {
+
+        long mNow;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+}
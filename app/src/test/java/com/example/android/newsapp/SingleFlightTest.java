@@ -0,0 +1,125 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.android.newsapp.TestUtils.readResource;
+import static com.example.android.newsapp.TestUtils.respond;
+import static com.example.android.newsapp.TestUtils.searchUrl;
+import static com.example.android.newsapp.TestUtils.startSearchServer;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SingleFlight} against a stub HTTP server that holds its
+ * response until the test releases it.
+ */
+public class SingleFlightTest {
+
+    private HttpServer mServer;
+    private byte[] mBody;
+    private final AtomicInteger mHits = new AtomicInteger();
+    private final CountDownLatch mRequested = new CountDownLatch(1);
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private final ExecutorService mCallers = Executors.newCachedThreadPool();
+
+    @Before
+    public void startServer() throws IOException {
+        mBody = readResource("guardian_search_10.json");
+        mServer = startSearchServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mHits.incrementAndGet();
+                mRequested.countDown();
+                try {
+                    mRelease.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                respond(exchange, 200, mBody);
+            }
+        });
+    }
+
+    @After
+    public void stopServer() {
+        mRelease.countDown();
+        mCallers.shutdownNow();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void fetch_sharesRequestInFlight() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        Future<List<News>> first = fetchLater(singleFlight, url("q=a"), null);
+        assertTrue(mRequested.await(5, TimeUnit.SECONDS));
+        Future<List<News>> second = fetchLater(singleFlight, url("q=a"), null);
+
+        mRelease.countDown();
+
+        assertEquals(10, first.get(5, TimeUnit.SECONDS).size());
+        assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, mHits.get());
+    }
+
+    @Test
+    public void fetch_cancelledByEveryCaller_abortsRequest() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        Cancellation first = new Cancellation();
+        Cancellation second = new Cancellation();
+        Future<List<News>> firstResult = fetchLater(singleFlight, url("q=b"), first);
+        assertTrue(mRequested.await(5, TimeUnit.SECONDS));
+        Future<List<News>> secondResult = fetchLater(singleFlight, url("q=b"), second);
+        awaitWaiters(singleFlight, url("q=b"), 2);
+
+        first.cancel();
+        assertNull(firstResult.get(1, TimeUnit.SECONDS));
+        assertFalse(secondResult.isDone());
+
+        second.cancel();
+        assertNull(secondResult.get(1, TimeUnit.SECONDS));
+
+        // the next caller starts a request of its own instead of joining the cancelled one
+        mRelease.countDown();
+        assertEquals(10, singleFlight.fetch(url("q=b"), null, null).size());
+        assertEquals(2, mHits.get());
+    }
+
+    private Future<List<News>> fetchLater(final SingleFlight singleFlight, final String url,
+                                          final Cancellation cancellation) {
+        return mCallers.submit(new Callable<List<News>>() {
+            @Override
+            public List<News> call() {
+                return singleFlight.fetch(url, null, cancellation);
+            }
+        });
+    }
+
+    private static void awaitWaiters(SingleFlight singleFlight, String url, int waiters)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (singleFlight.getWaiters(url) != waiters) {
+            assertTrue("waiters " + singleFlight.getWaiters(url),
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private String url(String query) {
+        return searchUrl(mServer) + "?" + query;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link StringPool}.
+ */
+public class StringPoolTest {
+
+    @Test
+    public void get_sharesOneInstanceOfEqualStrings() {
+        StringPool pool = new StringPool(10);
+        String first = pool.get(new String("World news"));
+
+        assertSame(first, pool.get(new String("World news")));
+        assertNull(pool.get(null));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void get_keepsPoolingNewStringsOnceFull() {
+        StringPool pool = new StringPool(2);
+        String world = pool.get(new String("World news"));
+        pool.get(new String("Sport"));
+        // used again, so the next new string pushes out "Sport" instead
+        pool.get(new String("World news"));
+        String politics = pool.get(new String("Politics"));
+
+        assertEquals(2, pool.size());
+        assertSame(world, pool.get(new String("World news")));
+        assertSame(politics, pool.get(new String("Politics")));
+    }
+}
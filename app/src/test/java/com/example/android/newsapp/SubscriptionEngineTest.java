@@ -0,0 +1,112 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SubscriptionEngine}.
+ */
+public class SubscriptionEngineTest {
+
+    private static final String SEARCH_URL = "https://content.guardianapis.com/search"
+            + "?order-by=newest&api-key=test";
+
+    @Test
+    public void compile_sharesOneSearchBetweenSections() {
+        SubscriptionEngine engine = new SubscriptionEngine(SEARCH_URL);
+        List<SubscriptionEngine.Query> queries = engine.compile(Arrays.asList(
+                section("technology", null), section("politics", null),
+                section("sport", null)), 10);
+
+        assertEquals(1, queries.size());
+        assertEquals(SEARCH_URL + "&section=politics%7Csport%7Ctechnology&page-size=30",
+                queries.get(0).getUrl());
+        assertEquals(3, queries.get(0).getSubscriptions().size());
+    }
+
+    @Test
+    public void compile_isTheSameForAnyOrder() {
+        SubscriptionEngine engine = new SubscriptionEngine(SEARCH_URL);
+        List<Subscription> subscriptions = Arrays.asList(section("world", "climate"),
+                section("sport", null), section("business", null), section("world", null));
+        List<Subscription> reversed = new ArrayList<>(subscriptions);
+        Collections.reverse(reversed);
+
+        assertEquals(SubscriptionEngine.urlsOf(engine.compile(subscriptions, 10)),
+                SubscriptionEngine.urlsOf(engine.compile(reversed, 10)));
+    }
+
+    @Test
+    public void compile_separatesKeywordsAndTags() {
+        SubscriptionEngine engine = new SubscriptionEngine(SEARCH_URL);
+        List<SubscriptionEngine.Query> queries = engine.compile(Arrays.asList(
+                section("world", null), section("business", null),
+                section("world", "climate change"),
+                new Subscription("science", "science/space", null, null, null),
+                section("world", null)), 10);
+
+        List<String> urls = SubscriptionEngine.urlsOf(queries);
+        assertEquals(Arrays.asList(
+                SEARCH_URL + "&section=business%7Cworld&page-size=20",
+                SEARCH_URL + "&section=world&q=climate+change&page-size=10",
+                SEARCH_URL + "&section=science&tag=science%2Fspace&page-size=10"), urls);
+        // the duplicate subscription is fetched once
+        assertEquals(2, queries.get(0).getSubscriptions().size());
+    }
+
+    @Test
+    public void compile_pushesTheWidestDatesDown() {
+        SubscriptionEngine engine = new SubscriptionEngine(SEARCH_URL);
+
+        List<String> bounded = SubscriptionEngine.urlsOf(engine.compile(Arrays.asList(
+                new Subscription("world", null, null, "2018-08-05", "2018-08-07"),
+                new Subscription("sport", null, null, "2018-08-01", "2018-08-06")), 10));
+        assertEquals(Collections.singletonList(SEARCH_URL + "&section=sport%7Cworld"
+                + "&from-date=2018-08-01&to-date=2018-08-07&page-size=20"), bounded);
+
+        // a subscription without an end keeps the search open
+        List<String> open = SubscriptionEngine.urlsOf(engine.compile(Arrays.asList(
+                new Subscription("world", null, null, "2018-08-05", null),
+                new Subscription("sport", null, null, "2018-08-01", "2018-08-06")), 10));
+        assertEquals(Collections.singletonList(SEARCH_URL + "&section=sport%7Cworld"
+                + "&from-date=2018-08-01&page-size=20"), open);
+    }
+
+    @Test
+    public void compile_splitsManySectionsAndCapsThePage() {
+        SubscriptionEngine engine = new SubscriptionEngine(SEARCH_URL);
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < SubscriptionEngine.MAX_SECTIONS_PER_QUERY + 2; i++) {
+            subscriptions.add(section("section" + (char) ('a' + i), null));
+        }
+
+        List<SubscriptionEngine.Query> queries = engine.compile(subscriptions, 50);
+
+        assertEquals(2, queries.size());
+        assertEquals(SubscriptionEngine.MAX_SECTIONS_PER_QUERY,
+                queries.get(0).getSubscriptions().size());
+        assertTrue(queries.get(0).getUrl().endsWith(
+                "&page-size=" + SubscriptionEngine.MAX_PAGE_SIZE));
+        assertTrue(queries.get(1).getUrl().endsWith("&page-size=100"));
+    }
+
+    @Test
+    public void compile_coversSectionsWithASubscriptionToAll() {
+        SubscriptionEngine engine = new SubscriptionEngine(SEARCH_URL);
+        List<SubscriptionEngine.Query> queries = engine.compile(Arrays.asList(
+                section("world", null), section(null, null)), 10);
+
+        assertEquals(1, queries.size());
+        assertEquals(SEARCH_URL + "&page-size=10", queries.get(0).getUrl());
+    }
+
+    private static Subscription section(String section, String keyword) {
+        return new Subscription(section, null, keyword, null, null);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+/**
+ * Helper methods shared by the local unit tests: a stub of the Guardian search endpoint,
+ * the recorded responses and articles to test with.
+ */
+final class TestUtils {
+
+    /**
+     * Create a private constructor because no one should ever create a {@link TestUtils}
+     * object.
+     */
+    private TestUtils() {
+    }
+
+    /**
+     * Start a server on the loopback interface answering /search with the handler. Stop it
+     * with {@link HttpServer#stop(int)} when the test is done.
+     */
+    static HttpServer startSearchServer(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", handler);
+        server.start();
+        return server;
+    }
+
+    /** Return the url of the server's /search, to append a query to */
+    static String searchUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/search";
+    }
+
+    /**
+     * Answer the exchange with the status and body, and close it.
+     */
+    static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+        exchange.close();
+    }
+
+    /**
+     * Return the bytes of a test resource, such as a recorded search response.
+     */
+    static byte[] readResource(String name) throws IOException {
+        InputStream in = TestUtils.class.getClassLoader().getResourceAsStream(name);
+        assertNotNull("missing test resource " + name, in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Return an article of the world section with the given title, its url and publication
+     * time told apart by the id.
+     */
+    static News article(int id, String title) {
+        return new News(title, 1533891600000L + id, "World news", "Julian Borger",
+                "https://www.theguardian.com/world/article-" + id);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link ArticleLog}: replaying the whole log, as the app does when it
+ * starts, and looking up an article in the replayed log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class ArticleLogBenchmark {
+
+    private static final String[] WORDS = ("senate climate vote market storm league election "
+            + "court budget city report trade plan energy school health deal team police film")
+            .split(" ");
+
+    private static final String[] SECTIONS = {"US news", "World news", "Politics", "Sport",
+            "Business", "Technology", "Culture", "Environment", "Opinion", "Football"};
+
+    @Param({"10000", "200000"})
+    public String articles;
+
+    /** The log file, written once for every benchmark */
+    private File mFile;
+
+    /** The replayed log the lookups go to */
+    private ArticleLog mLog;
+
+    /** URLs of the logged articles, looked up in random order */
+    private String[] mUrls;
+
+    private Random mRandom;
+
+    @Setup
+    public void setUp() throws IOException {
+        int count = Integer.parseInt(articles);
+        mFile = File.createTempFile("articles", ".log");
+        mFile.delete();
+        List<News> news = generate(count);
+        ArticleLog log = new ArticleLog(mFile, count);
+        // written a sync's worth at a time
+        for (int start = 0; start < count; start += 1000) {
+            log.putAll(news.subList(start, Math.min(count, start + 1000)));
+        }
+        log.close();
+
+        mUrls = new String[count];
+        for (int i = 0; i < count; i++) {
+            mUrls[i] = news.get(i).getUrl();
+        }
+        mLog = new ArticleLog(mFile, count);
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mLog.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int replay() throws IOException {
+        ArticleLog log = new ArticleLog(mFile, mUrls.length);
+        try {
+            return log.size();
+        } finally {
+            log.close();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public News get() throws IOException {
+        return mLog.get(mUrls[mRandom.nextInt(mUrls.length)]);
+    }
+
+    private static List<News> generate(int count) {
+        Random random = new Random(42);
+        List<News> news = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 4 + random.nextInt(7);
+            for (int w = 0; w < words; w++) {
+                title.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            news.add(new News(title.toString(), 1533000000000L + i * 60000L,
+                    SECTIONS[random.nextInt(SECTIONS.length)], "Julian Borger",
+                    "https://www.theguardian.com/world/2018/aug/10/article-" + i,
+                    "https://media.guim.co.uk/" + i + "/500.jpg"));
+        }
+        return news;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of showing the publication dates of a screen of rows: parsing and formatting
+ * the date in every bind, as getView would with SimpleDateFormat, against the app's
+ * relative dates, looked up from the parsed timestamps by the display model.
+ * Each operation formats every article of a recorded response once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DateFormatBenchmark {
+
+    @Param({"10", "50"})
+    public String results;
+
+    /** Publication date of each article as received */
+    private String[] mDates;
+
+    /** The display models of the articles, as the adapter gets them */
+    private NewsDisplay[] mDisplays;
+
+    /** Parsed publication date of each article */
+    private long[] mPublishedAt;
+
+    /** A few hours after the newest article, so some show their age and some their date */
+    private long mNow;
+
+    // reused by the shared formatter benchmark, as a single threaded adapter could
+    private SimpleDateFormat mSharedIso;
+    private DateFormat mSharedLocal;
+
+    @Setup
+    public void setUp() throws IOException, JSONException {
+        String json = new String(Payloads.load(results), Charset.forName("UTF-8"));
+        JSONArray articles = new JSONObject(json).getJSONObject("response")
+                .getJSONArray("results");
+        mDates = new String[articles.length()];
+        mDisplays = new NewsDisplay[articles.length()];
+        mPublishedAt = new long[articles.length()];
+        for (int i = 0; i < articles.length(); i++) {
+            JSONObject article = articles.getJSONObject(i);
+            mDates[i] = article.getString("webPublicationDate");
+            News news = new News(article.getString("webTitle"), mDates[i],
+                    article.getString("sectionName"), "", article.getString("webUrl"));
+            mDisplays[i] = news.getDisplay();
+            mPublishedAt[i] = news.getPublishedAt();
+            mNow = Math.max(mNow, mPublishedAt[i] + 3 * 60 * 60 * 1000L);
+        }
+        mSharedIso = newIsoFormat();
+        mSharedLocal = DateFormat.getDateInstance(DateFormat.MEDIUM);
+    }
+
+    /** A new formatter for every bind, the usual getView code */
+    @Benchmark
+    public void perBindNewFormatters(Blackhole blackhole) throws ParseException {
+        for (String date : mDates) {
+            blackhole.consume(DateFormat.getDateInstance(DateFormat.MEDIUM)
+                    .format(newIsoFormat().parse(date)));
+        }
+    }
+
+    /** Formatters kept by the adapter, still parsing and formatting in every bind */
+    @Benchmark
+    public void perBindSharedFormatters(Blackhole blackhole) throws ParseException {
+        for (String date : mDates) {
+            blackhole.consume(mSharedLocal.format(mSharedIso.parse(date)));
+        }
+    }
+
+    /** The parsed timestamps formatted again, without the display model */
+    @Benchmark
+    public void formatRelative(Blackhole blackhole) {
+        for (long publishedAt : mPublishedAt) {
+            blackhole.consume(NewsDates.formatRelative(publishedAt, mNow));
+        }
+    }
+
+    /** The display models' dates, as in every bind */
+    @Benchmark
+    public void displayDate(Blackhole blackhole) {
+        for (NewsDisplay display : mDisplays) {
+            blackhole.consume(display.getDate(mNow));
+        }
+    }
+
+    private static SimpleDateFormat newIsoFormat() {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return iso;
+    }
+}
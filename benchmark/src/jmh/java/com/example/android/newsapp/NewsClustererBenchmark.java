@@ -0,0 +1,84 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link NewsClusterer} on a merged timeline, a third of it rewordings of
+ * the story before: clustering it whole in the chunks the loader uses, and one chunk of
+ * it, which has to fit well inside a frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NewsClustererBenchmark {
+
+    private static final String[] WORDS = ("senate climate vote market storm league election "
+            + "court budget city report trade plan energy school health deal team police film "
+            + "music brexit minister tariff wildfire heatwave transfer striker museum protest "
+            + "refugee summit inflation housing drought opera festival verdict border").split(" ");
+
+    @Param({"1000", "10000"})
+    public String articles;
+
+    private List<News> mNews;
+
+    @Setup
+    public void setUp() {
+        mNews = generate(Integer.parseInt(articles));
+    }
+
+    @Benchmark
+    public List<News> cluster() {
+        return NewsClusterer.cluster(mNews, null);
+    }
+
+    @Benchmark
+    public int addChunk() {
+        NewsClusterer clusterer = new NewsClusterer(NewsClusterer.DEFAULT_MAX_ARTICLES);
+        clusterer.addAll(mNews.subList(0,
+                Math.min(mNews.size(), NewsClusterer.DEFAULT_CHUNK_SIZE)));
+        return clusterer.size();
+    }
+
+    private static List<News> generate(int count) {
+        Random random = new Random(42);
+        List<News> news = new ArrayList<>(count);
+        List<String> previous = null;
+        for (int i = 0; i < count; i++) {
+            List<String> title = new ArrayList<>();
+            if (previous != null && random.nextInt(3) == 0) {
+                // the story before in another edition, one word changed
+                title.addAll(previous);
+                title.set(random.nextInt(title.size()), WORDS[random.nextInt(WORDS.length)]);
+                Collections.shuffle(title, random);
+            } else {
+                int words = 5 + random.nextInt(6);
+                for (int w = 0; w < words; w++) {
+                    title.add(random.nextInt(4) == 0 ? WORDS[random.nextInt(WORDS.length)]
+                            : "n" + random.nextInt(50000));
+                }
+            }
+            previous = title;
+            StringBuilder text = new StringBuilder();
+            for (String word : title) {
+                text.append(word).append(' ');
+            }
+            news.add(new News(text.toString(), "2018-08-10", "World news", null,
+                    "https://www.theguardian.com/article-" + i));
+        }
+        return news;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link NewsSearchIndex}: building it in the batches the loaders feed it,
+ * and answering a mix of whole-word, prefix and two-word queries, sampled so the report
+ * has the latency percentiles. Titles draw from a vocabulary of {@link #VOCABULARY_SIZE}
+ * words with the Zipf distribution of word frequencies in English text.
+ */
+@State(Scope.Benchmark)
+public class NewsSearchIndexBenchmark {
+
+    /** Distinct words of the generated titles */
+    private static final int VOCABULARY_SIZE = 20000;
+
+    /** Exponent of the word frequencies, a little over 1 in news text */
+    private static final double ZIPF_EXPONENT = 1.07;
+
+    /** Queries generated, cycled through by the search benchmark */
+    private static final int QUERIES = 1024;
+
+    private static final String[] ONSETS = {"b", "br", "c", "ch", "cl", "d", "dr", "f", "fl",
+            "g", "gr", "h", "j", "k", "l", "m", "n", "p", "pl", "pr", "r", "s", "sh", "st",
+            "t", "th", "tr", "v", "w", "z"};
+
+    private static final String[] NUCLEI = {"a", "e", "i", "o", "u", "ai", "ea", "ou", "y"};
+
+    private static final String[] CODAS = {"", "", "", "n", "r", "s", "t", "l", "m", "nd",
+            "st", "ck"};
+
+    private static final String[] SECTIONS = {"US news", "World news", "Politics", "Sport",
+            "Business", "Technology", "Culture", "Environment", "Opinion", "Football"};
+
+    @Param({"10000", "100000"})
+    public String articles;
+
+    private List<News> mNews;
+
+    private NewsSearchIndex mIndex;
+
+    private String[] mQueries;
+
+    private int mNextQuery;
+
+    @Setup
+    public void setUp() {
+        int count = Integer.parseInt(articles);
+        Random random = new Random(42);
+        String[] words = generateVocabulary(random);
+        double[] cumulative = zipf(words.length);
+        String[] authors = generateAuthors(random, words);
+
+        mNews = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            int length = 6 + random.nextInt(7);
+            for (int w = 0; w < length; w++) {
+                title.append(w == 0 ? "" : " ").append(pick(words, cumulative, random));
+            }
+            mNews.add(new News(title.toString(), "2018-08-10",
+                    SECTIONS[random.nextInt(SECTIONS.length)],
+                    authors[random.nextInt(authors.length)],
+                    "https://www.theguardian.com/article-" + i));
+        }
+        mIndex = build();
+
+        // users mostly look for the words they see most, often before typing them out
+        mQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String word = pick(words, cumulative, random);
+            switch (random.nextInt(4)) {
+                case 0:
+                    mQueries[i] = word.substring(0, Math.min(word.length(), 2));
+                    break;
+                case 1:
+                    mQueries[i] = word.substring(0, Math.min(word.length(), 4));
+                    break;
+                case 2:
+                    mQueries[i] = word + " " + pick(words, cumulative, random);
+                    break;
+                default:
+                    mQueries[i] = word;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public NewsSearchIndex build() {
+        NewsSearchIndex index = new NewsSearchIndex(mNews.size());
+        for (int i = 0; i < mNews.size(); i += 50) {
+            index.addAll(mNews.subList(i, Math.min(mNews.size(), i + 50)));
+        }
+        return index;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<News> search() {
+        String query = mQueries[mNextQuery];
+        mNextQuery = (mNextQuery + 1) % QUERIES;
+        return mIndex.search(query, 50);
+    }
+
+    /**
+     * Return distinct pronounceable words of one to three syllables, shorter ones first as
+     * the most frequent words are the shortest.
+     */
+    private static String[] generateVocabulary(Random random) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < VOCABULARY_SIZE) {
+            int syllables = words.size() < 1000 ? 1 : words.size() < 8000 ? 2 : 3;
+            StringBuilder word = new StringBuilder();
+            for (int s = 0; s < syllables; s++) {
+                word.append(ONSETS[random.nextInt(ONSETS.length)])
+                        .append(NUCLEI[random.nextInt(NUCLEI.length)]);
+            }
+            word.append(CODAS[random.nextInt(CODAS.length)]);
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String[] generateAuthors(Random random, String[] words) {
+        String[] authors = new String[300];
+        for (int i = 0; i < authors.length; i++) {
+            // some articles have no byline
+            authors[i] = i % 10 == 0 ? null
+                    : capitalize(words[random.nextInt(words.length)]) + " "
+                    + capitalize(words[random.nextInt(words.length)]);
+        }
+        return authors;
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /** Return the cumulative probability of each word rank */
+    private static double[] zipf(int count) {
+        double[] cumulative = new double[count];
+        double sum = 0;
+        for (int rank = 0; rank < count; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < count; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static String pick(String[] words, double[] cumulative, Random random) {
+        double p = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < p) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return words[low];
+    }
+}
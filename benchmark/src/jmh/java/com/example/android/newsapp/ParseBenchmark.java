@@ -0,0 +1,89 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of each parsing stage on recorded responses of 10, 50 and 200 results:
+ * reading the body, parsing it as a whole or as a stream, and building the {@link News}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParseBenchmark {
+
+    @Param({"10", "50", "200"})
+    public String results;
+
+    /** Response body as received */
+    private byte[] mPayload;
+
+    /** Response body as read into a String */
+    private String mJson;
+
+    /** Title, date, section, byline and URL of each article */
+    private String[][] mFields;
+
+    @Setup
+    public void setUp() throws IOException, JSONException {
+        mPayload = Payloads.load(results);
+        mJson = new String(mPayload, Charset.forName("UTF-8"));
+
+        JSONArray articles = new JSONObject(mJson).getJSONObject("response")
+                .getJSONArray("results");
+        mFields = new String[articles.length()][];
+        for (int i = 0; i < articles.length(); i++) {
+            JSONObject article = articles.getJSONObject(i);
+            String author = article.getJSONObject("fields").optString("byline");
+            mFields[i] = new String[]{article.getString("webTitle"),
+                    article.getString("webPublicationDate"), article.getString("sectionName"),
+                    author, article.getString("webUrl")};
+        }
+    }
+
+    @Benchmark
+    public String readFromStream() throws IOException {
+        return QueryUtils.readFromStream(new ByteArrayInputStream(mPayload));
+    }
+
+    @Benchmark
+    public List<News> extractFeatureFromJson() {
+        return QueryUtils.extractFeatureFromJson(mJson);
+    }
+
+    /** The body read and parsed as the app did before streaming */
+    @Benchmark
+    public List<News> readAndExtractFromJson() throws IOException {
+        return QueryUtils.extractFeatureFromJson(
+                QueryUtils.readFromStream(new ByteArrayInputStream(mPayload)));
+    }
+
+    /** The body parsed as it arrives, as the app does now */
+    @Benchmark
+    public List<News> extractFeatureFromStream() throws IOException {
+        return QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(mPayload));
+    }
+
+    @Benchmark
+    public void constructNews(Blackhole blackhole) {
+        for (String[] fields : mFields) {
+            blackhole.consume(new News(fields[0], fields[1], fields[2], fields[3], fields[4]));
+        }
+    }
+}
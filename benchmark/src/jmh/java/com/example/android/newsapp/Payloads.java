@@ -0,0 +1,36 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The recorded Guardian search responses the benchmarks run on.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * Return the bytes of the recorded response with the given number of results.
+     */
+    static byte[] load(String results) throws IOException {
+        String name = "/guardian_search_" + results + ".json";
+        InputStream in = Payloads.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing payload " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package android.text;
+
+/**
+ * The part of the framework's TextUtils the app's parsing code uses.
+ */
+public final class TextUtils {
+
+    private TextUtils() {
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
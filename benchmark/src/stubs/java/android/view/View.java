@@ -0,0 +1,11 @@
+package android.view;
+
+/**
+ * The visibility constants of the framework's View, which the display model uses.
+ */
+public class View {
+
+    public static final int VISIBLE = 0x00000000;
+    public static final int INVISIBLE = 0x00000004;
+    public static final int GONE = 0x00000008;
+}